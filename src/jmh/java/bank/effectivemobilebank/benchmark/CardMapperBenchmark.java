@@ -0,0 +1,54 @@
+package bank.effectivemobilebank.benchmark;
+
+import bank.effectivemobilebank.dto.CardDto;
+import bank.effectivemobilebank.mapper.CardMapper;
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование карты в DTO для ответов со списком карт.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardMapperBenchmark {
+    private final CardMapper mapper = new CardMapper();
+    private Card card;
+
+    @Setup
+    public void setUp() {
+        User owner = new User();
+        owner.setId(UUID.randomUUID());
+        card = new Card();
+        card.setId(UUID.randomUUID());
+        card.setOwner(owner);
+        card.setPanLast4("5678");
+        card.setExpiry(LocalDate.of(2030, 1, 31));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("1234.56"));
+    }
+
+    @Benchmark
+    public CardDto toDto() {
+        return mapper.toDto(card);
+    }
+}
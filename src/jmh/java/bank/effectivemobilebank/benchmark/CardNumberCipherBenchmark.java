@@ -0,0 +1,40 @@
+package bank.effectivemobilebank.benchmark;
+
+import bank.effectivemobilebank.config.CardNumberCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование и расшифровка номера карты (AES-GCM), как при создании карты и выдаче номера.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberCipherBenchmark {
+    private static final String PAN = "4276380012345678";
+
+    private final CardNumberCipher cipher = new CardNumberCipher("benchmark-secret-benchmark-secret");
+    private final String encrypted = cipher.encrypt(PAN);
+
+    @Benchmark
+    public String encrypt() {
+        return cipher.encrypt(PAN);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return cipher.decrypt(encrypted);
+    }
+}
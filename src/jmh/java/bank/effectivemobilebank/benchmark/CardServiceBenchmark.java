@@ -0,0 +1,66 @@
+package bank.effectivemobilebank.benchmark;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.service.CardService;
+import bank.effectivemobilebank.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CardService.transfer целиком: транзакция, условные UPDATE, проводки в журнале, на H2.
+ * Переводы чередуются туда и обратно, поэтому балансы не расходуются за время замера.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardServiceBenchmark {
+    private static final Money AMOUNT = Money.parse("1.00");
+
+    private CardService cardService;
+    private User owner;
+    private UUID first;
+    private UUID second;
+    private boolean forward;
+
+    @Setup(Level.Trial)
+    public void setUp(SpringContextState spring) {
+        cardService = spring.bean(CardService.class);
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        owner = spring.bean(UserService.class).createUser("bench-" + suffix, "password", Set.of(UserRole.USER));
+        first = createCard(suffix, 1);
+        second = createCard(suffix, 2);
+    }
+
+    @Benchmark
+    public void transfer() {
+        forward = !forward;
+        cardService.transfer(owner, forward ? first : second, forward ? second : first, AMOUNT);
+    }
+
+    private UUID createCard(String suffix, int index) {
+        String pan = String.format("8%014d%d", Math.abs((long) suffix.hashCode()) % 100_000_000_000_000L, index);
+        Card card = cardService.createCard(owner, pan, LocalDate.now().plusYears(3));
+        cardService.adminTopUp(card.getId(), Money.parse("1000.00"));
+        return card.getId();
+    }
+}
@@ -0,0 +1,65 @@
+package bank.effectivemobilebank.benchmark;
+
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.security.AuthenticatedUser;
+import bank.effectivemobilebank.security.JwtAuthFilter;
+import bank.effectivemobilebank.security.JwtService;
+import bank.effectivemobilebank.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный путь JwtAuthFilter на запрос: разбор токена, сверка версии токена
+ * и заполнение SecurityContext.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+    private JwtAuthFilter filter;
+    private String authorization;
+
+    @Setup(Level.Trial)
+    public void setUp(SpringContextState spring) {
+        filter = spring.bean(JwtAuthFilter.class);
+        String username = "bench-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = spring.bean(UserService.class).createUser(username, "password", Set.of(UserRole.USER));
+        String token = spring.bean(JwtService.class).generate(username, AuthenticatedUser.claimsOf(user));
+        authorization = "Bearer " + token;
+    }
+
+    @Benchmark
+    public Authentication authenticate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards");
+        request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package bank.effectivemobilebank.benchmark;
+
+import bank.effectivemobilebank.security.JwtService;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск токена при входе и разбор токена на каждом запросе: повторный токен из кеша
+ * проверенных токенов и полный разбор с проверкой подписи без кеша.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+    private static final Map<String, Object> CLAIMS = Map.of("roles", List.of("USER"));
+
+    private final JwtService jwtService = new JwtService("benchmark-secret-benchmark-secret", 60, 30, 10_000);
+    private final JwtService uncachedJwtService = new JwtService("benchmark-secret-benchmark-secret", 60, 30, 0);
+    private final String token = jwtService.generate("benchmark-user", CLAIMS);
+
+    @Benchmark
+    public String generate() {
+        return jwtService.generate("benchmark-user", CLAIMS);
+    }
+
+    @Benchmark
+    public Claims parse() {
+        return jwtService.parse(token);
+    }
+
+    @Benchmark
+    public Claims parseUncached() {
+        return uncachedJwtService.parse(token);
+    }
+}
@@ -0,0 +1,71 @@
+package bank.effectivemobilebank.benchmark;
+
+import bank.effectivemobilebank.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка и проводка перевода в памяти, как в CardService: сравнение с балансом,
+ * списание и зачисление. Перевод делается туда и обратно, чтобы балансы не уходили
+ * в минус за время замера. Аллокации смотреть в gc.alloc.rate.norm (-prof gc).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    private BigDecimal fromDecimal = new BigDecimal("1000000.00");
+    private BigDecimal toDecimal = new BigDecimal("250.00");
+    private final BigDecimal amountDecimal = new BigDecimal("12.34");
+
+    private Money from = Money.parse("1000000.00");
+    private Money to = Money.parse("250.00");
+    private final Money amount = Money.parse("12.34");
+
+    @Benchmark
+    public void bigDecimalTransfer(Blackhole blackhole) {
+        if (fromDecimal.compareTo(amountDecimal) >= 0) {
+            fromDecimal = fromDecimal.subtract(amountDecimal);
+            toDecimal = toDecimal.add(amountDecimal);
+        }
+        if (toDecimal.compareTo(amountDecimal) >= 0) {
+            toDecimal = toDecimal.subtract(amountDecimal);
+            fromDecimal = fromDecimal.add(amountDecimal);
+        }
+        blackhole.consume(fromDecimal);
+        blackhole.consume(toDecimal);
+    }
+
+    @Benchmark
+    public void moneyTransfer(Blackhole blackhole) {
+        if (!from.isLessThan(amount)) {
+            from = from.minus(amount);
+            to = to.plus(amount);
+        }
+        if (!to.isLessThan(amount)) {
+            to = to.minus(amount);
+            from = from.plus(amount);
+        }
+        blackhole.consume(from);
+        blackhole.consume(to);
+    }
+
+    // Стоимость границы: сумма из JSON-запроса переводится в копейки один раз на запрос
+    @Benchmark
+    public Money moneyFromRequest() {
+        return Money.of(amountDecimal);
+    }
+}
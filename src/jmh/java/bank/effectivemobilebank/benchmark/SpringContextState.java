@@ -0,0 +1,37 @@
+package bank.effectivemobilebank.benchmark;
+
+import bank.effectivemobilebank.EffectiveMobileBankApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Контекст приложения на H2 (профиль test) для бенчмарков, которым нужна база.
+ * Поднимается один раз на форк; веб-сервер слушает случайный порт, потому что
+ * конфигурация безопасности требует сервлетного контекста.
+ */
+@State(Scope.Benchmark)
+public class SpringContextState {
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(EffectiveMobileBankApplication.class)
+            .profiles("test")
+            .logStartupInfo(false)
+            .run("--server.port=0", "--logging.level.root=WARN");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
@@ -1,6 +1,7 @@
 package bank.effectivemobilebank.config;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,6 +11,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.HexFormat;
 
 
 @Component
@@ -19,8 +21,12 @@ public class CardNumberCipher {
     private static final String AES_GCM_NO_PADDING = "AES/GCM/NoPadding";
     private static final int GCM_TAG_LENGTH = 128;
     private static final int IV_LENGTH = 12;
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    // Ключ слепого индекса выводится из общего секрета, но не совпадает с ключом шифрования
+    private static final byte[] BLIND_INDEX_CONTEXT = "pan-blind-index".getBytes(StandardCharsets.UTF_8);
 
     private final byte[] secretKey;
+    private final byte[] blindIndexKey;
     private final SecureRandom secureRandom = new SecureRandom();
 
     public CardNumberCipher(@Value("${security.jwt.secret}") String secret) {
@@ -28,6 +34,17 @@ public class CardNumberCipher {
         byte[] normalized = new byte[32];
         System.arraycopy(keyBytes, 0, normalized, 0, Math.min(keyBytes.length, 32));
         this.secretKey = normalized;
+        this.blindIndexKey = hmac(normalized, BLIND_INDEX_CONTEXT);
+    }
+
+    /**
+     * Слепой индекс номера карты: HMAC-SHA256 от номера без пробелов и дефисов, в hex.
+     * В отличие от {@link #encrypt(String)} детерминирован, поэтому по нему можно
+     * искать карту и проверять уникальность, не расшифровывая строки.
+     */
+    public String blindIndex(String plain) {
+        String pan = plain.replaceAll("[\\s-]", "");
+        return HexFormat.of().formatHex(hmac(blindIndexKey, pan.getBytes(StandardCharsets.UTF_8)));
     }
 
     public String encrypt(String plain) {
@@ -66,6 +83,16 @@ public class CardNumberCipher {
             throw new IllegalStateException("Failed to decrypt PAN", e);
         }
     }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(new SecretKeySpec(key, HMAC_SHA256));
+            return mac.doFinal(data);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to compute PAN index", e);
+        }
+    }
 }
 
 
@@ -0,0 +1,15 @@
+package bank.effectivemobilebank.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+// Единые часы для проверок срока действия в сервисах и условных UPDATE
+@Configuration
+public class ClockConfig {
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
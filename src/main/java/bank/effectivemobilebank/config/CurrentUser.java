@@ -1,10 +1,11 @@
 package bank.effectivemobilebank.config;
 
-import bank.effectivemobilebank.repository.UserRepository;
+import bank.effectivemobilebank.security.AuthenticatedUser;
 import org.springframework.core.MethodParameter;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
@@ -14,6 +15,11 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Текущий пользователь запроса: {@link AuthenticatedUser}, который JwtAuthFilter положил
+ * в аутентификацию, или {@link bank.effectivemobilebank.model.User}, собранный из него без чтения
+ * из базы (см. {@link AuthenticatedUser#toUser()}). User собирается один раз на запрос.
+ */
 @Target(ElementType.PARAMETER)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface CurrentUser {
@@ -21,11 +27,7 @@ public @interface CurrentUser {
 
 @Component
 class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
-    private final UserRepository userRepository;
-
-    public CurrentUserArgumentResolver(UserRepository userRepository) {
-        this.userRepository = userRepository;
-    }
+    static final String USER_ATTRIBUTE = CurrentUser.class.getName() + ".user";
 
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
@@ -35,9 +37,15 @@ class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
     @Override
     public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
                                 NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
-        String username = (String) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        return userRepository.findByUsername(username).orElseThrow();
+        AuthenticatedUser principal = (AuthenticatedUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (parameter.getParameterType() == AuthenticatedUser.class) {
+            return principal;
+        }
+        Object user = webRequest.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (user == null) {
+            user = principal.toUser();
+            webRequest.setAttribute(USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
     }
 }
-
-
@@ -1,18 +1,23 @@
 package bank.effectivemobilebank.config;
 
+import bank.effectivemobilebank.security.PooledPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class SecurityBeansConfig {
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${bank.password.bcrypt-cost:10}") int cost,
+                                           @Value("${bank.password.hash-threads:2}") int threads,
+                                           @Value("${bank.password.queue-capacity:64}") int queueCapacity) {
+        return new PooledPasswordEncoder(cost, threads, queueCapacity, meterRegistry);
     }
 
     @Bean
@@ -20,5 +25,3 @@ public class SecurityBeansConfig {
         return config.getAuthenticationManager();
     }
 }
-
-
@@ -1,20 +1,34 @@
 package bank.effectivemobilebank.controller;
 
 import bank.effectivemobilebank.dto.CardDto;
+import bank.effectivemobilebank.dto.CardLimitDto;
+import bank.effectivemobilebank.dto.CardLimitRequest;
 import bank.effectivemobilebank.dto.CreateCardRequest;
+import bank.effectivemobilebank.dto.ReconciliationReportDto;
 import bank.effectivemobilebank.dto.TopUpRequest;
 import bank.effectivemobilebank.mapper.CardMapper;
 import bank.effectivemobilebank.model.Card;
 import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.service.BalanceSnapshotService;
+import bank.effectivemobilebank.service.CardExpirySweeper;
 import bank.effectivemobilebank.service.CardService;
+import bank.effectivemobilebank.service.HotCardService;
+import bank.effectivemobilebank.service.LedgerService;
+import bank.effectivemobilebank.service.ReconciliationService;
+import bank.effectivemobilebank.service.TransferService;
+import bank.effectivemobilebank.service.VelocityLimitService;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.Map;
 
 @RestController
@@ -23,10 +37,29 @@ import java.util.Map;
 public class AdminCardController {
     private final CardService cardService;
     private final CardMapper cardMapper;
+    private final LedgerService ledgerService;
+    private final TransferService transferService;
+    private final HotCardService hotCardService;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final VelocityLimitService velocityLimitService;
+    private final ReconciliationService reconciliationService;
+    private final CardExpirySweeper cardExpirySweeper;
 
-    public AdminCardController(CardService cardService, CardMapper cardMapper) {
+    public AdminCardController(CardService cardService, CardMapper cardMapper, LedgerService ledgerService,
+                               TransferService transferService, HotCardService hotCardService,
+                               BalanceSnapshotService balanceSnapshotService,
+                               VelocityLimitService velocityLimitService,
+                               ReconciliationService reconciliationService,
+                               CardExpirySweeper cardExpirySweeper) {
         this.cardService = cardService;
         this.cardMapper = cardMapper;
+        this.ledgerService = ledgerService;
+        this.transferService = transferService;
+        this.hotCardService = hotCardService;
+        this.balanceSnapshotService = balanceSnapshotService;
+        this.velocityLimitService = velocityLimitService;
+        this.reconciliationService = reconciliationService;
+        this.cardExpirySweeper = cardExpirySweeper;
     }
 
     @PostMapping
@@ -71,7 +104,7 @@ public class AdminCardController {
             @PathVariable String id,
             @Valid @RequestBody TopUpRequest request) {
         try {
-            cardService.adminTopUp(java.util.UUID.fromString(id), request.getAmount());
+            transferService.adminTopUp(java.util.UUID.fromString(id), Money.of(request.getAmount()));
             return ResponseEntity.ok().body(Map.of("message", "Карта пополнена"));
         } catch (IllegalArgumentException | IllegalStateException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -97,6 +130,98 @@ public class AdminCardController {
             return ResponseEntity.badRequest().body(Map.of("error", "Ошибка блокировки карты"));
         }
     }
-}
 
+    @PostMapping("/{id}/hot")
+    public ResponseEntity<?> enableHotMode(@PathVariable String id) {
+        try {
+            hotCardService.enable(java.util.UUID.fromString(id));
+            return ResponseEntity.ok().body(Map.of("message", "Режим горячей карты включен"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Ошибка включения режима горячей карты"));
+        }
+    }
+
+    @DeleteMapping("/{id}/hot")
+    public ResponseEntity<?> disableHotMode(@PathVariable String id) {
+        try {
+            hotCardService.disable(java.util.UUID.fromString(id));
+            return ResponseEntity.ok().body(Map.of("message", "Режим горячей карты выключен"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Ошибка выключения режима горячей карты"));
+        }
+    }
+
+    @GetMapping("/{id}/limits")
+    public ResponseEntity<?> getLimits(@PathVariable String id) {
+        try {
+            Card card = cardService.findById(java.util.UUID.fromString(id));
+            return ResponseEntity.ok(CardLimitDto.of(velocityLimitService.limitsOf(card.getId()),
+                velocityLimitService.usage(card.getId())));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Ошибка получения лимитов карты"));
+        }
+    }
+
+    @PutMapping("/{id}/limits")
+    public ResponseEntity<?> setLimits(@PathVariable String id, @Valid @RequestBody CardLimitRequest request) {
+        try {
+            Card card = cardService.findById(java.util.UUID.fromString(id));
+            var limit = velocityLimitService.setCardLimits(card.getId(),
+                request.getHourlyLimit() == null ? null : Money.of(request.getHourlyLimit()),
+                request.getDailyLimit() == null ? null : Money.of(request.getDailyLimit()));
+            return ResponseEntity.ok(CardLimitDto.of(limit, velocityLimitService.usage(card.getId())));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Ошибка изменения лимитов карты"));
+        }
+    }
 
+    // Ручной запуск снимков балансов, например чтобы дозаполнить пропущенный день
+    @PostMapping("/snapshots")
+    public ResponseEntity<?> createSnapshots(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            int written = balanceSnapshotService.snapshot(date);
+            return ResponseEntity.ok().body(Map.of("date", date, "snapshots", written));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Ручной запуск перевода карт с прошедшим сроком в EXPIRED
+    @PostMapping("/expire")
+    public ResponseEntity<?> expireCards() {
+        int expired = cardExpirySweeper.sweep();
+        return ResponseEntity.ok().body(Map.of("expired", expired));
+    }
+
+    // Сверка всех карт с журналом проводок идет в фоне; ход виден по GET
+    @PostMapping("/reconciliation")
+    public ResponseEntity<?> startReconciliation() {
+        try {
+            return ResponseEntity.accepted().body(ReconciliationReportDto.of(reconciliationService.start()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reconciliation")
+    public ResponseEntity<?> getReconciliation() {
+        return reconciliationService.lastRun()
+            .<ResponseEntity<?>>map(run -> ResponseEntity.ok(ReconciliationReportDto.of(run)))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Сверка еще не запускалась")));
+    }
+
+    @GetMapping("/{id}/ledger")
+    public ResponseEntity<?> checkLedger(@PathVariable String id) {
+        try {
+            Card card = cardService.findById(java.util.UUID.fromString(id));
+            Money ledgerBalance = ledgerService.balanceOf(card.getId());
+            return ResponseEntity.ok().body(Map.of(
+                "balance", card.getTotalBalance().toBigDecimal(),
+                "ledgerBalance", ledgerBalance.toBigDecimal(),
+                "consistent", ledgerBalance.equals(card.getTotalBalance())
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Ошибка сверки баланса карты"));
+        }
+    }
+}
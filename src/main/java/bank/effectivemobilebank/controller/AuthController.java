@@ -2,10 +2,14 @@ package bank.effectivemobilebank.controller;
 
 import bank.effectivemobilebank.model.User;
 import bank.effectivemobilebank.model.UserRole;
-import bank.effectivemobilebank.security.JwtService;
+import bank.effectivemobilebank.security.AuthTokenService;
+import bank.effectivemobilebank.security.LoginRateLimiter;
 import bank.effectivemobilebank.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,41 +19,81 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
 @Validated
 public class AuthController {
     private final AuthenticationManager authenticationManager;
-    private final JwtService jwtService;
+    private final AuthTokenService authTokenService;
     private final UserService userService;
+    private final LoginRateLimiter loginRateLimiter;
 
-    public AuthController(AuthenticationManager authenticationManager, JwtService jwtService, UserService userService) {
+    public AuthController(AuthenticationManager authenticationManager, AuthTokenService authTokenService,
+                          UserService userService, LoginRateLimiter loginRateLimiter) {
         this.authenticationManager = authenticationManager;
-        this.jwtService = jwtService;
+        this.authTokenService = authTokenService;
         this.userService = userService;
+        this.loginRateLimiter = loginRateLimiter;
     }
 
     public record AuthRequest(@NotBlank String username, @NotBlank String password) {}
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody AuthRequest request) {
+    public ResponseEntity<?> login(@Valid @RequestBody AuthRequest request, HttpServletRequest httpRequest) {
+        // Отказ до проверки пароля: перебор не тратит BCrypt. Адрес клиента за доверенным прокси
+        // подставляет RemoteIpValve (server.tomcat.remoteip.internal-proxies), заголовок от прочих игнорируется
+        var decision = loginRateLimiter.tryAcquire(request.username(), httpRequest.getRemoteAddr());
+        if (!decision.allowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                .body(Map.of("message", "Слишком много попыток входа, повторите позже"));
+        }
         try {
             authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(request.username(), request.password()));
         } catch (AuthenticationException ex) {
             return ResponseEntity.status(401).body(Map.of("message", "Неверные учетные данные"));
+        } catch (RejectedExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", ex.getMessage()));
         }
         var user = userService.findByUsername(request.username()).orElseThrow();
-        var token = jwtService.generate(user.getUsername(), Map.of("roles", user.getRoles()));
-        return ResponseEntity.ok(Map.of("token", token));
+        var tokens = authTokenService.issue(user);
+        return ResponseEntity.ok(Map.of("token", tokens.token(), "refreshToken", tokens.refreshToken()));
+    }
+
+    public record RefreshRequest(@NotBlank String refreshToken) {}
+
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshRequest request) {
+        return authTokenService.refresh(request.refreshToken())
+            .<ResponseEntity<?>>map(tokens -> ResponseEntity.ok(
+                Map.of("token", tokens.token(), "refreshToken", tokens.refreshToken())))
+            .orElseGet(() -> ResponseEntity.status(401).body(Map.of("message", "Недействительный refresh-токен")));
+    }
+
+    public record LogoutRequest(String refreshToken) {}
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                    @RequestBody(required = false) LogoutRequest request) {
+        String accessToken = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        if (!authTokenService.logout(accessToken, request == null ? null : request.refreshToken())) {
+            return ResponseEntity.status(401).body(Map.of("message", "Недействительный токен"));
+        }
+        return ResponseEntity.noContent().build();
     }
 
     public record RegisterRequest(@NotBlank String username, @NotBlank String password) {}
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
-        User user = userService.createUser(request.username(), request.password(), Set.of(UserRole.USER));
-        return ResponseEntity.ok(Map.of("id", user.getId()));
+        try {
+            User user = userService.createUser(request.username(), request.password(), Set.of(UserRole.USER));
+            return ResponseEntity.ok(Map.of("id", user.getId()));
+        } catch (RejectedExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", ex.getMessage()));
+        }
     }
 }
 
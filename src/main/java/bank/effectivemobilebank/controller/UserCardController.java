@@ -1,35 +1,67 @@
 package bank.effectivemobilebank.controller;
 
+import bank.effectivemobilebank.config.CardNumberCipher;
 import bank.effectivemobilebank.config.CurrentUser;
+import bank.effectivemobilebank.dto.AsyncTransferDto;
+import bank.effectivemobilebank.dto.BatchTransferRequest;
+import bank.effectivemobilebank.dto.BatchTransferResponse;
 import bank.effectivemobilebank.dto.CardDto;
+import bank.effectivemobilebank.dto.CardNumberTransferRequest;
+import bank.effectivemobilebank.dto.CardTransactionPage;
 import bank.effectivemobilebank.dto.TopUpRequest;
 import bank.effectivemobilebank.dto.TransferRequest;
 import bank.effectivemobilebank.mapper.CardMapper;
+import bank.effectivemobilebank.model.AsyncTransfer;
 import bank.effectivemobilebank.model.Card;
 import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
 import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.service.AsyncTransferService;
+import bank.effectivemobilebank.service.BalanceSnapshotService;
 import bank.effectivemobilebank.service.CardService;
+import bank.effectivemobilebank.service.IdempotencyService;
+import bank.effectivemobilebank.service.TransferService;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/cards")
 @PreAuthorize("hasRole('USER')")
 public class UserCardController {
+    // RFC 7240: клиент просит принять перевод и не ждать его выполнения
+    private static final String RESPOND_ASYNC = "respond-async";
+
     private final CardService cardService;
     private final CardMapper cardMapper;
+    private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
+    private final AsyncTransferService asyncTransferService;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final CardNumberCipher cipher;
 
-    public UserCardController(CardService cardService, CardMapper cardMapper) {
+    public UserCardController(CardService cardService, CardMapper cardMapper, TransferService transferService,
+                              IdempotencyService idempotencyService, AsyncTransferService asyncTransferService,
+                              BalanceSnapshotService balanceSnapshotService, CardNumberCipher cipher) {
         this.cardService = cardService;
         this.cardMapper = cardMapper;
+        this.transferService = transferService;
+        this.idempotencyService = idempotencyService;
+        this.asyncTransferService = asyncTransferService;
+        this.balanceSnapshotService = balanceSnapshotService;
+        this.cipher = cipher;
     }
 
     @GetMapping
@@ -45,6 +77,54 @@ public class UserCardController {
         return ResponseEntity.ok(cardDtos);
     }
 
+    @GetMapping("/{id}/transactions")
+    public ResponseEntity<?> getCardTransactions(
+            @CurrentUser User currentUser,
+            @PathVariable String id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            CardTransactionPage history = cardService.findTransactions(currentUser, java.util.UUID.fromString(id),
+                cursor, size);
+            return ResponseEntity.ok(history);
+        } catch (java.util.NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(java.util.Map.of("error", "Карта не найдена"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<?> getBalanceAsOf(
+            @CurrentUser User currentUser,
+            @PathVariable String id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        try {
+            java.util.UUID cardId = java.util.UUID.fromString(id);
+            Money balance = balanceSnapshotService.balanceAsOf(currentUser, cardId, asOf);
+            return ResponseEntity.ok(java.util.Map.of("cardId", cardId, "asOf", asOf, "balance", balance.toBigDecimal()));
+        } catch (java.util.NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(java.util.Map.of("error", "Карта не найдена"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/statement")
+    public ResponseEntity<?> getStatement(
+            @CurrentUser User currentUser,
+            @PathVariable String id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(balanceSnapshotService.statement(currentUser, java.util.UUID.fromString(id), from, to));
+        } catch (java.util.NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(java.util.Map.of("error", "Карта не найдена"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/{id}/block")
     public ResponseEntity<?> blockCard(@CurrentUser User currentUser, @PathVariable String id) {
         try {
@@ -58,10 +138,74 @@ public class UserCardController {
     @PostMapping("/transfer")
     public ResponseEntity<?> transferBetweenCards(
             @CurrentUser User currentUser,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = "Prefer", required = false) String prefer,
             @Valid @RequestBody TransferRequest request) {
+        boolean async = prefer != null && prefer.contains(RESPOND_ASYNC);
+        try {
+            String fingerprint = (async ? "transfer-async:" : "transfer:") + request.getFromCardId() + ":"
+                + request.getToCardId() + ":" + request.getAmount().stripTrailingZeros().toPlainString();
+            if (async) {
+                return idempotencyService.execute(currentUser, idempotencyKey, fingerprint, () -> {
+                    AsyncTransfer transfer = asyncTransferService.submit(currentUser, request.getFromCardId(),
+                        request.getToCardId(), Money.of(request.getAmount()));
+                    return ResponseEntity.accepted()
+                        .location(URI.create("/api/cards/transfers/" + transfer.getId()))
+                        .body(AsyncTransferDto.of(transfer));
+                });
+            }
+            // Ключ сохраняется в транзакции самого перевода, которая может идти в потоке движка
+            return idempotencyService.executeCommitting(currentUser, idempotencyKey, fingerprint,
+                ResponseEntity.ok().body(java.util.Map.of("message", "Перевод выполнен успешно")),
+                recordKey -> transferService.transferBetweenOwn(currentUser, request.getFromCardId(),
+                    request.getToCardId(), Money.of(request.getAmount()), recordKey));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/transfer/by-number")
+    public ResponseEntity<?> transferByCardNumber(
+            @CurrentUser User currentUser,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody CardNumberTransferRequest request) {
+        try {
+            // Хеш отпечатка хранится в request_hash, поэтому номер карты входит в него только
+            // слепым индексом (HMAC): открытый номер по несоленому SHA-256 легко перебрать
+            String fingerprint = "transfer-by-number:" + request.getFromCardId() + ":"
+                + cipher.blindIndex(request.getToCardNumber())
+                + ":" + request.getAmount().stripTrailingZeros().toPlainString();
+            return idempotencyService.execute(currentUser, idempotencyKey, fingerprint, () -> {
+                transferService.transferToCardNumber(currentUser, request.getFromCardId(), request.getToCardNumber(),
+                    Money.of(request.getAmount()));
+                return ResponseEntity.ok().body(java.util.Map.of("message", "Перевод выполнен успешно"));
+            });
+        } catch (java.util.NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(java.util.Map.of("error", "Карта не найдена"));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/transfers/{id}")
+    public ResponseEntity<?> getTransferStatus(@CurrentUser User currentUser, @PathVariable String id) {
+        try {
+            AsyncTransfer transfer = asyncTransferService.findForOwner(currentUser, java.util.UUID.fromString(id));
+            return ResponseEntity.ok(AsyncTransferDto.of(transfer));
+        } catch (java.util.NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(java.util.Map.of("error", "Перевод не найден"));
+        }
+    }
+
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<?> transferBatch(
+            @CurrentUser User currentUser,
+            @Valid @RequestBody BatchTransferRequest request) {
         try {
-            cardService.transfer(currentUser, request.getFromCardId(), request.getToCardId(), request.getAmount());
-            return ResponseEntity.ok().body(java.util.Map.of("message", "Перевод выполнен успешно"));
+            var results = transferService.transferBatch(currentUser, request.getTransfers());
+            return ResponseEntity.ok(BatchTransferResponse.of(results));
         } catch (IllegalArgumentException | IllegalStateException e) {
             return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
         }
@@ -71,10 +215,15 @@ public class UserCardController {
     public ResponseEntity<?> topUpCard(
             @CurrentUser User currentUser,
             @PathVariable String id,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody TopUpRequest request) {
         try {
-            cardService.topUp(currentUser, java.util.UUID.fromString(id), request.getAmount());
-            return ResponseEntity.ok().body(java.util.Map.of("message", "Карта пополнена"));
+            java.util.UUID cardId = java.util.UUID.fromString(id);
+            String fingerprint = "topup:" + cardId + ":" + request.getAmount().stripTrailingZeros().toPlainString();
+            return idempotencyService.execute(currentUser, idempotencyKey, fingerprint, () -> {
+                transferService.topUp(currentUser, cardId, Money.of(request.getAmount()));
+                return ResponseEntity.ok().body(java.util.Map.of("message", "Карта пополнена"));
+            });
         } catch (IllegalArgumentException | IllegalStateException e) {
             return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
         }
@@ -0,0 +1,36 @@
+package bank.effectivemobilebank.dto;
+
+import bank.effectivemobilebank.model.AsyncTransfer;
+import bank.effectivemobilebank.model.AsyncTransferStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Setter
+@Getter
+public class AsyncTransferDto {
+    private UUID id;
+    private UUID fromCardId;
+    private UUID toCardId;
+    private BigDecimal amount;
+    private AsyncTransferStatus status;
+    private String error;
+    private Instant createdAt;
+    private Instant completedAt;
+
+    public static AsyncTransferDto of(AsyncTransfer transfer) {
+        AsyncTransferDto dto = new AsyncTransferDto();
+        dto.setId(transfer.getId());
+        dto.setFromCardId(transfer.getFromCardId());
+        dto.setToCardId(transfer.getToCardId());
+        dto.setAmount(transfer.getAmount().toBigDecimal());
+        dto.setStatus(transfer.getStatus());
+        dto.setError(transfer.getError());
+        dto.setCreatedAt(transfer.getCreatedAt());
+        dto.setCompletedAt(transfer.getCompletedAt());
+        return dto;
+    }
+}
@@ -0,0 +1,27 @@
+package bank.effectivemobilebank.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+public class BatchTransferItemResult {
+    private int index;
+    private boolean success;
+    private String error;
+
+    public static BatchTransferItemResult ok(int index) {
+        BatchTransferItemResult result = new BatchTransferItemResult();
+        result.setIndex(index);
+        result.setSuccess(true);
+        return result;
+    }
+
+    public static BatchTransferItemResult failed(int index, String error) {
+        BatchTransferItemResult result = new BatchTransferItemResult();
+        result.setIndex(index);
+        result.setSuccess(false);
+        result.setError(error);
+        return result;
+    }
+}
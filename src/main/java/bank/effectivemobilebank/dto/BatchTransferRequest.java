@@ -0,0 +1,16 @@
+package bank.effectivemobilebank.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Setter
+@Getter
+public class BatchTransferRequest {
+    @NotEmpty(message = "Список переводов не должен быть пустым")
+    private List<@Valid TransferRequest> transfers;
+
+}
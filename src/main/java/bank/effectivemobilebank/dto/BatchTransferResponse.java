@@ -0,0 +1,22 @@
+package bank.effectivemobilebank.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Setter
+@Getter
+public class BatchTransferResponse {
+    private int succeeded;
+    private int failed;
+    private List<BatchTransferItemResult> results;
+
+    public static BatchTransferResponse of(List<BatchTransferItemResult> results) {
+        BatchTransferResponse response = new BatchTransferResponse();
+        response.setResults(results);
+        response.setSucceeded((int) results.stream().filter(BatchTransferItemResult::isSuccess).count());
+        response.setFailed(results.size() - response.getSucceeded());
+        return response;
+    }
+}
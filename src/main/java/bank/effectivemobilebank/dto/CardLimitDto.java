@@ -0,0 +1,34 @@
+package bank.effectivemobilebank.dto;
+
+import bank.effectivemobilebank.model.CardLimit;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.service.VelocityLimitService;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Setter
+@Getter
+public class CardLimitDto {
+    private UUID cardId;
+    private BigDecimal hourlyLimit;
+    private BigDecimal dailyLimit;
+    private BigDecimal hourlyUsed;
+    private BigDecimal dailyUsed;
+
+    public static CardLimitDto of(CardLimit limit, VelocityLimitService.Usage usage) {
+        CardLimitDto dto = new CardLimitDto();
+        dto.setCardId(limit.getCardId());
+        dto.setHourlyLimit(toBigDecimal(limit.getHourlyLimit()));
+        dto.setDailyLimit(toBigDecimal(limit.getDailyLimit()));
+        dto.setHourlyUsed(usage.hourly().toBigDecimal());
+        dto.setDailyUsed(usage.daily().toBigDecimal());
+        return dto;
+    }
+
+    private static BigDecimal toBigDecimal(Money money) {
+        return money == null ? null : money.toBigDecimal();
+    }
+}
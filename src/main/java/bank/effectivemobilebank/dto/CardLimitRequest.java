@@ -0,0 +1,23 @@
+package bank.effectivemobilebank.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Лимиты карты. Пустое поле — действует лимит по умолчанию из настроек.
+ */
+@Setter
+@Getter
+public class CardLimitRequest {
+    @DecimalMin(value = "0.01", message = "Лимит должен быть больше 0")
+    @Digits(integer = 17, fraction = 2, message = "Лимит должен содержать не больше двух знаков после запятой")
+    private BigDecimal hourlyLimit;
+
+    @DecimalMin(value = "0.01", message = "Лимит должен быть больше 0")
+    @Digits(integer = 17, fraction = 2, message = "Лимит должен содержать не больше двух знаков после запятой")
+    private BigDecimal dailyLimit;
+}
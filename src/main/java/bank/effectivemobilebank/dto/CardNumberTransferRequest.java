@@ -0,0 +1,27 @@
+package bank.effectivemobilebank.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Setter
+@Getter
+public class CardNumberTransferRequest {
+    @NotNull(message = "ID карты-отправителя обязателен")
+    private UUID fromCardId;
+
+    @NotNull(message = "Номер карты-получателя обязателен")
+    @Pattern(regexp = "\\d{16}", message = "Номер карты должен содержать 16 цифр")
+    private String toCardNumber;
+
+    @NotNull(message = "Сумма обязательна")
+    @DecimalMin(value = "0.01", message = "Сумма должна быть больше 0")
+    @Digits(integer = 17, fraction = 2, message = "Сумма должна содержать не больше двух знаков после запятой")
+    private BigDecimal amount;
+}
@@ -0,0 +1,34 @@
+package bank.effectivemobilebank.dto;
+
+import bank.effectivemobilebank.model.Money;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Setter
+@Getter
+public class CardStatementDto {
+    private UUID cardId;
+    private LocalDate from;
+    private LocalDate to;
+    private BigDecimal openingBalance;
+    private BigDecimal credits;
+    private BigDecimal debits;
+    private BigDecimal closingBalance;
+
+    public static CardStatementDto of(UUID cardId, LocalDate from, LocalDate to, Money opening,
+                                      Money credits, Money debits, Money closing) {
+        CardStatementDto dto = new CardStatementDto();
+        dto.setCardId(cardId);
+        dto.setFrom(from);
+        dto.setTo(to);
+        dto.setOpeningBalance(opening.toBigDecimal());
+        dto.setCredits(credits.toBigDecimal());
+        dto.setDebits(debits.toBigDecimal());
+        dto.setClosingBalance(closing.toBigDecimal());
+        return dto;
+    }
+}
@@ -0,0 +1,31 @@
+package bank.effectivemobilebank.dto;
+
+import bank.effectivemobilebank.model.LedgerDirection;
+import bank.effectivemobilebank.model.LedgerEntry;
+import bank.effectivemobilebank.model.LedgerOperationType;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Setter
+@Getter
+public class CardTransactionDto {
+    private UUID operationId;
+    private LedgerOperationType type;
+    private LedgerDirection direction;
+    private BigDecimal amount;
+    private Instant createdAt;
+
+    public static CardTransactionDto of(LedgerEntry entry) {
+        CardTransactionDto dto = new CardTransactionDto();
+        dto.setOperationId(entry.getOperationId());
+        dto.setType(entry.getOperationType());
+        dto.setDirection(entry.getDirection());
+        dto.setAmount(entry.getAmount().toBigDecimal());
+        dto.setCreatedAt(entry.getCreatedAt());
+        return dto;
+    }
+}
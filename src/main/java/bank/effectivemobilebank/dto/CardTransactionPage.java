@@ -0,0 +1,24 @@
+package bank.effectivemobilebank.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Страница истории операций по карте. {@code nextCursor} передаётся в следующий запрос
+ * как {@code cursor}; {@code null} означает, что записей больше нет.
+ */
+@Setter
+@Getter
+public class CardTransactionPage {
+    private List<CardTransactionDto> items;
+    private String nextCursor;
+
+    public static CardTransactionPage of(List<CardTransactionDto> items, String nextCursor) {
+        CardTransactionPage page = new CardTransactionPage();
+        page.setItems(items);
+        page.setNextCursor(nextCursor);
+        return page;
+    }
+}
@@ -0,0 +1,52 @@
+package bank.effectivemobilebank.dto;
+
+import bank.effectivemobilebank.service.ReconciliationRun;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Setter
+@Getter
+public class ReconciliationReportDto {
+    private UUID id;
+    private ReconciliationRun.Status status;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private long cardsChecked;
+    private double cardsPerSecond;
+    private long mismatchCount;
+    private List<MismatchDto> mismatches;
+    private String error;
+
+    @Setter
+    @Getter
+    public static class MismatchDto {
+        private UUID cardId;
+        private BigDecimal balance;
+        private BigDecimal ledgerBalance;
+    }
+
+    public static ReconciliationReportDto of(ReconciliationRun run) {
+        ReconciliationReportDto dto = new ReconciliationReportDto();
+        dto.setId(run.getId());
+        dto.setStatus(run.getStatus());
+        dto.setStartedAt(run.getStartedAt());
+        dto.setFinishedAt(run.getFinishedAt());
+        dto.setCardsChecked(run.getCardsChecked());
+        dto.setCardsPerSecond(Math.round(run.getCardsPerSecond() * 10) / 10.0);
+        dto.setMismatchCount(run.getMismatchCount());
+        dto.setMismatches(run.getMismatches().stream().map(m -> {
+            MismatchDto mismatch = new MismatchDto();
+            mismatch.setCardId(m.cardId());
+            mismatch.setBalance(m.balance().toBigDecimal());
+            mismatch.setLedgerBalance(m.ledgerBalance().toBigDecimal());
+            return mismatch;
+        }).toList());
+        dto.setError(run.getError());
+        return dto;
+    }
+}
@@ -1,6 +1,7 @@
 package bank.effectivemobilebank.dto;
 
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
@@ -12,6 +13,7 @@ import java.math.BigDecimal;
 public class TopUpRequest {
     @NotNull(message = "Сумма обязательна")
     @DecimalMin(value = "0.01", message = "Сумма должна быть больше 0")
+    @Digits(integer = 17, fraction = 2, message = "Сумма должна содержать не больше двух знаков после запятой")
     private BigDecimal amount;
 }
 
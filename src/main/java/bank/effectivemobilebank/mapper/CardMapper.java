@@ -26,7 +26,7 @@ public class CardMapper {
         dto.setMaskedNumber("**** **** **** " + card.getPanLast4());
         dto.setExpiry(card.getExpiry());
         dto.setStatus(card.getStatus());
-        dto.setBalance(card.getBalance());
+        dto.setBalance(card.getTotalBalance().toBigDecimal());
         dto.setOwnerId(card.getOwner().getId());
         return dto;
     }
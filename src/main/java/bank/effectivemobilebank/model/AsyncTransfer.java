@@ -0,0 +1,61 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Перевод, принятый в асинхронном режиме. Статус меняется в той же транзакции,
+ * что и балансы, поэтому COMPLETED всегда означает проведенный перевод.
+ */
+@Entity
+@Table(name = "async_transfers")
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AsyncTransfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "owner_id", nullable = false)
+    private UUID ownerId;
+
+    @Column(name = "from_card_id", nullable = false)
+    private UUID fromCardId;
+
+    @Column(name = "to_card_id", nullable = false)
+    private UUID toCardId;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private Money amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private AsyncTransferStatus status = AsyncTransferStatus.PENDING;
+
+    @Column(name = "error")
+    private String error;
+
+    // Сколько раз перевод отправлялся повторно после сбоя или перезапуска
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+}
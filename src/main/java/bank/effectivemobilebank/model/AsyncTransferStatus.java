@@ -0,0 +1,7 @@
+package bank.effectivemobilebank.model;
+
+public enum AsyncTransferStatus {
+    PENDING,
+    COMPLETED,
+    FAILED
+}
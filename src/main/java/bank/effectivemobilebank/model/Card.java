@@ -6,7 +6,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.UUID;
 
@@ -23,9 +22,13 @@ public class Card {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @Column(name = "pan_encrypted", nullable = false, unique = true, length = 512)
+    @Column(name = "pan_encrypted", nullable = false, length = 512)
     private String panEncrypted;
 
+    // Слепой индекс номера (HMAC): поиск карты по номеру и уникальность номера
+    @Column(name = "pan_hash", unique = true, length = 64)
+    private String panHash;
+
     @Column(name = "pan_last4", nullable = false, length = 4)
     private String panLast4;
 
@@ -41,7 +44,23 @@ public class Card {
     private CardStatus status = CardStatus.ACTIVE;
 
     @Column(name = "balance", nullable = false, precision = 19, scale = 2)
-    private BigDecimal balance = BigDecimal.ZERO;
+    private Money balance = Money.ZERO;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    @Column(name = "hot", nullable = false)
+    private boolean hot = false;
+
+    // Сумма ещё не свёрнутых полос горячей карты; не хранится в cards и подгружается
+    // отдельным запросом только для горячих карт (HotCardService.loadStripedBalances)
+    @Transient
+    private Money stripedBalance;
+
+    public Money getTotalBalance() {
+        return stripedBalance == null ? balance : balance.plus(stripedBalance);
+    }
 
 }
 
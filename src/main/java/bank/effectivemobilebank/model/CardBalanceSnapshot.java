@@ -0,0 +1,46 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Баланс карты на конец дня (UTC) по проводкам. Баланс на произвольную дату считается
+ * от ближайшего снимка, а не по всей истории карты.
+ */
+@Entity
+@Table(name = "card_balance_snapshots")
+@Getter
+@Setter
+@NoArgsConstructor
+public class CardBalanceSnapshot implements Persistable<CardBalanceSnapshotId> {
+
+    @EmbeddedId
+    private CardBalanceSnapshotId id;
+
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private Money balance = Money.ZERO;
+
+    // Ключ задается вручную, поэтому без флага save() делал бы лишний SELECT перед каждой вставкой
+    @Transient
+    private boolean isNew = true;
+
+    public CardBalanceSnapshot(CardBalanceSnapshotId id, Money balance) {
+        this.id = id;
+        this.balance = balance;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+}
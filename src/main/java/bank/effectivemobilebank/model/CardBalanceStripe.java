@@ -0,0 +1,28 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Часть баланса «горячей» карты. Зачисления распределяются по полосам, чтобы
+ * не упираться в блокировку одной строки cards; полный баланс — сумма
+ * cards.balance и всех полос.
+ */
+@Entity
+@Table(name = "card_balance_stripes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardBalanceStripe {
+
+    @EmbeddedId
+    private CardBalanceStripeId id;
+
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private Money balance = Money.ZERO;
+
+}
@@ -0,0 +1,28 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class CardBalanceStripeId implements Serializable {
+
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Column(name = "stripe", nullable = false)
+    private int stripe;
+
+}
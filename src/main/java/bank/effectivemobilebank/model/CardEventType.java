@@ -0,0 +1,6 @@
+package bank.effectivemobilebank.model;
+
+public enum CardEventType {
+    BALANCE_CHANGED,
+    STATUS_CHANGED
+}
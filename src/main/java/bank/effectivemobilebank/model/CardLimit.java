@@ -0,0 +1,33 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Лимиты карты, заданные администратором. Пустое значение — действует лимит по умолчанию
+ * из {@code bank.limits.*}.
+ */
+@Entity
+@Table(name = "card_limits")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardLimit {
+
+    @Id
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Column(name = "hourly_limit", precision = 19, scale = 2)
+    private Money hourlyLimit;
+
+    @Column(name = "daily_limit", precision = 19, scale = 2)
+    private Money dailyLimit;
+
+}
@@ -0,0 +1,6 @@
+package bank.effectivemobilebank.model;
+
+public enum LedgerDirection {
+    DEBIT,
+    CREDIT
+}
@@ -0,0 +1,53 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Одна проводка двойной записи. Проводки только добавляются и никогда не изменяются;
+ * сумма кредитов минус сумма дебетов по карте равна её балансу.
+ * Пустой {@code cardId} означает внешний счёт (источник пополнений).
+ */
+@Entity
+@Table(name = "ledger_entries")
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "operation_id", nullable = false)
+    private UUID operationId;
+
+    @Column(name = "card_id")
+    private UUID cardId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation_type", nullable = false, length = 20)
+    private LedgerOperationType operationType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "direction", nullable = false, length = 10)
+    private LedgerDirection direction;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private Money amount;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+}
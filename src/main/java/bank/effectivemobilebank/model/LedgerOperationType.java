@@ -0,0 +1,8 @@
+package bank.effectivemobilebank.model;
+
+public enum LedgerOperationType {
+    OPENING_BALANCE,
+    TRANSFER,
+    TOP_UP,
+    ADMIN_TOP_UP
+}
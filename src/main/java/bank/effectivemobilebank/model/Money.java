@@ -0,0 +1,63 @@
+package bank.effectivemobilebank.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма в копейках. Арифметика и сравнения идут по long без создания
+ * BigDecimal; BigDecimal остается только на границе с JSON и колонками NUMERIC(19,2).
+ */
+public record Money(long kopecks) implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+    private static final int SCALE = 2;
+
+    public static Money ofKopecks(long kopecks) {
+        return kopecks == 0 ? ZERO : new Money(kopecks);
+    }
+
+    public static Money of(BigDecimal amount) {
+        try {
+            return ofKopecks(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Сумма должна содержать не больше двух знаков после запятой", e);
+        }
+    }
+
+    public static Money parse(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(kopecks, SCALE);
+    }
+
+    public Money plus(Money other) {
+        return ofKopecks(Math.addExact(kopecks, other.kopecks));
+    }
+
+    public Money minus(Money other) {
+        return ofKopecks(Math.subtractExact(kopecks, other.kopecks));
+    }
+
+    public Money negate() {
+        return ofKopecks(Math.negateExact(kopecks));
+    }
+
+    public int signum() {
+        return Long.signum(kopecks);
+    }
+
+    public boolean isLessThan(Money other) {
+        return kopecks < other.kopecks;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(kopecks, other.kopecks);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,68 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Событие по карте, записанное в той же транзакции, что и само изменение.
+ * Живет в таблице, пока диспетчер не раздаст его слушателям.
+ */
+@Entity
+@Table(name = "outbox_events")
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 20)
+    private CardEventType eventType;
+
+    // Изменение баланса со знаком: списание отрицательное
+    @Column(name = "amount", precision = 19, scale = 2)
+    private Money amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    private CardStatus status;
+
+    @Column(name = "operation_id")
+    private UUID operationId;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public static OutboxEvent balanceChanged(UUID cardId, Money amount, UUID operationId) {
+        OutboxEvent event = new OutboxEvent();
+        event.setCardId(cardId);
+        event.setEventType(CardEventType.BALANCE_CHANGED);
+        event.setAmount(amount);
+        event.setOperationId(operationId);
+        return event;
+    }
+
+    public static OutboxEvent statusChanged(UUID cardId, CardStatus status) {
+        OutboxEvent event = new OutboxEvent();
+        event.setCardId(cardId);
+        event.setEventType(CardEventType.STATUS_CHANGED);
+        event.setStatus(status);
+        return event;
+    }
+
+}
@@ -0,0 +1,30 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Отозванный до истечения срока токен (jti). Запись нужна только до exp токена:
+ * после него токен отклоняется и без списка отзыва.
+ */
+@Entity
+@Table(name = "revoked_tokens")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+}
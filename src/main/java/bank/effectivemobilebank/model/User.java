@@ -35,6 +35,10 @@ public class User {
     @Enumerated(EnumType.STRING)
     private Set<UserRole> roles = new HashSet<>();
 
+    // Растет при смене ролей: токены с прежней версией перестают приниматься
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
+
 }
 
 
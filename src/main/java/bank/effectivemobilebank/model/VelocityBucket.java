@@ -0,0 +1,50 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Сохраненная корзина скользящего окна лимитов. Счетчики живут в памяти,
+ * таблица нужна только чтобы не терять окна при перезапуске.
+ */
+@Entity
+@Table(name = "velocity_buckets")
+@Getter
+@Setter
+@NoArgsConstructor
+public class VelocityBucket implements Persistable<VelocityBucketId> {
+
+    @EmbeddedId
+    private VelocityBucketId id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "scope", nullable = false, length = 10)
+    private VelocityScope scope;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private Money amount = Money.ZERO;
+
+    @Transient
+    private boolean isNew = true;
+
+    public VelocityBucket(VelocityBucketId id, VelocityScope scope, Money amount) {
+        this.id = id;
+        this.scope = scope;
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+}
@@ -0,0 +1,32 @@
+package bank.effectivemobilebank.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class VelocityBucketId implements Serializable {
+
+    @Column(name = "subject_id", nullable = false)
+    private UUID subjectId;
+
+    @Column(name = "bucket_minutes", nullable = false)
+    private int bucketMinutes;
+
+    // Номер интервала от эпохи: минута для минутных корзин, час для часовых
+    @Column(name = "bucket_start", nullable = false)
+    private long bucketStart;
+
+}
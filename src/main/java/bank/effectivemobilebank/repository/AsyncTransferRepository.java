@@ -0,0 +1,32 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.AsyncTransfer;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface AsyncTransferRepository extends JpaRepository<AsyncTransfer, UUID> {
+    Optional<AsyncTransfer> findByIdAndOwnerId(UUID id, UUID ownerId);
+
+    @Query("select t from AsyncTransfer t where t.status = bank.effectivemobilebank.model.AsyncTransferStatus.PENDING "
+        + "and t.createdAt < :before order by t.createdAt")
+    List<AsyncTransfer> findPendingCreatedBefore(@Param("before") Instant before, Limit limit);
+
+    @Modifying
+    @Query("update AsyncTransfer t set t.attempts = t.attempts + 1 where t.id = :id "
+        + "and t.status = bank.effectivemobilebank.model.AsyncTransferStatus.PENDING")
+    int incrementAttempts(@Param("id") UUID id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from AsyncTransfer t where t.id = :id")
+    Optional<AsyncTransfer> findByIdForUpdate(@Param("id") UUID id);
+}
@@ -0,0 +1,25 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.CardBalanceSnapshot;
+import bank.effectivemobilebank.model.CardBalanceSnapshotId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CardBalanceSnapshotRepository extends JpaRepository<CardBalanceSnapshot, CardBalanceSnapshotId> {
+    Optional<CardBalanceSnapshot> findFirstByIdCardIdAndIdSnapshotDateLessThanEqualOrderByIdSnapshotDateDesc(
+        UUID cardId, LocalDate date);
+
+    List<CardBalanceSnapshot> findAllByIdCardIdInAndIdSnapshotDate(Collection<UUID> cardIds, LocalDate date);
+
+    @Modifying
+    @Query("delete from CardBalanceSnapshot s where s.id.cardId in :cardIds and s.id.snapshotDate = :date")
+    int deleteAllByCardIdsAndDate(@Param("cardIds") Collection<UUID> cardIds, @Param("date") LocalDate date);
+}
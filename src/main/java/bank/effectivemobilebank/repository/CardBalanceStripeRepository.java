@@ -0,0 +1,64 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.CardBalanceStripe;
+import bank.effectivemobilebank.model.CardBalanceStripeId;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface CardBalanceStripeRepository extends JpaRepository<CardBalanceStripe, CardBalanceStripeId> {
+    List<CardBalanceStripe> findAllByIdCardId(UUID cardId);
+
+    // Проекция, а не сущности: повторное сворачивание в той же транзакции читает полосы
+    // из базы, а не устаревшие значения из контекста персистентности
+    @Query(value = "select stripe, balance from card_balance_stripes where card_id = :cardId "
+        + "order by stripe for update", nativeQuery = true)
+    List<StripeBalance> findBalancesForUpdate(@Param("cardId") UUID cardId);
+
+    @Modifying
+    @Query("update CardBalanceStripe s set s.balance = s.balance - :amount "
+        + "where s.id.cardId = :cardId and s.id.stripe = :stripe")
+    int withdraw(@Param("cardId") UUID cardId, @Param("stripe") int stripe, @Param("amount") Money amount);
+
+    @Query("select s.id.cardId as cardId, sum(s.balance) as balance from CardBalanceStripe s "
+        + "where s.id.cardId in :cardIds group by s.id.cardId")
+    List<StripeTotal> sumBalances(@Param("cardIds") Collection<UUID> cardIds);
+
+    @Query("select distinct s.id.cardId from CardBalanceStripe s where s.balance <> 0")
+    List<UUID> findCardIdsWithPendingBalance();
+
+    @Modifying
+    @Query("update CardBalanceStripe s set s.balance = s.balance + :amount "
+        + "where s.id.cardId = :cardId and s.id.stripe = :stripe and exists (select 1 from Card c "
+        + "where c.id = :cardId and c.hot = true and c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE "
+        + "and c.expiry >= :today)")
+    int creditIfHot(@Param("cardId") UUID cardId, @Param("stripe") int stripe, @Param("amount") Money amount,
+                    @Param("today") LocalDate today);
+
+    @Modifying
+    @Query("update CardBalanceStripe s set s.balance = s.balance + :amount "
+        + "where s.id.cardId = :cardId and s.id.stripe = :stripe and exists (select 1 from Card c "
+        + "where c.id = :cardId and c.owner = :owner and c.hot = true "
+        + "and c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE and c.expiry >= :today)")
+    int creditIfHot(@Param("cardId") UUID cardId, @Param("owner") User owner, @Param("stripe") int stripe,
+                    @Param("amount") Money amount, @Param("today") LocalDate today);
+
+    interface StripeBalance {
+        int getStripe();
+        BigDecimal getBalance();
+    }
+
+    interface StripeTotal {
+        UUID getCardId();
+        BigDecimal getBalance();
+    }
+}
@@ -0,0 +1,9 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.CardLimit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface CardLimitRepository extends JpaRepository<CardLimit, UUID> {
+}
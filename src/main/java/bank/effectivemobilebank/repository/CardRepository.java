@@ -2,11 +2,21 @@ package bank.effectivemobilebank.repository;
 
 import bank.effectivemobilebank.model.Card;
 import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
 import bank.effectivemobilebank.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -14,6 +24,98 @@ public interface CardRepository extends JpaRepository<Card, UUID> {
     Page<Card> findAllByOwner(User owner, Pageable pageable);
     Page<Card> findAllByOwnerAndStatus(User owner, CardStatus status, Pageable pageable);
     Optional<Card> findByIdAndOwner(UUID id, User owner);
+    boolean existsByIdAndOwner(UUID id, User owner);
+    boolean existsByPanHash(String panHash);
+
+    // Поиск получателя по слепому индексу номера — одно обращение к уникальному индексу
+    @Query("select c.id from Card c where c.panHash = :panHash")
+    Optional<UUID> findIdByPanHash(@Param("panHash") String panHash);
+
+    @Query("select c from Card c where c.panHash is null and c.id > :after order by c.id")
+    List<Card> findWithoutPanHashAfter(@Param("after") UUID after, Limit limit);
+
+    // Без увеличения version, чтобы заполнение индекса не мешало идущим переводам
+    @Modifying
+    @Query("update Card c set c.panHash = :panHash where c.id = :id and c.panHash is null")
+    int updatePanHash(@Param("id") UUID id, @Param("panHash") String panHash);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") UUID id);
+
+    // Блокировка строки без сверки version: карту могли прочитать раньше в той же транзакции,
+    // и блокировка управляемой сущности упала бы на чужом изменении баланса
+    @Query(value = "select id from cards where id = :id for update", nativeQuery = true)
+    Optional<UUID> lockById(@Param("id") UUID id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id and c.owner = :owner")
+    Optional<Card> findByIdAndOwnerForUpdate(@Param("id") UUID id, @Param("owner") User owner);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids and c.owner = :owner order by c.id")
+    List<Card> findAllByIdInAndOwnerForUpdate(@Param("ids") Collection<UUID> ids, @Param("owner") User owner);
+
+    @Modifying
+    @Query("update Card c set c.balance = c.balance - :amount, c.version = c.version + 1 "
+        + "where c.id = :id and c.owner = :owner "
+        + "and c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE and c.expiry >= :today "
+        + "and c.balance >= :amount")
+    int debitIfActive(@Param("id") UUID id, @Param("owner") User owner, @Param("amount") Money amount,
+                      @Param("today") LocalDate today);
+
+    @Modifying
+    @Query("update Card c set c.balance = c.balance + :amount, c.version = c.version + 1 "
+        + "where c.id = :id and c.owner = :owner and c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE "
+        + "and c.expiry >= :today")
+    int creditIfActive(@Param("id") UUID id, @Param("owner") User owner, @Param("amount") Money amount,
+                       @Param("today") LocalDate today);
+
+    @Modifying
+    @Query("update Card c set c.balance = c.balance + :amount, c.version = c.version + 1 "
+        + "where c.id = :id and c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE "
+        + "and c.expiry >= :today")
+    int creditIfActive(@Param("id") UUID id, @Param("amount") Money amount, @Param("today") LocalDate today);
+
+    // Изменение пачки движка переводов: delta может быть любого знака, required — сколько денег
+    // карта должна иметь до пачки, чтобы ни один перевод пачки не увел баланс в минус
+    @Modifying
+    @Query("update Card c set c.balance = c.balance + :delta, c.version = c.version + 1 "
+        + "where c.id = :id and c.owner = :owner and c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE "
+        + "and c.expiry >= :today and c.balance >= :required")
+    int applyIfActive(@Param("id") UUID id, @Param("owner") User owner, @Param("delta") Money delta,
+                      @Param("required") Money required, @Param("today") LocalDate today);
+
+    @Modifying
+    @Query("update Card c set c.balance = c.balance + :amount, c.version = c.version + 1 where c.id = :id")
+    int addToBalance(@Param("id") UUID id, @Param("amount") Money amount);
+
+    @Modifying
+    @Query("update Card c set c.hot = :hot where c.id = :id")
+    int updateHot(@Param("id") UUID id, @Param("hot") boolean hot);
+
+    // Истекшие, но еще активные карты в порядке индекса (status, expiry)
+    @Query("select c.id from Card c where c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE "
+        + "and c.expiry < :today order by c.expiry")
+    List<UUID> findExpiredActiveIds(@Param("today") LocalDate today, Limit limit);
+
+    @Modifying
+    @Query("update Card c set c.status = bank.effectivemobilebank.model.CardStatus.EXPIRED, c.version = c.version + 1 "
+        + "where c.id in :ids and c.status = bank.effectivemobilebank.model.CardStatus.ACTIVE and c.expiry < :today")
+    int expireAll(@Param("ids") Collection<UUID> ids, @Param("today") LocalDate today);
+
+    @Query("select c.id from Card c where c.id in :ids and c.status = :status")
+    List<UUID> findIdsByIdInAndStatus(@Param("ids") Collection<UUID> ids, @Param("status") CardStatus status);
+
+    @Query("select c.id from Card c where c.hot = true")
+    List<UUID> findHotCardIds();
+
+    // Обход всех карт порциями по возрастанию id, без OFFSET и без загрузки сущностей
+    @Query("select c.id from Card c order by c.id")
+    List<UUID> findIdsOrdered(Limit limit);
+
+    @Query("select c.id from Card c where c.id > :after order by c.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Limit limit);
     Page<Card> findAllByStatus(CardStatus status, Pageable pageable);
     Page<Card> findAllByOwnerUsernameContainingIgnoreCase(String username, Pageable pageable);
     Page<Card> findAllByOwnerUsernameContainingIgnoreCaseAndStatus(String username, CardStatus status, Pageable pageable);
@@ -0,0 +1,68 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.LedgerEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, UUID> {
+
+    @Query("select coalesce(sum(case when e.direction = bank.effectivemobilebank.model.LedgerDirection.CREDIT "
+        + "then e.amount else -e.amount end), 0) from LedgerEntry e where e.cardId = :cardId")
+    BigDecimal sumBalanceByCardId(@Param("cardId") UUID cardId);
+
+    @Query("select coalesce(sum(case when e.direction = bank.effectivemobilebank.model.LedgerDirection.CREDIT "
+        + "then e.amount else -e.amount end), 0) from LedgerEntry e where e.cardId = :cardId and e.createdAt < :to")
+    BigDecimal sumBalanceByCardIdBefore(@Param("cardId") UUID cardId, @Param("to") Instant to);
+
+    @Query("select coalesce(sum(case when e.direction = bank.effectivemobilebank.model.LedgerDirection.CREDIT "
+        + "then e.amount else 0 end), 0) as credits, "
+        + "coalesce(sum(case when e.direction = bank.effectivemobilebank.model.LedgerDirection.DEBIT "
+        + "then e.amount else 0 end), 0) as debits "
+        + "from LedgerEntry e where e.cardId = :cardId and e.createdAt >= :from and e.createdAt < :to")
+    Turnover sumTurnoverByCardIdBetween(@Param("cardId") UUID cardId, @Param("from") Instant from,
+                                        @Param("to") Instant to);
+
+    @Query("select e.cardId as cardId, sum(case when e.direction = bank.effectivemobilebank.model.LedgerDirection.CREDIT "
+        + "then e.amount else -e.amount end) as balance from LedgerEntry e "
+        + "where e.cardId in :cardIds group by e.cardId")
+    List<CardTotal> sumBalances(@Param("cardIds") Collection<UUID> cardIds);
+
+    @Query("select e.cardId as cardId, sum(case when e.direction = bank.effectivemobilebank.model.LedgerDirection.CREDIT "
+        + "then e.amount else -e.amount end) as balance from LedgerEntry e "
+        + "where e.cardId in :cardIds and e.createdAt < :to group by e.cardId")
+    List<CardTotal> sumBalancesBefore(@Param("cardIds") Collection<UUID> cardIds, @Param("to") Instant to);
+
+    @Query("select e.cardId as cardId, sum(case when e.direction = bank.effectivemobilebank.model.LedgerDirection.CREDIT "
+        + "then e.amount else -e.amount end) as balance from LedgerEntry e "
+        + "where e.cardId in :cardIds and e.createdAt >= :from and e.createdAt < :to group by e.cardId")
+    List<CardTotal> sumBalancesBetween(@Param("cardIds") Collection<UUID> cardIds, @Param("from") Instant from,
+                                       @Param("to") Instant to);
+
+    @Query("select e from LedgerEntry e where e.cardId = :cardId order by e.createdAt desc, e.id desc")
+    List<LedgerEntry> findHistory(@Param("cardId") UUID cardId, Limit limit);
+
+    // Продолжение с позиции (createdAt, id) последней выданной записи, без OFFSET
+    @Query("select e from LedgerEntry e where e.cardId = :cardId "
+        + "and (e.createdAt < :createdAt or (e.createdAt = :createdAt and e.id < :id)) "
+        + "order by e.createdAt desc, e.id desc")
+    List<LedgerEntry> findHistoryBefore(@Param("cardId") UUID cardId, @Param("createdAt") Instant createdAt,
+                                        @Param("id") UUID id, Limit limit);
+
+    interface Turnover {
+        BigDecimal getCredits();
+        BigDecimal getDebits();
+    }
+
+    interface CardTotal {
+        UUID getCardId();
+        BigDecimal getBalance();
+    }
+}
@@ -0,0 +1,23 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, UUID> {
+
+    // Самые старые события с блокировкой; строки, занятые другим диспетчером, пропускаются.
+    // Таймаут -2 Hibernate превращает в FOR UPDATE SKIP LOCKED
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from OutboxEvent e order by e.createdAt, e.id")
+    List<OutboxEvent> lockBatch(Limit limit);
+}
@@ -0,0 +1,27 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, UUID> {
+
+    @Query("select r.id from RevokedToken r where r.expiresAt > :now")
+    List<UUID> findLiveIds(@Param("now") Instant now);
+
+    // Возвращает 0, если токен уже отозван: из двух одновременных отзывов успешен один
+    @Modifying
+    @Query(value = "insert into revoked_tokens (id, expires_at) values (:id, :expiresAt) on conflict do nothing",
+        nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("expiresAt") Instant expiresAt);
+
+    @Modifying
+    @Query("delete from RevokedToken r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
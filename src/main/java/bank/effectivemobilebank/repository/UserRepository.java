@@ -1,14 +1,22 @@
 package bank.effectivemobilebank.repository;
 
 import bank.effectivemobilebank.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 import java.util.UUID;
 
 public interface UserRepository extends JpaRepository<User, UUID> {
+    // Роли одним запросом с пользователем, а не вторым SELECT по user_roles
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
+
+    @Query("select u.username from User u where u.id = :id")
+    Optional<String> findUsernameById(@Param("id") UUID id);
 }
 
 
@@ -0,0 +1,41 @@
+package bank.effectivemobilebank.repository;
+
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.VelocityBucket;
+import bank.effectivemobilebank.model.VelocityBucketId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+public interface VelocityBucketRepository extends JpaRepository<VelocityBucket, VelocityBucketId> {
+
+    // Корзины, еще попадающие в окна: минутные за последний час и часовые за последние сутки
+    @Query("select b from VelocityBucket b where (b.id.bucketMinutes = 1 and b.id.bucketStart > :minute - 60) "
+        + "or (b.id.bucketMinutes = 60 and b.id.bucketStart > :hour - 24)")
+    List<VelocityBucket> findLive(@Param("minute") long minute, @Param("hour") long hour);
+
+    @Modifying
+    @Query("delete from VelocityBucket b where (b.id.bucketMinutes = 1 and b.id.bucketStart <= :minute - 60) "
+        + "or (b.id.bucketMinutes = 60 and b.id.bucketStart <= :hour - 24)")
+    int deleteExpired(@Param("minute") long minute, @Param("hour") long hour);
+
+    // Возвращает 0, если корзина уже есть: тогда приращение прибавляется через addAmount
+    @Modifying
+    @Query(value = "insert into velocity_buckets (subject_id, bucket_minutes, bucket_start, scope, amount) "
+        + "values (:subjectId, :bucketMinutes, :bucketStart, :scope, :amount) on conflict do nothing",
+        nativeQuery = true)
+    int insertIfAbsent(@Param("subjectId") UUID subjectId, @Param("bucketMinutes") int bucketMinutes,
+                       @Param("bucketStart") long bucketStart, @Param("scope") String scope,
+                       @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("update VelocityBucket b set b.amount = b.amount + :delta where b.id.subjectId = :subjectId "
+        + "and b.id.bucketMinutes = :bucketMinutes and b.id.bucketStart = :bucketStart")
+    int addAmount(@Param("subjectId") UUID subjectId, @Param("bucketMinutes") int bucketMinutes,
+                  @Param("bucketStart") long bucketStart, @Param("delta") Money delta);
+}
@@ -0,0 +1,90 @@
+package bank.effectivemobilebank.security;
+
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.service.UserCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Выдача пары access/refresh-токенов, обмен refresh-токена и выход.
+ * Refresh-токен одноразовый: при обмене он отзывается, повторное предъявление отклоняется.
+ */
+@Service
+public class AuthTokenService {
+    private final JwtService jwtService;
+    private final TokenRevocationService revocationService;
+    private final UserCache userCache;
+
+    public AuthTokenService(JwtService jwtService, TokenRevocationService revocationService, UserCache userCache) {
+        this.jwtService = jwtService;
+        this.revocationService = revocationService;
+        this.userCache = userCache;
+    }
+
+    public record TokenPair(String token, String refreshToken) {
+    }
+
+    public TokenPair issue(User user) {
+        Map<String, Object> claims = AuthenticatedUser.claimsOf(user);
+        return new TokenPair(jwtService.generate(user.getUsername(), claims),
+            jwtService.generateRefresh(user.getUsername(), claims));
+    }
+
+    /**
+     * Обменивает refresh-токен на новую пару. Пусто, если токен недействителен, уже использован
+     * или отозван, а также если пользователь удален или его роли сменились после выдачи.
+     */
+    public Optional<TokenPair> refresh(String refreshToken) {
+        Claims claims = parseQuietly(refreshToken);
+        if (claims == null || !JwtService.isRefreshToken(claims) || revocationService.isRevoked(claims)) {
+            return Optional.empty();
+        }
+        AuthenticatedUser principal;
+        try {
+            principal = AuthenticatedUser.fromClaims(claims);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        UserCache.CachedUser current = userCache.find(principal.username()).orElse(null);
+        if (current == null || !current.id().equals(principal.id()) || current.tokenVersion() != principal.tokenVersion()) {
+            return Optional.empty();
+        }
+        // Отзыв атомарен в базе: из двух одновременных обменов одного токена проходит один
+        if (!revocationService.revoke(claims)) {
+            return Optional.empty();
+        }
+        return Optional.of(issue(current.toUser()));
+    }
+
+    /**
+     * Отзывает access-токен и, если передан, refresh-токен того же пользователя.
+     * Возвращает false, если access-токен недействителен.
+     */
+    public boolean logout(String accessToken, String refreshToken) {
+        Claims access = parseQuietly(accessToken);
+        if (access == null || JwtService.isRefreshToken(access)) {
+            return false;
+        }
+        revocationService.revoke(access);
+        Claims refresh = parseQuietly(refreshToken);
+        if (refresh != null && JwtService.isRefreshToken(refresh) && access.getSubject().equals(refresh.getSubject())) {
+            revocationService.revoke(refresh);
+        }
+        return true;
+    }
+
+    private Claims parseQuietly(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            return jwtService.parse(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package bank.effectivemobilebank.security;
+
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import io.jsonwebtoken.Claims;
+
+import java.security.Principal;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Пользователь запроса, собранный из подписанных claims токена без обращения к базе:
+ * id, логин, роли и версия токена.
+ */
+public record AuthenticatedUser(UUID id, String username, Set<UserRole> roles, int tokenVersion)
+    implements Principal {
+
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLES_CLAIM = "roles";
+    static final String TOKEN_VERSION_CLAIM = "ver";
+
+    public static Map<String, Object> claimsOf(User user) {
+        return Map.of(
+            USER_ID_CLAIM, user.getId().toString(),
+            ROLES_CLAIM, user.getRoles().stream().map(UserRole::name).toList(),
+            TOKEN_VERSION_CLAIM, user.getTokenVersion()
+        );
+    }
+
+    // Токены, выданные до появления id в claims, не принимаются — нужен повторный вход
+    static AuthenticatedUser fromClaims(Claims claims) {
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        Integer tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Integer.class);
+        if (userId == null || tokenVersion == null) {
+            throw new IllegalArgumentException("В токене нет id пользователя или версии");
+        }
+        Set<UserRole> roles = EnumSet.noneOf(UserRole.class);
+        List<?> names = claims.get(ROLES_CLAIM, List.class);
+        if (names != null) {
+            for (Object name : names) {
+                roles.add(UserRole.valueOf(name.toString()));
+            }
+        }
+        return new AuthenticatedUser(UUID.fromString(userId), claims.getSubject(), roles, tokenVersion);
+    }
+
+    /**
+     * Ссылка на пользователя для сервисов: id, логин и роли из токена, без хеша пароля.
+     * Годится для запросов по владельцу и связей с картами; сущность из базы не читается.
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setRoles(new HashSet<>(roles));
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
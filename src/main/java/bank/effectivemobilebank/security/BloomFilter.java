@@ -0,0 +1,59 @@
+package bank.effectivemobilebank.security;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Неизменяемый фильтр Блума по UUID. Собирается целиком из набора id и после этого
+ * только читается, поэтому безопасен для потоков без синхронизации. Ложных отрицаний нет;
+ * доля ложных срабатываний при заданном числе элементов — около {@code falsePositiveRate}.
+ */
+final class BloomFilter {
+    private final long[] words;
+    private final int bits;
+    private final int hashes;
+
+    BloomFilter(Collection<UUID> ids, double falsePositiveRate) {
+        int expected = Math.max(1, ids.size());
+        double ln2 = Math.log(2);
+        long optimal = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimal));
+        this.words = new long[(bits + 63) >>> 6];
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expected * ln2));
+        for (UUID id : ids) {
+            long h1 = mix(id.getMostSignificantBits());
+            long h2 = mix(id.getLeastSignificantBits());
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(h1, h2, i);
+                words[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    boolean mightContain(UUID id) {
+        long h1 = mix(id.getMostSignificantBits());
+        long h2 = mix(id.getLeastSignificantBits());
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(h1, h2, i);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Двойное хеширование Кирша — Митценмахера: k индексов из двух хешей
+    private int index(long h1, long h2, int i) {
+        return (int) Long.remainderUnsigned(h1 + i * h2, bits);
+    }
+
+    // Финальное перемешивание MurmurHash3
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
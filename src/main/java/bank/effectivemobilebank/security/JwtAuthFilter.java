@@ -1,8 +1,6 @@
 package bank.effectivemobilebank.security;
 
-import bank.effectivemobilebank.model.User;
-import bank.effectivemobilebank.model.UserRole;
-import bank.effectivemobilebank.service.UserService;
+import bank.effectivemobilebank.service.UserCache;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -10,23 +8,27 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Set;
-import java.util.stream.Collectors;
 
+/**
+ * Аутентификация по JWT без обращения к базе: id, роли и версия токена берутся
+ * из подписанных claims и сверяются с пользователем из {@link UserCache}, отзыв токена
+ * проверяется по памяти в {@link TokenRevocationService}. Принципал запроса — {@link AuthenticatedUser}.
+ */
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
-    private final UserService userService;
+    private final UserCache userCache;
+    private final TokenRevocationService revocationService;
 
-    public JwtAuthFilter(JwtService jwtService, UserService userService) {
+    public JwtAuthFilter(JwtService jwtService, UserCache userCache, TokenRevocationService revocationService) {
         this.jwtService = jwtService;
-        this.userService = userService;
+        this.userCache = userCache;
+        this.revocationService = revocationService;
     }
 
     @Override
@@ -38,15 +40,16 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             String token = auth.substring(7);
             try {
                 Claims claims = jwtService.parse(token);
-                String username = claims.getSubject();
-                User user = userService.findByUsername(username).orElse(null);
-                if (user != null) {
-                    Set<SimpleGrantedAuthority> authorities = user.getRoles().stream()
-                        .map(UserRole::name)
-                        .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                        .collect(Collectors.toSet());
-                    var authToken = new UsernamePasswordAuthenticationToken(username, null, authorities);
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                // Refresh-токен годится только для /api/auth/refresh
+                if (!JwtService.isRefreshToken(claims) && !revocationService.isRevoked(claims)) {
+                    AuthenticatedUser user = AuthenticatedUser.fromClaims(claims);
+                    // Удаленный пользователь или токен, выданный до смены ролей, не принимаются
+                    UserCache.CachedUser current = userCache.find(user.username()).orElse(null);
+                    if (current != null && current.id().equals(user.id())
+                        && current.tokenVersion() == user.tokenVersion()) {
+                        var authToken = new UsernamePasswordAuthenticationToken(user, null, current.authorities());
+                        SecurityContextHolder.getContext().setAuthentication(authToken);
+                    }
                 }
             } catch (Exception ignored) {
             }
@@ -54,5 +57,3 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 }
-
-
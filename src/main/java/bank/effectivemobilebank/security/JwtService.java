@@ -1,6 +1,10 @@
 package bank.effectivemobilebank.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -8,18 +12,33 @@ import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JwtService {
+    static final String TOKEN_TYPE_CLAIM = "typ";
+    static final String REFRESH_TOKEN_TYPE = "refresh";
+
     private final Key key;
     private final long expirationMinutes;
+    private final long refreshExpirationDays;
+    // Парсер неизменяемый и потокобезопасный, собирается один раз
+    private final JwtParser parser;
+    private final Cache<String, Claims> verified;
 
     public JwtService(@Value("${security.jwt.secret}") String secret,
-                      @Value("${security.jwt.expiration-minutes}") long expirationMinutes) {
+                      @Value("${security.jwt.expiration-minutes}") long expirationMinutes,
+                      @Value("${security.jwt.refresh-expiration-days:30}") long refreshExpirationDays,
+                      @Value("${security.jwt.cache-size:10000}") long cacheSize) {
         byte[] bytes;
         try {
             bytes = Decoders.BASE64.decode(secret);
@@ -28,22 +47,91 @@ public class JwtService {
         }
         this.key = Keys.hmacShaKeyFor(bytes.length >= 32 ? bytes : pad(bytes, 32));
         this.expirationMinutes = expirationMinutes;
+        this.refreshExpirationDays = refreshExpirationDays;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verified = cacheSize > 0
+            ? Caffeine.newBuilder().maximumSize(cacheSize).expireAfter(new UntilTokenExpiry()).build()
+            : null;
     }
 
     public String generate(String subject, Map<String, Object> claims) {
-        Instant now = Instant.now();
-        Instant exp = now.plusSeconds(expirationMinutes * 60);
-        return Jwts.builder()
+        return build(subject, claims, null, Instant.now().plusSeconds(expirationMinutes * 60));
+    }
+
+    /**
+     * Refresh-токен с теми же claims: годится только для обмена на новую пару
+     * через /api/auth/refresh, JwtAuthFilter его не принимает.
+     */
+    public String generateRefresh(String subject, Map<String, Object> claims) {
+        return build(subject, claims, REFRESH_TOKEN_TYPE, Instant.now().plusSeconds(refreshExpirationDays * 86_400));
+    }
+
+    public static boolean isRefreshToken(Claims claims) {
+        return REFRESH_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM, String.class));
+    }
+
+    // У каждого токена свой jti, по нему токен можно отозвать до истечения срока
+    private String build(String subject, Map<String, Object> claims, String type, Instant exp) {
+        var builder = Jwts.builder()
             .setClaims(claims)
+            .setId(UUID.randomUUID().toString())
             .setSubject(subject)
-            .setIssuedAt(Date.from(now))
-            .setExpiration(Date.from(exp))
-            .signWith(key, SignatureAlgorithm.HS256)
-            .compact();
+            .setIssuedAt(new Date())
+            .setExpiration(Date.from(exp));
+        if (type != null) {
+            builder.claim(TOKEN_TYPE_CLAIM, type);
+        }
+        return builder.signWith(key, SignatureAlgorithm.HS256).compact();
     }
 
+    /**
+     * Проверяет подпись и срок токена и возвращает его claims. Проверенные токены
+     * кешируются по SHA-256 до своего exp, так что повторный запрос с тем же токеном
+     * не тратит время на HMAC и разбор JSON. Возвращаемые claims общие для всех
+     * запросов с этим токеном — менять их нельзя.
+     */
     public Claims parse(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        if (verified == null || token == null) {
+            return parser.parseClaimsJws(token).getBody();
+        }
+        String hash = sha256(token);
+        Claims claims = verified.getIfPresent(hash);
+        if (claims == null) {
+            claims = parser.parseClaimsJws(token).getBody();
+            // токены без exp не кешируем: срок их жизни не ограничен
+            if (claims.getExpiration() != null) {
+                verified.put(hash, claims);
+            }
+        }
+        return claims;
+    }
+
+    // Запись живет до exp токена: после него разбор заново вернет ExpiredJwtException
+    private static final class UntilTokenExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String hash, Claims claims, long currentTime) {
+            long millis = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String hash, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(hash, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String hash, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
     }
 
     private static byte[] pad(byte[] src, int size) {
@@ -52,5 +140,3 @@ public class JwtService {
         return out;
     }
 }
-
-
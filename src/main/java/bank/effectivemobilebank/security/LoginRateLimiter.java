@@ -0,0 +1,149 @@
+package bank.effectivemobilebank.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение попыток входа: token bucket на логин и на IP. Попытка проходит, только если
+ * в обоих ведрах есть жетон, иначе отклоняется до проверки пароля и не тратит BCrypt.
+ * Ведра лежат в полосах с собственной блокировкой; каждая полоса — LRU-карта ограниченного
+ * размера, так что память не растет от перебора логинов и адресов. Вытесненное ведро
+ * при следующей попытке создается полным. Отказы видны в bank.login.rejected{scope}.
+ */
+@Component
+public class LoginRateLimiter {
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final BucketStore byIp;
+    private final BucketStore byUsername;
+    private final Counter ipRejected;
+    private final Counter usernameRejected;
+
+    public LoginRateLimiter(MeterRegistry meterRegistry,
+                            @Value("${bank.login.ip-capacity:20}") int ipCapacity,
+                            @Value("${bank.login.ip-refill-per-minute:20}") int ipRefillPerMinute,
+                            @Value("${bank.login.username-capacity:5}") int usernameCapacity,
+                            @Value("${bank.login.username-refill-per-minute:5}") int usernameRefillPerMinute,
+                            @Value("${bank.login.stripes:64}") int stripes,
+                            @Value("${bank.login.max-tracked-keys:100000}") int maxTrackedKeys) {
+        this.byIp = new BucketStore(ipCapacity, ipRefillPerMinute, stripes, maxTrackedKeys);
+        this.byUsername = new BucketStore(usernameCapacity, usernameRefillPerMinute, stripes, maxTrackedKeys);
+        this.ipRejected = meterRegistry.counter("bank.login.rejected", "scope", "ip");
+        this.usernameRejected = meterRegistry.counter("bank.login.rejected", "scope", "username");
+        Gauge.builder("bank.login.buckets", this, limiter -> limiter.byIp.size() + limiter.byUsername.size())
+            .register(meterRegistry);
+    }
+
+    /**
+     * Итог проверки: при отказе — через сколько секунд в ведре появится жетон.
+     */
+    public record Decision(boolean allowed, long retryAfterSeconds) {
+        static final Decision ALLOWED = new Decision(true, 0);
+    }
+
+    public Decision tryAcquire(String username, String ip) {
+        return tryAcquire(username, ip, System.nanoTime());
+    }
+
+    // Полосы всегда берутся в порядке IP, затем логин, поэтому взаимных блокировок нет
+    Decision tryAcquire(String username, String ip, long now) {
+        Object ipLock = byIp.lockFor(ip);
+        Object usernameLock = byUsername.lockFor(username);
+        synchronized (ipLock) {
+            synchronized (usernameLock) {
+                long ipWait = byIp.nanosUntilToken(ip, now);
+                long usernameWait = byUsername.nanosUntilToken(username, now);
+                if (ipWait > 0) {
+                    ipRejected.increment();
+                } else if (usernameWait > 0) {
+                    usernameRejected.increment();
+                } else {
+                    byIp.take(ip);
+                    byUsername.take(username);
+                    return Decision.ALLOWED;
+                }
+                long waitNanos = Math.max(ipWait, usernameWait);
+                return new Decision(false, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+
+    // Нулевая емкость отключает ограничение по этому признаку
+    private static final class BucketStore {
+        private final int capacity;
+        private final double tokensPerNano;
+        private final Object[] locks;
+        private final Map<String, Bucket>[] stripes;
+
+        @SuppressWarnings("unchecked")
+        BucketStore(int capacity, int refillPerMinute, int stripeCount, int maxTrackedKeys) {
+            this.capacity = Math.max(0, capacity);
+            this.tokensPerNano = (double) Math.max(1, refillPerMinute) / NANOS_PER_MINUTE;
+            int count = Math.max(1, stripeCount);
+            int perStripe = Math.max(1, maxTrackedKeys / count);
+            this.locks = new Object[count];
+            this.stripes = new Map[count];
+            for (int i = 0; i < count; i++) {
+                locks[i] = new Object();
+                stripes[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                        return size() > perStripe;
+                    }
+                };
+            }
+        }
+
+        Object lockFor(String key) {
+            return locks[stripe(key)];
+        }
+
+        // Вызывается под блокировкой полосы ключа
+        long nanosUntilToken(String key, long now) {
+            if (capacity == 0) {
+                return 0;
+            }
+            Bucket bucket = stripes[stripe(key)].computeIfAbsent(key, k -> new Bucket(capacity, now));
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * tokensPerNano);
+            bucket.refilledAt = now;
+            return bucket.tokens >= 1 ? 0 : (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+        }
+
+        void take(String key) {
+            if (capacity > 0) {
+                stripes[stripe(key)].get(key).tokens -= 1;
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (int i = 0; i < stripes.length; i++) {
+                synchronized (locks[i]) {
+                    size += stripes[i].size();
+                }
+            }
+            return size;
+        }
+
+        private int stripe(String key) {
+            return Math.floorMod(key.hashCode(), locks.length);
+        }
+    }
+}
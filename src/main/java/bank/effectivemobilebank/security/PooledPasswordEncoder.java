@@ -0,0 +1,112 @@
+package bank.effectivemobilebank.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt на отдельном ограниченном пуле потоков. Хеширование и проверка пароля занимают
+ * не больше {@code threads} ядер, поэтому всплеск входов не отнимает процессор у остальных
+ * запросов. Вызывающий поток ждет результата; если в очереди уже {@code queueCapacity} задач,
+ * вызов сразу завершается {@link RejectedExecutionException} (контроллеры отвечают 503).
+ * <p>
+ * Хеш с cost, отличным от настроенного, {@link #upgradeEncoding} помечает к перехешированию:
+ * при успешном входе DaoAuthenticationProvider сохраняет новый хеш через UserDetailsPasswordService.
+ * Метрики: bank.password.hash{operation} — время BCrypt, bank.password.queue.wait — ожидание
+ * в очереди, bank.password.queue.size и bank.password.rejected.
+ */
+public class PooledPasswordEncoder implements PasswordEncoder {
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final PasswordEncoder delegate;
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public PooledPasswordEncoder(int cost, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this(new BCryptPasswordEncoder(cost), cost, threads, queueCapacity, meterRegistry);
+    }
+
+    PooledPasswordEncoder(PasswordEncoder delegate, int cost, int threads, int queueCapacity,
+                          MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cost = cost;
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            Thread.ofPlatform().name("password-hash-", 0).daemon(true).factory(),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.encodeTimer = meterRegistry.timer("bank.password.hash", "operation", "encode");
+        this.matchesTimer = meterRegistry.timer("bank.password.hash", "operation", "matches");
+        this.queueWait = meterRegistry.timer("bank.password.queue.wait");
+        this.rejected = meterRegistry.counter("bank.password.rejected");
+        Gauge.builder("bank.password.queue.size", executor, pool -> pool.getQueue().size())
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    // Перехешируются и более слабые, и более сильные хеши, чтобы снижение cost тоже применялось
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != cost;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Timer timer, Supplier<T> task) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.record(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RejectedExecutionException("Слишком много запросов на вход, повторите позже");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Проверка пароля прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
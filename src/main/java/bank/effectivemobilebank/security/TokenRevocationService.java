@@ -0,0 +1,109 @@
+package bank.effectivemobilebank.security;
+
+import bank.effectivemobilebank.repository.RevokedTokenRepository;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Список отозванных токенов (jti). Хранится в revoked_tokens до exp токена, а проверка на
+ * каждый запрос идет только по памяти: фильтр Блума по снимку из базы отвечает «точно не
+ * отозван» почти для всех токенов, а его срабатывания (отозванные токены и около 1% ложных)
+ * подтверждаются двоичным поиском по отсортированному массиву id снимка ({@link UuidSet}).
+ * Токены, отозванные на этом экземпляре после снимка, лежат в небольшом наборе {@code recent}
+ * и видны сразу; отзывы с других экземпляров подхватываются при пересборке снимка
+ * раз в {@code security.jwt.revocation-refresh-ms}.
+ */
+@Service
+public class TokenRevocationService {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final RevokedTokenRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<UUID, Instant> recent = new ConcurrentHashMap<>();
+    private final Counter falsePositives;
+    private volatile Snapshot snapshot = snapshotOf(List.of());
+
+    private record Snapshot(BloomFilter filter, UuidSet ids) {
+    }
+
+    public TokenRevocationService(RevokedTokenRepository repository,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.falsePositives = meterRegistry.counter("bank.tokens.revocation.false-positives");
+        Gauge.builder("bank.tokens.revoked", this, service -> service.snapshot.ids().size() + service.recent.size())
+            .register(meterRegistry);
+    }
+
+    // Токены без jti (выданы до появления списка отзыва) отозвать нельзя, они доживают до exp
+    public boolean isRevoked(Claims claims) {
+        String tokenId = claims.getId();
+        return tokenId != null && isRevoked(UUID.fromString(tokenId));
+    }
+
+    boolean isRevoked(UUID tokenId) {
+        if (!recent.isEmpty() && recent.containsKey(tokenId)) {
+            return true;
+        }
+        Snapshot current = snapshot;
+        if (!current.filter().mightContain(tokenId)) {
+            return false;
+        }
+        if (current.ids().contains(tokenId)) {
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * Отзывает токен до его exp. Возвращает false, если токен уже был отозван
+     * (в том числе одновременным вызовом на другом экземпляре) или его нельзя отозвать.
+     */
+    public boolean revoke(Claims claims) {
+        if (claims.getId() == null || claims.getExpiration() == null) {
+            return false;
+        }
+        UUID tokenId = UUID.fromString(claims.getId());
+        Instant expiresAt = claims.getExpiration().toInstant();
+        Integer inserted = transactionTemplate.execute(status -> repository.insertIfAbsent(tokenId, expiresAt));
+        recent.put(tokenId, expiresAt);
+        return inserted != null && inserted > 0;
+    }
+
+    /**
+     * Пересобирает снимок из базы и удаляет истекшие записи. Из {@code recent} убираются
+     * id, попавшие в новый снимок, и истекшие. Отзыв, закоммиченный после чтения, остается
+     * в наборе до следующей пересборки.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${security.jwt.revocation-refresh-ms:30000}",
+        initialDelayString = "${security.jwt.revocation-refresh-ms:30000}")
+    public void rebuild() {
+        Instant now = Instant.now();
+        transactionTemplate.executeWithoutResult(status -> repository.deleteExpired(now));
+        List<UUID> ids = repository.findLiveIds(now);
+        Snapshot rebuilt = snapshotOf(ids);
+        snapshot = rebuilt;
+        recent.entrySet().removeIf(entry -> rebuilt.ids().contains(entry.getKey())
+            || entry.getValue().isBefore(now));
+    }
+
+    private static Snapshot snapshotOf(List<UUID> ids) {
+        return new Snapshot(new BloomFilter(ids, FALSE_POSITIVE_RATE), new UuidSet(ids));
+    }
+}
@@ -1,36 +1,35 @@
 package bank.effectivemobilebank.security;
 
-import bank.effectivemobilebank.model.User;
-import bank.effectivemobilebank.model.UserRole;
-import bank.effectivemobilebank.repository.UserRepository;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import bank.effectivemobilebank.service.UserCache;
+import bank.effectivemobilebank.service.UserService;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
-import java.util.stream.Collectors;
-
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
-    private final UserRepository userRepository;
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
+    private final UserCache userCache;
+    private final UserService userService;
 
-    public UserDetailsServiceImpl(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public UserDetailsServiceImpl(UserCache userCache, UserService userService) {
+        this.userCache = userCache;
+        this.userService = userService;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        UserCache.CachedUser user = userCache.find(username)
             .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        Set<SimpleGrantedAuthority> authorities = user.getRoles().stream()
-            .map(UserRole::name)
-            .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-            .collect(Collectors.toSet());
         return new org.springframework.security.core.userdetails.User(
-            user.getUsername(), user.getPasswordHash(), authorities);
+            user.username(), user.passwordHash(), user.authorities());
     }
-}
-
 
+    // Вызывается DaoAuthenticationProvider после успешного входа, если cost хеша отличается от настроенного
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userService.updatePasswordHash(user.getUsername(), newPassword);
+        return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
+    }
+}
@@ -0,0 +1,57 @@
+package bank.effectivemobilebank.security;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Неизменяемое множество UUID в одном отсортированном массиве половин id: 16 байт на
+ * элемент против ~80 у {@code HashSet<UUID>}. Поиск двоичный, безопасен для потоков
+ * без синхронизации. Используется для точного подтверждения срабатываний {@link BloomFilter}.
+ */
+final class UuidSet {
+    private final long[] halves;
+
+    UuidSet(Collection<UUID> ids) {
+        UUID[] sorted = ids.toArray(UUID[]::new);
+        Arrays.sort(sorted);
+        long[] packed = new long[sorted.length * 2];
+        int size = 0;
+        for (UUID id : sorted) {
+            if (size > 0 && packed[size - 2] == id.getMostSignificantBits()
+                && packed[size - 1] == id.getLeastSignificantBits()) {
+                continue;
+            }
+            packed[size++] = id.getMostSignificantBits();
+            packed[size++] = id.getLeastSignificantBits();
+        }
+        this.halves = size == packed.length ? packed : Arrays.copyOf(packed, size);
+    }
+
+    int size() {
+        return halves.length / 2;
+    }
+
+    // Порядок совпадает с UUID.compareTo: знаковое сравнение старшей, затем младшей половины
+    boolean contains(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(halves[2 * mid], msb);
+            if (cmp == 0) {
+                cmp = Long.compare(halves[2 * mid + 1], lsb);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+}
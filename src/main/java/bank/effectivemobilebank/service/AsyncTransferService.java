@@ -0,0 +1,229 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.AsyncTransfer;
+import bank.effectivemobilebank.model.AsyncTransferStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.AsyncTransferRepository;
+import bank.effectivemobilebank.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронные переводы: запрос сохраняется со статусом PENDING, а сам перевод выполняется
+ * на виртуальном потоке. Одновременно к базе идут не больше max-in-flight переводов,
+ * остальные ждут на семафоре; сверх max-pending новые переводы не принимаются.
+ * Перевод, оставшийся PENDING после сбоя базы или перезапуска, отправляется повторно
+ * раз в redispatch-interval-ms; после max-attempts повторов он помечается FAILED.
+ * О завершении клиент узнает опросом статуса перевода, отдельного уведомления нет.
+ */
+@Service
+public class AsyncTransferService {
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final int REDISPATCH_BATCH = 1000;
+    private static final String ATTEMPTS_EXHAUSTED = "Перевод не выполнен: исчерпаны попытки";
+
+    private final AsyncTransferRepository repository;
+    private final UserRepository userRepository;
+    private final CardService cardService;
+    private final ConcurrencyRetry retry;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final AtomicInteger pending = new AtomicInteger();
+    // Переводы, отправленные на выполнение этим экземпляром и еще не завершенные
+    private final Set<UUID> dispatched = ConcurrentHashMap.newKeySet();
+    private final int maxPending;
+    private final int maxAttempts;
+    private final long staleAfterMillis;
+
+    public AsyncTransferService(AsyncTransferRepository repository,
+                                UserRepository userRepository,
+                                CardService cardService,
+                                ConcurrencyRetry retry,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${bank.transfer.async.max-in-flight:32}") int maxInFlight,
+                                @Value("${bank.transfer.async.max-pending:10000}") int maxPending,
+                                @Value("${bank.transfer.async.max-attempts:5}") int maxAttempts,
+                                @Value("${bank.transfer.async.stale-after-ms:60000}") long staleAfterMillis) {
+        this.repository = repository;
+        this.userRepository = userRepository;
+        this.cardService = cardService;
+        this.retry = retry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.maxPending = maxPending;
+        this.maxAttempts = maxAttempts;
+        this.staleAfterMillis = staleAfterMillis;
+    }
+
+    /**
+     * Принимает перевод. Если вызов идет внутри транзакции (например, с ключом
+     * идемпотентности), перевод начнет выполняться только после ее коммита.
+     */
+    public AsyncTransfer submit(User owner, UUID fromCardId, UUID toCardId, Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Сумма должна быть положительной");
+        }
+        if (fromCardId.equals(toCardId)) {
+            throw new IllegalArgumentException("Карты должны отличаться");
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Слишком много переводов в обработке");
+        }
+        AsyncTransfer transfer = new AsyncTransfer();
+        transfer.setOwnerId(owner.getId());
+        transfer.setFromCardId(fromCardId);
+        transfer.setToCardId(toCardId);
+        transfer.setAmount(amount);
+        try {
+            transfer = repository.save(transfer);
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+        UUID transferId = transfer.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatch(transferId, owner);
+                    } else {
+                        pending.decrementAndGet();
+                    }
+                }
+            });
+        } else {
+            dispatch(transferId, owner);
+        }
+        return transfer;
+    }
+
+    public AsyncTransfer findForOwner(User owner, UUID transferId) {
+        return repository.findByIdAndOwnerId(transferId, owner.getId()).orElseThrow();
+    }
+
+    // Переводы, не завершенные до остановки приложения, доводятся после старта.
+    // Статус меняется вместе с балансами, поэтому PENDING означает, что деньги еще не двигались
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        redispatch(Instant.now());
+    }
+
+    // Переводы, оставшиеся PENDING после сбоя базы, повторяются без перезапуска приложения
+    @Scheduled(fixedDelayString = "${bank.transfer.async.redispatch-interval-ms:60000}",
+        initialDelayString = "${bank.transfer.async.redispatch-interval-ms:60000}")
+    public void redispatchStale() {
+        redispatch(Instant.now().minusMillis(staleAfterMillis));
+    }
+
+    private void redispatch(Instant createdBefore) {
+        for (AsyncTransfer transfer : repository.findPendingCreatedBefore(createdBefore, Limit.of(REDISPATCH_BATCH))) {
+            UUID transferId = transfer.getId();
+            if (dispatched.contains(transferId)) {
+                continue;
+            }
+            if (transfer.getAttempts() >= maxAttempts) {
+                markFailed(transferId, ATTEMPTS_EXHAUSTED);
+                continue;
+            }
+            // Попытка засчитывается и тогда, когда владелец не найден, поэтому такой перевод тоже завершится
+            Integer counted = transactionTemplate.execute(tx -> repository.incrementAttempts(transferId));
+            User owner = userRepository.findById(transfer.getOwnerId()).orElse(null);
+            if (counted == null || counted == 0 || owner == null) {
+                continue;
+            }
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                return;
+            }
+            dispatch(transferId, owner);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void dispatch(UUID transferId, User owner) {
+        if (!dispatched.add(transferId)) {
+            pending.decrementAndGet();
+            return;
+        }
+        try {
+            executor.execute(() -> execute(transferId, owner));
+        } catch (RejectedExecutionException e) {
+            // Приложение останавливается: перевод останется PENDING и будет доведен после старта
+            dispatched.remove(transferId);
+            pending.decrementAndGet();
+        }
+    }
+
+    private void execute(UUID transferId, User owner) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dispatched.remove(transferId);
+            pending.decrementAndGet();
+            return;
+        }
+        try {
+            retry.run(() -> transactionTemplate.executeWithoutResult(tx -> {
+                // Блокировка строки не дает двум экземплярам провести один перевод дважды
+                AsyncTransfer transfer = repository.findByIdForUpdate(transferId).orElseThrow();
+                if (transfer.getStatus() != AsyncTransferStatus.PENDING) {
+                    return;
+                }
+                cardService.transfer(owner, transfer.getFromCardId(), transfer.getToCardId(), transfer.getAmount());
+                transfer.setStatus(AsyncTransferStatus.COMPLETED);
+                transfer.setCompletedAt(Instant.now());
+            }));
+        } catch (IllegalArgumentException | IllegalStateException | NoSuchElementException e) {
+            markFailed(transferId, e instanceof NoSuchElementException ? "Карта не найдена" : e.getMessage());
+        } catch (RuntimeException e) {
+            // Сбой базы: перевод остается PENDING, его повторит redispatchStale
+        } finally {
+            inFlight.release();
+            dispatched.remove(transferId);
+            pending.decrementAndGet();
+        }
+    }
+
+    // Перевод, уже завершенный (в том числе другим экземпляром), не меняется
+    private void markFailed(UUID transferId, String error) {
+        String message = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        transactionTemplate.executeWithoutResult(tx -> repository.findByIdForUpdate(transferId)
+            .filter(transfer -> transfer.getStatus() == AsyncTransferStatus.PENDING)
+            .ifPresent(transfer -> {
+                transfer.setStatus(AsyncTransferStatus.FAILED);
+                transfer.setError(message);
+                transfer.setCompletedAt(Instant.now());
+            }));
+    }
+}
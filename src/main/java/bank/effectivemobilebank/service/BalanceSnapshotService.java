@@ -0,0 +1,163 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.dto.CardStatementDto;
+import bank.effectivemobilebank.model.CardBalanceSnapshot;
+import bank.effectivemobilebank.model.CardBalanceSnapshotId;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.CardBalanceSnapshotRepository;
+import bank.effectivemobilebank.repository.CardRepository;
+import bank.effectivemobilebank.repository.LedgerEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Снимки баланса карт на конец дня и запросы баланса на дату. Границы дней считаются в UTC.
+ * Баланс на дату X — ближайший снимок не позже X плюс проводки после него,
+ * так что запрос не проходит по всей истории карты.
+ */
+@Service
+public class BalanceSnapshotService {
+    static final ZoneOffset ZONE = ZoneOffset.UTC;
+
+    private final CardRepository cardRepository;
+    private final CardBalanceSnapshotRepository snapshotRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public BalanceSnapshotService(CardRepository cardRepository,
+                                  CardBalanceSnapshotRepository snapshotRepository,
+                                  LedgerEntryRepository ledgerEntryRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${bank.snapshots.chunk-size:500}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(cron = "${bank.snapshots.cron:0 5 0 * * *}", zone = "UTC")
+    public void snapshotPreviousDay() {
+        snapshot(LocalDate.now(ZONE).minusDays(1));
+    }
+
+    /**
+     * Пишет снимки всех карт на конец дня {@code date}. Карты обходятся порциями по id,
+     * каждая порция в своей транзакции; повторный запуск за тот же день перезаписывает снимки.
+     * Возвращает число записанных снимков. Снимок текущего или будущего дня запрещен:
+     * он зафиксировал бы неполный баланс, который balanceAsOf потом отдавал бы как есть.
+     */
+    public int snapshot(LocalDate date) {
+        if (!date.isBefore(LocalDate.now(ZONE))) {
+            throw new IllegalArgumentException("Снимок можно записать только за завершившийся день");
+        }
+        int written = 0;
+        List<UUID> chunk = cardRepository.findIdsOrdered(Limit.of(chunkSize));
+        while (!chunk.isEmpty()) {
+            List<UUID> cardIds = chunk;
+            written += transactionTemplate.execute(status -> snapshotChunk(cardIds, date));
+            chunk = cardRepository.findIdsAfter(cardIds.get(cardIds.size() - 1), Limit.of(chunkSize));
+        }
+        return written;
+    }
+
+    @Transactional(readOnly = true)
+    public Money balanceAsOf(User owner, UUID cardId, LocalDate date) {
+        requireOwnCard(owner, cardId);
+        return balanceAsOf(cardId, date);
+    }
+
+    @Transactional(readOnly = true)
+    public CardStatementDto statement(User owner, UUID cardId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца");
+        }
+        requireOwnCard(owner, cardId);
+        Money opening = balanceAsOf(cardId, from.minusDays(1));
+        LedgerEntryRepository.Turnover turnover =
+            ledgerEntryRepository.sumTurnoverByCardIdBetween(cardId, startOf(from), startOf(to.plusDays(1)));
+        Money credits = Money.of(turnover.getCredits());
+        Money debits = Money.of(turnover.getDebits());
+        return CardStatementDto.of(cardId, from, to, opening, credits, debits, opening.plus(credits).minus(debits));
+    }
+
+    Money balanceAsOf(UUID cardId, LocalDate date) {
+        Instant end = startOf(date.plusDays(1));
+        Optional<CardBalanceSnapshot> snapshot = snapshotRepository
+            .findFirstByIdCardIdAndIdSnapshotDateLessThanEqualOrderByIdSnapshotDateDesc(cardId, date);
+        if (snapshot.isEmpty()) {
+            return Money.of(ledgerEntryRepository.sumBalanceByCardIdBefore(cardId, end));
+        }
+        LocalDate snapshotDate = snapshot.get().getId().getSnapshotDate();
+        if (snapshotDate.equals(date)) {
+            return snapshot.get().getBalance();
+        }
+        LedgerEntryRepository.Turnover turnover =
+            ledgerEntryRepository.sumTurnoverByCardIdBetween(cardId, startOf(snapshotDate.plusDays(1)), end);
+        return snapshot.get().getBalance().plus(Money.of(turnover.getCredits())).minus(Money.of(turnover.getDebits()));
+    }
+
+    // Снимок дня = снимок предыдущего дня + проводки за день; без предыдущего снимка — вся история до конца дня
+    private int snapshotChunk(List<UUID> cardIds, LocalDate date) {
+        Instant dayStart = startOf(date);
+        Instant dayEnd = startOf(date.plusDays(1));
+        Map<UUID, Money> previous = new HashMap<>();
+        List<CardBalanceSnapshot> previousDay =
+            snapshotRepository.findAllByIdCardIdInAndIdSnapshotDate(cardIds, date.minusDays(1));
+        for (CardBalanceSnapshot snapshot : previousDay) {
+            previous.put(snapshot.getId().getCardId(), snapshot.getBalance());
+        }
+        Map<UUID, Money> movements = totals(ledgerEntryRepository.sumBalancesBetween(cardIds, dayStart, dayEnd));
+        List<UUID> withoutPrevious = cardIds.stream().filter(id -> !previous.containsKey(id)).toList();
+        Map<UUID, Money> fullHistory = withoutPrevious.isEmpty()
+            ? Map.of()
+            : totals(ledgerEntryRepository.sumBalancesBefore(withoutPrevious, dayEnd));
+
+        List<CardBalanceSnapshot> snapshots = new ArrayList<>(cardIds.size());
+        for (UUID cardId : cardIds) {
+            Money balance = previous.containsKey(cardId)
+                ? previous.get(cardId).plus(movements.getOrDefault(cardId, Money.ZERO))
+                : fullHistory.getOrDefault(cardId, Money.ZERO);
+            snapshots.add(new CardBalanceSnapshot(new CardBalanceSnapshotId(cardId, date), balance));
+        }
+        snapshotRepository.deleteAllByCardIdsAndDate(cardIds, date);
+        snapshotRepository.saveAll(snapshots);
+        return snapshots.size();
+    }
+
+    private void requireOwnCard(User owner, UUID cardId) {
+        if (!cardRepository.existsByIdAndOwner(cardId, owner)) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private static Map<UUID, Money> totals(List<LedgerEntryRepository.CardTotal> rows) {
+        Map<UUID, Money> totals = new HashMap<>();
+        for (LedgerEntryRepository.CardTotal row : rows) {
+            totals.put(row.getCardId(), Money.of(row.getBalance()));
+        }
+        return totals;
+    }
+
+    private static Instant startOf(LocalDate date) {
+        return date.atStartOfDay(ZONE).toInstant();
+    }
+}
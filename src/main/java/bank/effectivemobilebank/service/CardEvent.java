@@ -0,0 +1,22 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.CardEventType;
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.OutboxEvent;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Событие по карте, которое диспетчер outbox раздает слушателям приложения.
+ * Для BALANCE_CHANGED заполнены amount (со знаком) и operationId, для STATUS_CHANGED — status.
+ */
+public record CardEvent(UUID id, UUID cardId, CardEventType type, Money amount, CardStatus status,
+                        UUID operationId, Instant createdAt) {
+
+    static CardEvent of(OutboxEvent event) {
+        return new CardEvent(event.getId(), event.getCardId(), event.getEventType(), event.getAmount(),
+            event.getStatus(), event.getOperationId(), event.getCreatedAt());
+    }
+}
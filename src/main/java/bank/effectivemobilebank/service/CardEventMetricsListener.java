@@ -0,0 +1,22 @@
+package bank.effectivemobilebank.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Аналитика по событиям карт: счетчик bank.card.events с тегом типа события.
+ */
+@Component
+public class CardEventMetricsListener {
+    private final MeterRegistry meterRegistry;
+
+    public CardEventMetricsListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener
+    public void onCardEvent(CardEvent event) {
+        meterRegistry.counter("bank.card.events", "type", event.type().name()).increment();
+    }
+}
@@ -0,0 +1,81 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.repository.CardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Переводит активные карты с прошедшим сроком в EXPIRED. Работает порциями: id берутся
+ * по индексу (status, expiry), затем одна порция меняется одним UPDATE в своей транзакции,
+ * так что блокировки строк держатся недолго и не копятся на всю таблицу.
+ */
+@Component
+public class CardExpirySweeper {
+    private final CardRepository cardRepository;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int chunkSize;
+
+    public CardExpirySweeper(CardRepository cardRepository, OutboxService outboxService,
+                             PlatformTransactionManager transactionManager, Clock clock,
+                             @Value("${bank.cards.expiry-chunk-size:500}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.outboxService = outboxService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(cron = "${bank.cards.expiry-cron:0 1 0 * * *}")
+    public void scheduledSweep() {
+        sweep();
+    }
+
+    // Истекает карты по текущей дате общих часов — той же, что проверяют переводы
+    public int sweep() {
+        return sweep(LocalDate.now(clock));
+    }
+
+    /**
+     * Истекает карты со сроком раньше {@code today}. Обработанные карты выпадают из условия,
+     * поэтому каждая порция снова берется с начала индекса. Возвращает число истекших карт.
+     */
+    public int sweep(LocalDate today) {
+        int expired = 0;
+        while (true) {
+            Integer updated = transactionTemplate.execute(status -> expireChunk(today));
+            // ноль — карт не осталось или их статус успели поменять, повторять нечего
+            if (updated == null || updated == 0) {
+                return expired;
+            }
+            expired += updated;
+        }
+    }
+
+    private int expireChunk(LocalDate today) {
+        List<UUID> cardIds = cardRepository.findExpiredActiveIds(today, Limit.of(chunkSize));
+        if (cardIds.isEmpty()) {
+            return 0;
+        }
+        int updated = cardRepository.expireAll(cardIds, today);
+        if (updated > 0) {
+            // Если часть порции успели поменять параллельно, события получают только истекшие здесь карты
+            List<UUID> expired = updated == cardIds.size()
+                ? cardIds
+                : cardRepository.findIdsByIdInAndStatus(cardIds, CardStatus.EXPIRED);
+            outboxService.statusChanged(expired, CardStatus.EXPIRED);
+        }
+        return updated;
+    }
+}
@@ -1,41 +1,85 @@
 package bank.effectivemobilebank.service;
 
 import bank.effectivemobilebank.config.CardNumberCipher;
+import bank.effectivemobilebank.dto.BatchTransferItemResult;
+import bank.effectivemobilebank.dto.CardTransactionPage;
+import bank.effectivemobilebank.dto.TransferRequest;
 import bank.effectivemobilebank.model.Card;
 import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.LedgerOperationType;
+import bank.effectivemobilebank.model.Money;
 import bank.effectivemobilebank.model.User;
 import bank.effectivemobilebank.repository.CardRepository;
 import bank.effectivemobilebank.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CardService {
+    // Порядок совпадает с сортировкой uuid в PostgreSQL (беззнаковое побайтовое сравнение),
+    // в отличие от UUID.compareTo, который сравнивает знаковые long.
+    static final Comparator<UUID> LOCK_ORDER = Comparator.comparing(UUID::toString);
+    static final int MAX_HISTORY_PAGE_SIZE = 100;
+    static final String EXPIRED_MESSAGE = "Срок действия карты истек";
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CardNumberCipher cipher;
+    private final LedgerService ledgerService;
+    private final HotCardService hotCardService;
+    private final VelocityLimitService velocityLimitService;
+    private final OutboxService outboxService;
+    private final Clock clock;
+    private final TransferLockMode lockMode;
+    private final int batchMaxSize;
 
-    public CardService(CardRepository cardRepository, UserRepository userRepository, CardNumberCipher cipher) {
+    public CardService(CardRepository cardRepository, UserRepository userRepository, CardNumberCipher cipher,
+                       LedgerService ledgerService, HotCardService hotCardService,
+                       VelocityLimitService velocityLimitService, OutboxService outboxService, Clock clock,
+                       @Value("${bank.transfer.lock-mode:ATOMIC}") TransferLockMode lockMode,
+                       @Value("${bank.transfer.batch-max-size:1000}") int batchMaxSize) {
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
         this.cipher = cipher;
+        this.ledgerService = ledgerService;
+        this.hotCardService = hotCardService;
+        this.velocityLimitService = velocityLimitService;
+        this.outboxService = outboxService;
+        this.clock = clock;
+        this.lockMode = lockMode;
+        this.batchMaxSize = batchMaxSize;
     }
 
     @Transactional
     public Card createCard(User owner, String plainPan, LocalDate expiry) {
+        String panHash = cipher.blindIndex(plainPan);
+        if (cardRepository.existsByPanHash(panHash)) {
+            throw new IllegalArgumentException("Карта с таким номером уже существует");
+        }
         Card card = new Card();
         card.setOwner(owner);
         card.setExpiry(expiry);
         card.setStatus(CardStatus.ACTIVE);
-        card.setBalance(BigDecimal.ZERO);
+        card.setBalance(Money.ZERO);
         card.setPanLast4(plainPan.substring(plainPan.length() - 4));
         card.setPanEncrypted(cipher.encrypt(plainPan));
+        card.setPanHash(panHash);
         return cardRepository.save(card);
     }
 
@@ -47,9 +91,19 @@ public class CardService {
 
     public Page<Card> findUserCards(User owner, CardStatus status, Pageable pageable) {
         if (status == null) {
-            return cardRepository.findAllByOwner(owner, pageable);
+            return withStripedBalances(cardRepository.findAllByOwner(owner, pageable));
         }
-        return cardRepository.findAllByOwnerAndStatus(owner, status, pageable);
+        return withStripedBalances(cardRepository.findAllByOwnerAndStatus(owner, status, pageable));
+    }
+
+    public CardTransactionPage findTransactions(User owner, UUID cardId, String cursor, int size) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_HISTORY_PAGE_SIZE);
+        }
+        if (!cardRepository.existsByIdAndOwner(cardId, owner)) {
+            throw new NoSuchElementException();
+        }
+        return ledgerService.history(cardId, cursor, size);
     }
 
     @Transactional
@@ -59,41 +113,219 @@ public class CardService {
             : cardRepository.findByIdAndOwner(cardId, ownerOrNull).orElseThrow();
         card.setStatus(status);
         cardRepository.save(card);
+        outboxService.statusChanged(cardId, status);
     }
 
     @Transactional
-    public void transfer(User owner, UUID fromCardId, UUID toCardId, BigDecimal amount) {
+    public void transfer(User owner, UUID fromCardId, UUID toCardId, Money amount) {
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Сумма должна быть положительной");
         }
         if (fromCardId.equals(toCardId)) {
             throw new IllegalArgumentException("Карты должны отличаться");
         }
-        Card from = cardRepository.findByIdAndOwner(fromCardId, owner).orElseThrow();
-        Card to = cardRepository.findByIdAndOwner(toCardId, owner).orElseThrow();
+        // Проверка лимитов идет по счетчикам в памяти; при откате транзакции сумма вернется в окно
+        velocityLimitService.reserve(owner.getId(), fromCardId, amount);
+        if (lockMode == TransferLockMode.ATOMIC) {
+            transferAtomically(owner, fromCardId, owner, toCardId, amount);
+            return;
+        }
+        Card from;
+        Card to;
+        if (lockMode == TransferLockMode.PESSIMISTIC) {
+            // Блокируем строки всегда в одном порядке, чтобы встречные переводы не взаимоблокировались
+            if (LOCK_ORDER.compare(fromCardId, toCardId) < 0) {
+                from = cardRepository.findByIdAndOwnerForUpdate(fromCardId, owner).orElseThrow();
+                to = cardRepository.findByIdAndOwnerForUpdate(toCardId, owner).orElseThrow();
+            } else {
+                to = cardRepository.findByIdAndOwnerForUpdate(toCardId, owner).orElseThrow();
+                from = cardRepository.findByIdAndOwnerForUpdate(fromCardId, owner).orElseThrow();
+            }
+        } else {
+            from = cardRepository.findByIdAndOwner(fromCardId, owner).orElseThrow();
+            to = cardRepository.findByIdAndOwner(toCardId, owner).orElseThrow();
+        }
         if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
             throw new IllegalStateException("Карты должны быть активны");
         }
-        if (from.getBalance().compareTo(amount) < 0) {
+        LocalDate today = LocalDate.now(clock);
+        if (isExpired(from, today) || isExpired(to, today)) {
+            throw new IllegalStateException(EXPIRED_MESSAGE);
+        }
+        if (from.getBalance().isLessThan(amount) && from.isHot()) {
+            hotCardService.foldInto(from);
+        }
+        if (from.getBalance().isLessThan(amount)) {
             throw new IllegalStateException("Недостаточно средств");
         }
-        from.setBalance(from.getBalance().subtract(amount));
-        to.setBalance(to.getBalance().add(amount));
+        from.setBalance(from.getBalance().minus(amount));
+        to.setBalance(to.getBalance().plus(amount));
         cardRepository.save(from);
         cardRepository.save(to);
+        recordTransfer(from.getId(), to.getId(), amount);
+    }
+
+    /**
+     * Перевод на карту другого пользователя по номеру. Получатель ищется по слепому индексу
+     * номера, без расшифровки строк. Всегда идет условными UPDATE, как в режиме ATOMIC:
+     * карту получателя не нужно читать, а ее владелец не раскрывается отправителю.
+     */
+    @Transactional
+    public void transferToCardNumber(User owner, UUID fromCardId, String toCardNumber, Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Сумма должна быть положительной");
+        }
+        UUID toCardId = cardRepository.findIdByPanHash(cipher.blindIndex(toCardNumber))
+            .orElseThrow(() -> new NoSuchElementException("Карта получателя не найдена"));
+        if (fromCardId.equals(toCardId)) {
+            throw new IllegalArgumentException("Карты должны отличаться");
+        }
+        velocityLimitService.reserve(owner.getId(), fromCardId, amount);
+        transferAtomically(owner, fromCardId, null, toCardId, amount);
+    }
+
+    /**
+     * Выполняет пачку переводов в одной транзакции. Все затронутые карты блокируются
+     * одним SELECT ... FOR UPDATE в порядке id, балансы меняются в памяти и уходят
+     * в базу JDBC-пачкой при коммите. Ошибка одного перевода не отменяет остальные.
+     */
+    @Transactional
+    public List<BatchTransferItemResult> transferBatch(User owner, List<TransferRequest> transfers) {
+        if (transfers.size() > batchMaxSize) {
+            throw new IllegalArgumentException("Не более " + batchMaxSize + " переводов в одном запросе");
+        }
+        Set<UUID> cardIds = new HashSet<>();
+        for (TransferRequest transfer : transfers) {
+            cardIds.add(transfer.getFromCardId());
+            cardIds.add(transfer.getToCardId());
+        }
+        Map<UUID, Card> cards = cardRepository.findAllByIdInAndOwnerForUpdate(cardIds, owner).stream()
+            .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        LocalDate today = LocalDate.now(clock);
+        List<BatchTransferItemResult> results = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            Money amount = transfer.getAmount() == null ? null : Money.of(transfer.getAmount());
+            String error = applyBatchTransfer(owner, cards, transfer, amount, today);
+            if (error == null) {
+                recordTransfer(transfer.getFromCardId(), transfer.getToCardId(), amount);
+                results.add(BatchTransferItemResult.ok(i));
+            } else {
+                results.add(BatchTransferItemResult.failed(i, error));
+            }
+        }
+        return results;
+    }
+
+    private String applyBatchTransfer(User owner, Map<UUID, Card> cards, TransferRequest transfer, Money amount,
+                                      LocalDate today) {
+        if (amount == null || amount.signum() <= 0) {
+            return "Сумма должна быть положительной";
+        }
+        if (transfer.getFromCardId().equals(transfer.getToCardId())) {
+            return "Карты должны отличаться";
+        }
+        Card from = cards.get(transfer.getFromCardId());
+        Card to = cards.get(transfer.getToCardId());
+        if (from == null || to == null) {
+            return "Карта не найдена";
+        }
+        if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
+            return "Карты должны быть активны";
+        }
+        if (isExpired(from, today) || isExpired(to, today)) {
+            return EXPIRED_MESSAGE;
+        }
+        if (from.getBalance().isLessThan(amount) && from.isHot()) {
+            hotCardService.foldInto(from);
+        }
+        if (from.getBalance().isLessThan(amount)) {
+            return "Недостаточно средств";
+        }
+        try {
+            velocityLimitService.reserve(owner.getId(), from.getId(), amount);
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+        from.setBalance(from.getBalance().minus(amount));
+        to.setBalance(to.getBalance().plus(amount));
+        return null;
+    }
+
+    // Списание и зачисление — по одному условному UPDATE; порядок тот же, что и при блокировках.
+    // recipient == null — зачисление на карту любого владельца (перевод по номеру)
+    private void transferAtomically(User owner, UUID fromCardId, User recipient, UUID toCardId, Money amount) {
+        LocalDate today = LocalDate.now(clock);
+        if (LOCK_ORDER.compare(fromCardId, toCardId) < 0) {
+            debit(owner, fromCardId, amount, today);
+            credit(recipient, toCardId, amount, today);
+        } else {
+            credit(recipient, toCardId, amount, today);
+            debit(owner, fromCardId, amount, today);
+        }
+        recordTransfer(fromCardId, toCardId, amount);
+    }
+
+    // Проводки и события outbox пишутся в транзакции самого перевода
+    private void recordTransfer(UUID fromCardId, UUID toCardId, Money amount) {
+        UUID operationId = ledgerService.recordTransfer(fromCardId, toCardId, amount);
+        outboxService.transfer(fromCardId, toCardId, amount, operationId);
+    }
+
+    private void debit(User owner, UUID cardId, Money amount, LocalDate today) {
+        if (cardRepository.debitIfActive(cardId, owner, amount, today) == 0) {
+            Card card = cardRepository.findByIdAndOwner(cardId, owner).orElseThrow();
+            if (card.getStatus() != CardStatus.ACTIVE) {
+                throw new IllegalStateException("Карты должны быть активны");
+            }
+            if (isExpired(card, today)) {
+                throw new IllegalStateException(EXPIRED_MESSAGE);
+            }
+            // У горячей карты часть денег может лежать в полосах: сворачиваем и пробуем еще раз
+            if (card.isHot() && hotCardService.fold(cardId).signum() > 0
+                && cardRepository.debitIfActive(cardId, owner, amount, today) > 0) {
+                return;
+            }
+            throw new IllegalStateException("Недостаточно средств");
+        }
+    }
+
+    private void credit(User owner, UUID cardId, Money amount, LocalDate today) {
+        if (hotCardService.isHot(cardId) && hotCardService.credit(cardId, owner, amount, today)) {
+            return;
+        }
+        if (owner == null) {
+            if (cardRepository.creditIfActive(cardId, amount, today) == 0) {
+                throw new IllegalStateException("Карта получателя не активна");
+            }
+            return;
+        }
+        if (cardRepository.creditIfActive(cardId, owner, amount, today) == 0) {
+            Card card = cardRepository.findByIdAndOwner(cardId, owner).orElseThrow();
+            throw new IllegalStateException(card.getStatus() == CardStatus.ACTIVE && isExpired(card, today)
+                ? EXPIRED_MESSAGE : "Карты должны быть активны");
+        }
     }
 
     public Page<Card> findAll(String username, CardStatus status, Pageable pageable) {
         if (username != null && !username.isBlank()) {
             if (status != null) {
-                return cardRepository.findAllByOwnerUsernameContainingIgnoreCaseAndStatus(username, status, pageable);
+                return withStripedBalances(
+                    cardRepository.findAllByOwnerUsernameContainingIgnoreCaseAndStatus(username, status, pageable));
             }
-            return cardRepository.findAllByOwnerUsernameContainingIgnoreCase(username, pageable);
+            return withStripedBalances(cardRepository.findAllByOwnerUsernameContainingIgnoreCase(username, pageable));
         }
         if (status != null) {
-            return cardRepository.findAllByStatus(status, pageable);
+            return withStripedBalances(cardRepository.findAllByStatus(status, pageable));
         }
-        return cardRepository.findAll(pageable);
+        return withStripedBalances(cardRepository.findAll(pageable));
+    }
+
+    // Полосы суммируются отдельным запросом только для горячих карт страницы
+    private Page<Card> withStripedBalances(Page<Card> page) {
+        hotCardService.loadStripedBalances(page.getContent());
+        return page;
     }
 
     @Transactional
@@ -102,29 +334,49 @@ public class CardService {
     }
 
     @Transactional
-    public void topUp(User owner, UUID cardId, BigDecimal amount) {
+    public void topUp(User owner, UUID cardId, Money amount) {
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Сумма должна быть положительной");
         }
-        Card card = cardRepository.findByIdAndOwner(cardId, owner).orElseThrow();
-        if (card.getStatus() != CardStatus.ACTIVE) {
-            throw new IllegalStateException("Карта должна быть активна");
+        velocityLimitService.reserve(owner.getId(), cardId, amount);
+        LocalDate today = LocalDate.now(clock);
+        if (!(hotCardService.isHot(cardId) && hotCardService.credit(cardId, owner, amount, today))
+            && cardRepository.creditIfActive(cardId, owner, amount, today) == 0) {
+            Card card = cardRepository.findByIdAndOwner(cardId, owner).orElseThrow();
+            throw new IllegalStateException(card.getStatus() == CardStatus.ACTIVE && isExpired(card, today)
+                ? EXPIRED_MESSAGE : "Карта должна быть активна");
         }
-        card.setBalance(card.getBalance().add(amount));
-        cardRepository.save(card);
+        UUID operationId = ledgerService.recordTopUp(cardId, amount, LedgerOperationType.TOP_UP);
+        outboxService.topUp(cardId, amount, operationId);
     }
 
     @Transactional
-    public void adminTopUp(UUID cardId, BigDecimal amount) {
+    public void adminTopUp(UUID cardId, Money amount) {
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Сумма должна быть положительной");
         }
-        Card card = cardRepository.findById(cardId).orElseThrow();
-        if (card.getStatus() != CardStatus.ACTIVE) {
-            throw new IllegalStateException("Карта должна быть активна");
+        LocalDate today = LocalDate.now(clock);
+        if (!(hotCardService.isHot(cardId) && hotCardService.credit(cardId, null, amount, today))
+            && cardRepository.creditIfActive(cardId, amount, today) == 0) {
+            Card card = cardRepository.findById(cardId).orElseThrow();
+            throw new IllegalStateException(card.getStatus() == CardStatus.ACTIVE && isExpired(card, today)
+                ? EXPIRED_MESSAGE : "Карта должна быть активна");
         }
-        card.setBalance(card.getBalance().add(amount));
-        cardRepository.save(card);
+        UUID operationId = ledgerService.recordTopUp(cardId, amount, LedgerOperationType.ADMIN_TOP_UP);
+        outboxService.topUp(cardId, amount, operationId);
+    }
+
+    public Card findById(UUID cardId) {
+        Card card = cardRepository.findById(cardId).orElseThrow();
+        hotCardService.loadStripedBalances(List.of(card));
+        return card;
+    }
+
+    // Карта действует по день expiry включительно, даже если сборщик еще не перевел ее в EXPIRED.
+    // Дата берется из общих часов один раз на операцию и передается в условные UPDATE,
+    // поэтому проверка в Java и в базе не расходится около полуночи и при другой зоне СУБД
+    static boolean isExpired(Card card, LocalDate today) {
+        return card.getExpiry().isBefore(today);
     }
 }
 
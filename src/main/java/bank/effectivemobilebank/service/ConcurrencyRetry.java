@@ -0,0 +1,59 @@
+package bank.effectivemobilebank.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+@Component
+public class ConcurrencyRetry {
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public ConcurrencyRetry(@Value("${bank.transfer.max-attempts:3}") int maxAttempts,
+                            @Value("${bank.transfer.retry-backoff-ms:20}") long backoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+    }
+
+    public void run(Runnable operation) {
+        call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    public <T> T call(Supplier<T> operation) {
+        // Внутри чужой транзакции повтор бессмысленен: она уже помечена на откат.
+        // Повторять будет тот, кто открыл транзакцию.
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return operation.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        if (backoffMillis <= 0) {
+            return;
+        }
+        long delay = backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Операция прервана", e);
+        }
+    }
+}
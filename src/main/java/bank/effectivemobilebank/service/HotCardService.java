@@ -0,0 +1,169 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.CardBalanceStripe;
+import bank.effectivemobilebank.model.CardBalanceStripeId;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.CardBalanceStripeRepository;
+import bank.effectivemobilebank.repository.CardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * «Горячие» карты: зачисления раскладываются по K строкам card_balance_stripes,
+ * поэтому параллельные пополнения не ждут друг друга на строке cards. Списания
+ * при нехватке основного баланса и фоновый компактор сворачивают полосы обратно.
+ */
+@Service
+public class HotCardService {
+    private final CardRepository cardRepository;
+    private final CardBalanceStripeRepository stripeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrencyRetry retry;
+    private final int stripes;
+    // Локальная копия флага hot, чтобы не читать карту перед каждым зачислением.
+    // Устаревшее значение безопасно: зачисление в полосу проверяет флаг в самом UPDATE.
+    private final Set<UUID> hotCardIds = ConcurrentHashMap.newKeySet();
+
+    public HotCardService(CardRepository cardRepository,
+                          CardBalanceStripeRepository stripeRepository,
+                          PlatformTransactionManager transactionManager,
+                          ConcurrencyRetry retry,
+                          @Value("${bank.hot-cards.stripes:8}") int stripes) {
+        this.cardRepository = cardRepository;
+        this.stripeRepository = stripeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retry = retry;
+        this.stripes = Math.max(1, stripes);
+    }
+
+    public boolean isHot(UUID cardId) {
+        return hotCardIds.contains(cardId);
+    }
+
+    @Transactional
+    public void enable(UUID cardId) {
+        cardRepository.findById(cardId).orElseThrow();
+        Set<Integer> existing = new HashSet<>();
+        for (CardBalanceStripe stripe : stripeRepository.findAllByIdCardId(cardId)) {
+            existing.add(stripe.getId().getStripe());
+        }
+        List<CardBalanceStripe> missing = new ArrayList<>();
+        for (int i = 0; i < stripes; i++) {
+            if (!existing.contains(i)) {
+                missing.add(new CardBalanceStripe(new CardBalanceStripeId(cardId, i), Money.ZERO));
+            }
+        }
+        stripeRepository.saveAll(missing);
+        cardRepository.updateHot(cardId, true);
+        hotCardIds.add(cardId);
+    }
+
+    @Transactional
+    public void disable(UUID cardId) {
+        cardRepository.findByIdForUpdate(cardId).orElseThrow();
+        cardRepository.updateHot(cardId, false);
+        hotCardIds.remove(cardId);
+        fold(cardId);
+    }
+
+    /**
+     * Зачисляет сумму в случайную полосу. Возвращает false, если карта не горячая,
+     * не активна или полоса не создана — тогда вызывающий зачисляет на основной баланс.
+     */
+    @Transactional
+    public boolean credit(UUID cardId, User ownerOrNull, Money amount, LocalDate today) {
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        int updated = ownerOrNull == null
+            ? stripeRepository.creditIfHot(cardId, stripe, amount, today)
+            : stripeRepository.creditIfHot(cardId, ownerOrNull, stripe, amount, today);
+        return updated > 0;
+    }
+
+    /**
+     * Подгружает в карты сумму несвернутых полос одним запросом на все горячие карты списка.
+     * Для обычных карт запроса нет, их stripedBalance остается пустым.
+     */
+    public void loadStripedBalances(Collection<Card> cards) {
+        Map<UUID, Card> hot = new HashMap<>();
+        for (Card card : cards) {
+            if (card.isHot()) {
+                hot.put(card.getId(), card);
+            }
+        }
+        if (hot.isEmpty()) {
+            return;
+        }
+        for (CardBalanceStripeRepository.StripeTotal total : stripeRepository.sumBalances(hot.keySet())) {
+            hot.get(total.getCardId()).setStripedBalance(Money.of(total.getBalance()));
+        }
+    }
+
+    // Переносит накопленное в полосах на основной баланс карты. Возвращает перенесенную сумму.
+    // Порядок блокировок как у переводов: сначала строка карты, потом ее полосы
+    @Transactional
+    public Money fold(UUID cardId) {
+        if (cardRepository.lockById(cardId).isEmpty()) {
+            return Money.ZERO;
+        }
+        Money drained = drain(cardId);
+        if (drained.signum() != 0) {
+            cardRepository.addToBalance(cardId, drained);
+        }
+        return drained;
+    }
+
+    // То же для уже загруженной карты: баланс меняется в сущности и уйдет в базу при коммите.
+    // Строка карты блокируется до полос и в оптимистичном режиме, где ее еще никто не держит
+    @Transactional
+    public void foldInto(Card card) {
+        cardRepository.findByIdForUpdate(card.getId());
+        Money drained = drain(card.getId());
+        if (drained.signum() != 0) {
+            card.setBalance(card.getBalance().plus(drained));
+            card.setStripedBalance(null);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bank.hot-cards.compact-interval-ms:5000}")
+    public void compact() {
+        List<UUID> hot = cardRepository.findHotCardIds();
+        hotCardIds.retainAll(hot);
+        hotCardIds.addAll(hot);
+        for (UUID cardId : stripeRepository.findCardIdsWithPendingBalance()) {
+            retry.run(() -> transactionTemplate.executeWithoutResult(status -> fold(cardId)));
+        }
+    }
+
+    // Блокировка всех полос карты дожидается идущих зачислений и не пускает новые до коммита.
+    // Из полосы вычитается прочитанная сумма, а не записывается ноль: зачисление, которого чтение
+    // не увидело (H2 отдает снимок на момент начала ожидания блокировки), остается в полосе
+    private Money drain(UUID cardId) {
+        Money total = Money.ZERO;
+        for (CardBalanceStripeRepository.StripeBalance stripe : stripeRepository.findBalancesForUpdate(cardId)) {
+            Money balance = Money.of(stripe.getBalance());
+            if (balance.signum() != 0) {
+                stripeRepository.withdraw(cardId, stripe.getStripe(), balance);
+                total = total.plus(balance);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,200 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.IdempotencyRecord;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrencyRetry retry;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Cache<String, StoredResponse> cache;
+
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              PlatformTransactionManager transactionManager,
+                              ConcurrencyRetry retry,
+                              ObjectMapper objectMapper,
+                              @Value("${bank.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${bank.idempotency.cache-size:10000}") long cacheSize) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retry = retry;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    private record StoredResponse(String requestHash, int status, String body) {
+    }
+
+    /**
+     * Выполняет операцию не более одного раза для пары (пользователь, ключ).
+     * Ключ резервируется в той же транзакции, что и сама операция, поэтому ответ
+     * сохраняется только вместе с движением денег. Повтор с тем же ключом получает
+     * исходный ответ без повторного выполнения.
+     */
+    public ResponseEntity<?> execute(User owner, String key, String requestFingerprint,
+                                     Supplier<ResponseEntity<?>> operation) {
+        if (key == null || key.isBlank()) {
+            return operation.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключ идемпотентности длиннее " + MAX_KEY_LENGTH + " символов");
+        }
+        String cacheKey = owner.getId() + ":" + key;
+        String requestHash = sha256(requestFingerprint);
+
+        StoredResponse cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+        try {
+            StoredResponse stored = retry.call(() -> transactionTemplate.execute(status -> {
+                IdempotencyRecord record = newRecord(owner, key, requestHash);
+                repository.saveAndFlush(record);
+
+                ResponseEntity<?> response = operation.get();
+                record.setResponseStatus(response.getStatusCode().value());
+                record.setResponseBody(toJson(response.getBody()));
+                return new StoredResponse(requestHash, record.getResponseStatus(), record.getResponseBody());
+            }));
+            cache.put(cacheKey, stored);
+            return toResponse(stored);
+        } catch (DataIntegrityViolationException e) {
+            return replayExisting(owner, key, cacheKey, requestHash, e);
+        }
+    }
+
+    /**
+     * Вариант для операций, которые сами коммитят движение денег, возможно в другом потоке
+     * (движок переводов в памяти). Здесь транзакция не открывается, и соединение не занято,
+     * пока операция ждет результат. Ключ с заранее известным успешным ответом операция
+     * записывает сама, вызывая переданный Runnable в транзакции перевода. Поэтому ключ
+     * коммитится вместе с деньгами, а при отказе операции не сохраняется.
+     */
+    public ResponseEntity<?> executeCommitting(User owner, String key, String requestFingerprint,
+                                               ResponseEntity<?> success, Consumer<Runnable> operation) {
+        if (key == null || key.isBlank()) {
+            operation.accept(() -> { });
+            return success;
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключ идемпотентности длиннее " + MAX_KEY_LENGTH + " символов");
+        }
+        String cacheKey = owner.getId() + ":" + key;
+        String requestHash = sha256(requestFingerprint);
+
+        StoredResponse cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+        StoredResponse stored = new StoredResponse(requestHash, success.getStatusCode().value(),
+            toJson(success.getBody()));
+        try {
+            // Запись создается заново на каждую попытку: откат транзакции оставляет сущность с id
+            operation.accept(() -> {
+                IdempotencyRecord record = newRecord(owner, key, requestHash);
+                record.setResponseStatus(stored.status());
+                record.setResponseBody(stored.body());
+                repository.saveAndFlush(record);
+            });
+        } catch (DataIntegrityViolationException e) {
+            return replayExisting(owner, key, cacheKey, requestHash, e);
+        }
+        cache.put(cacheKey, stored);
+        return toResponse(stored);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.idempotency.sweep-interval-ms:600000}")
+    public void sweepExpired() {
+        transactionTemplate.executeWithoutResult(status -> repository.deleteExpired(Instant.now()));
+    }
+
+    private IdempotencyRecord newRecord(User owner, String key, String requestHash) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setOwnerId(owner.getId());
+        record.setIdempotencyKey(key);
+        record.setRequestHash(requestHash);
+        record.setExpiresAt(Instant.now().plus(ttl));
+        return record;
+    }
+
+    // Ключ уже занят завершенным запросом: отдаем сохраненный результат
+    private ResponseEntity<?> replayExisting(User owner, String key, String cacheKey, String requestHash,
+                                             DataIntegrityViolationException e) {
+        IdempotencyRecord existing = repository.findByOwnerIdAndIdempotencyKey(owner.getId(), key)
+            .orElseThrow(() -> e);
+        StoredResponse stored = new StoredResponse(existing.getRequestHash(),
+            existing.getResponseStatus(), existing.getResponseBody());
+        cache.put(cacheKey, stored);
+        return replay(stored, requestHash);
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IllegalArgumentException("Ключ идемпотентности уже использован для другого запроса");
+        }
+        return ResponseEntity.status(stored.status())
+            .header(REPLAYED_HEADER, "true")
+            .body(fromJson(stored.body()));
+    }
+
+    private ResponseEntity<?> toResponse(StoredResponse stored) {
+        return ResponseEntity.status(stored.status()).body(fromJson(stored.body()));
+    }
+
+    private String toJson(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить ответ", e);
+        }
+    }
+
+    private Object fromJson(String body) {
+        try {
+            return body == null ? null : objectMapper.readValue(body, Object.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать сохраненный ответ", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.CardRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Движок переводов с однопоточными партициями. Переводы пользователя всегда попадают
+ * в одну партицию (обе карты принадлежат одному владельцу), которая держит балансы
+ * его карт в памяти и проверяет перевод без блокировок строк в базе. Принятые переводы
+ * сохраняются пачкой в одной транзакции: чистые изменения балансов условными UPDATE,
+ * проводки в ledger_entries и ключи идемпотентности запросов. Ответ клиенту уходит только после коммита пачки,
+ * поэтому после падения достаточно заново прочитать карты из базы. В памяти держится только
+ * основной баланс карты: полосы горячей карты сворачиваются в него, когда его не хватает.
+ */
+@Component
+@ConditionalOnProperty(name = "bank.transfer.engine", havingValue = "IN_MEMORY")
+public class InMemoryTransferEngine {
+    private static final String STOPPED_MESSAGE = "Движок переводов остановлен";
+
+    private final CardRepository cardRepository;
+    private final CardService cardService;
+    private final HotCardService hotCardService;
+    private final LedgerService ledgerService;
+    private final OutboxService outboxService;
+    private final ConcurrencyRetry retry;
+    private final VelocityLimitService velocityLimitService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final Partition[] partitions;
+    private final int batchSize;
+    private volatile boolean running = true;
+
+    public InMemoryTransferEngine(CardRepository cardRepository, CardService cardService,
+                                  HotCardService hotCardService, LedgerService ledgerService, OutboxService outboxService,
+                                  ConcurrencyRetry retry,
+                                  VelocityLimitService velocityLimitService,
+                                  PlatformTransactionManager transactionManager, Clock clock,
+                                  @Value("${bank.transfer.engine.partitions:4}") int partitions,
+                                  @Value("${bank.transfer.engine.queue-capacity:1024}") int queueCapacity,
+                                  @Value("${bank.transfer.engine.batch-size:256}") int batchSize,
+                                  @Value("${bank.transfer.engine.cards-per-partition:10000}") int cardsPerPartition) {
+        this.cardRepository = cardRepository;
+        this.cardService = cardService;
+        this.hotCardService = hotCardService;
+        this.ledgerService = ledgerService;
+        this.outboxService = outboxService;
+        this.retry = retry;
+        this.velocityLimitService = velocityLimitService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.batchSize = Math.max(1, batchSize);
+        this.partitions = new Partition[Math.max(1, partitions)];
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitions[i] = new Partition(queueCapacity, cardsPerPartition);
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        for (int i = 0; i < partitions.length; i++) {
+            Thread thread = new Thread(partitions[i], "transfer-engine-" + i);
+            thread.setDaemon(true);
+            partitions[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Partition partition : partitions) {
+            if (partition.thread != null) {
+                partition.thread.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        }
+        // Что не успели разобрать потоки партиций, отклоняем, чтобы ни один вызов не ждал вечно
+        List<TransferCommand> left = new ArrayList<>();
+        for (Partition partition : partitions) {
+            partition.queue.drainTo(left);
+        }
+        IllegalStateException stopped = new IllegalStateException(STOPPED_MESSAGE);
+        left.forEach(command -> fail(command, stopped));
+    }
+
+    public CompletableFuture<Void> submit(User owner, UUID fromCardId, UUID toCardId, Money amount) {
+        return submit(owner, fromCardId, toCardId, amount, () -> { });
+    }
+
+    /**
+     * {@code inTransaction} выполняется в транзакции, сохраняющей перевод (пачки или обычного
+     * пути через CardService), и коммитится вместе с ним; его исключение откатывает перевод.
+     */
+    public CompletableFuture<Void> submit(User owner, UUID fromCardId, UUID toCardId, Money amount,
+                                          Runnable inTransaction) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Сумма должна быть положительной");
+        }
+        if (fromCardId.equals(toCardId)) {
+            throw new IllegalArgumentException("Карты должны отличаться");
+        }
+        if (!running) {
+            throw new IllegalStateException(STOPPED_MESSAGE);
+        }
+        // Вне транзакции учет лимита не снимется сам: при отказе его возвращает fail()
+        VelocityLimitService.Reservation reservation = velocityLimitService.reserve(owner.getId(), fromCardId, amount);
+        TransferCommand command = new TransferCommand(owner, fromCardId, toCardId, amount, inTransaction,
+            reservation, new AtomicBoolean(), new CompletableFuture<>());
+        Partition partition = partitions[Math.floorMod(owner.getId().hashCode(), partitions.length)];
+        try {
+            while (!partition.queue.offer(command, 100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    command.release(velocityLimitService);
+                    throw new IllegalStateException(STOPPED_MESSAGE);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            command.release(velocityLimitService);
+            throw new IllegalStateException("Перевод прерван", e);
+        }
+        // Движок мог остановиться между проверкой и постановкой в очередь. Команду забирает
+        // либо поток партиции, либо этот remove, поэтому она не повиснет и не выполнится дважды
+        if (!running && partition.queue.remove(command)) {
+            command.release(velocityLimitService);
+            throw new IllegalStateException(STOPPED_MESSAGE);
+        }
+        return command.result();
+    }
+
+    private record TransferCommand(User owner, UUID fromCardId, UUID toCardId, Money amount,
+                                   Runnable inTransaction, VelocityLimitService.Reservation reservation, AtomicBoolean released,
+                                   CompletableFuture<Void> result) {
+
+        // Учет лимита возвращается не больше одного раза, каким бы путем ни пришел отказ
+        void release(VelocityLimitService velocityLimitService) {
+            if (released.compareAndSet(false, true)) {
+                velocityLimitService.release(reservation);
+            }
+        }
+    }
+
+    // Команды, уже завершенные отказом, переводом в обход движка или успехом, не трогаем
+    private void fail(TransferCommand command, Throwable error) {
+        if (command.result().isDone()) {
+            return;
+        }
+        command.release(velocityLimitService);
+        command.result().completeExceptionally(error);
+    }
+
+    // Изменение карты в пачке: итог и сколько денег карта должна иметь в худший момент пачки
+    private static final class CardDelta {
+        private Money net = Money.ZERO;
+        private Money required = Money.ZERO;
+    }
+
+    private static final class CardState {
+        private Money balance;
+        private boolean active;
+
+        private CardState(Money balance, boolean active) {
+            this.balance = balance;
+            this.active = active;
+        }
+    }
+
+    // Сигнализирует, что состояние в памяти разошлось с базой и пачку надо откатить
+    private static final class StaleStateException extends RuntimeException {
+    }
+
+    private final class Partition implements Runnable {
+        private final BlockingQueue<TransferCommand> queue;
+        private final Map<UUID, CardState> cards;
+        private Thread thread;
+
+        private Partition(int queueCapacity, int maxCards) {
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+            // Доступ только из потока партиции, синхронизация не нужна
+            this.cards = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, CardState> eldest) {
+                    return size() > maxCards;
+                }
+            };
+        }
+
+        @Override
+        public void run() {
+            List<TransferCommand> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    TransferCommand first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    process(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    batch.forEach(command -> fail(command, e));
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void process(List<TransferCommand> batch) {
+            Map<UUID, CardDelta> deltas = new HashMap<>();
+            List<TransferCommand> accepted = new ArrayList<>(batch.size());
+            for (TransferCommand command : batch) {
+                RuntimeException error = apply(command, deltas);
+                if (error == null) {
+                    accepted.add(command);
+                } else {
+                    fail(command, error);
+                }
+            }
+            if (accepted.isEmpty()) {
+                return;
+            }
+            try {
+                retry.run(() -> transactionTemplate.executeWithoutResult(status -> persist(accepted, deltas)));
+                accepted.forEach(command -> command.result().complete(null));
+            } catch (RuntimeException e) {
+                // Карту заблокировали или списали с нее в обход движка: забываем состояние
+                // и проводим переводы пачки по одному обычным путем через базу
+                deltas.keySet().forEach(cards::remove);
+                for (TransferCommand command : accepted) {
+                    // cardService.transfer учтет лимит заново
+                    command.release(velocityLimitService);
+                    try {
+                        retry.run(() -> transactionTemplate.executeWithoutResult(status -> {
+                            command.inTransaction().run();
+                            cardService.transfer(command.owner(), command.fromCardId(), command.toCardId(),
+                                command.amount());
+                        }));
+                        command.result().complete(null);
+                    } catch (RuntimeException transferError) {
+                        command.result().completeExceptionally(transferError);
+                    }
+                }
+            }
+        }
+
+        private RuntimeException apply(TransferCommand command, Map<UUID, CardDelta> deltas) {
+            CardState from = load(command.owner(), command.fromCardId(), deltas, false);
+            CardState to = load(command.owner(), command.toCardId(), deltas, false);
+            if (from == null || to == null) {
+                return new NoSuchElementException("Карта не найдена");
+            }
+            // Отказ по данным из памяти перепроверяем по базе: карту могли активировать или пополнить
+            if (!from.active || !to.active || from.balance.isLessThan(command.amount())) {
+                // Зачисления на горячую карту копятся в полосах, списание идет только с основного баланса
+                if (from.balance.isLessThan(command.amount()) && hotCardService.isHot(command.fromCardId())) {
+                    retry.run(() -> hotCardService.fold(command.fromCardId()));
+                }
+                from = load(command.owner(), command.fromCardId(), deltas, true);
+                to = load(command.owner(), command.toCardId(), deltas, true);
+                if (from == null || to == null) {
+                    return new NoSuchElementException("Карта не найдена");
+                }
+                if (!from.active || !to.active) {
+                    return new IllegalStateException("Карты должны быть активны");
+                }
+                if (from.balance.isLessThan(command.amount())) {
+                    return new IllegalStateException("Недостаточно средств");
+                }
+            }
+            from.balance = from.balance.minus(command.amount());
+            to.balance = to.balance.plus(command.amount());
+            CardDelta debit = deltas.computeIfAbsent(command.fromCardId(), cardId -> new CardDelta());
+            debit.net = debit.net.minus(command.amount());
+            if (debit.required.isLessThan(debit.net.negate())) {
+                debit.required = debit.net.negate();
+            }
+            CardDelta credit = deltas.computeIfAbsent(command.toCardId(), cardId -> new CardDelta());
+            credit.net = credit.net.plus(command.amount());
+            return null;
+        }
+
+        // Читает карту из базы и досчитывает к ней еще не сохраненные изменения текущей пачки
+        private CardState load(User owner, UUID cardId, Map<UUID, CardDelta> deltas, boolean refresh) {
+            CardState state = refresh ? null : cards.get(cardId);
+            if (state != null) {
+                return state;
+            }
+            Card card = cardRepository.findByIdAndOwner(cardId, owner).orElse(null);
+            if (card == null) {
+                cards.remove(cardId);
+                return null;
+            }
+            CardDelta pending = deltas.get(cardId);
+            state = new CardState(pending == null ? card.getBalance() : card.getBalance().plus(pending.net),
+                card.getStatus() == CardStatus.ACTIVE && !CardService.isExpired(card, LocalDate.now(clock)));
+            cards.put(cardId, state);
+            return state;
+        }
+
+        // Условный UPDATE идет по каждой карте пачки, в том числе с нулевым итогом: карту могли
+        // заблокировать или списать с нее в обход движка, и проводки по ней писать уже нельзя
+        private void persist(List<TransferCommand> accepted, Map<UUID, CardDelta> deltas) {
+            Map<UUID, User> owners = new HashMap<>();
+            for (TransferCommand command : accepted) {
+                owners.put(command.fromCardId(), command.owner());
+                owners.put(command.toCardId(), command.owner());
+            }
+            Map<UUID, CardDelta> ordered = new TreeMap<>(CardService.LOCK_ORDER);
+            ordered.putAll(deltas);
+            LocalDate today = LocalDate.now(clock);
+            for (Map.Entry<UUID, CardDelta> delta : ordered.entrySet()) {
+                CardDelta change = delta.getValue();
+                int updated = cardRepository.applyIfActive(delta.getKey(), owners.get(delta.getKey()), change.net,
+                    change.required, today);
+                if (updated == 0) {
+                    throw new StaleStateException();
+                }
+            }
+            for (TransferCommand command : accepted) {
+                command.inTransaction().run();
+                UUID operationId = ledgerService.recordTransfer(command.fromCardId(), command.toCardId(),
+                    command.amount());
+                outboxService.transfer(command.fromCardId(), command.toCardId(), command.amount(), operationId);
+            }
+        }
+    }
+}
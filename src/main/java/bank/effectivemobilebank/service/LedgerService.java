@@ -0,0 +1,103 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.dto.CardTransactionDto;
+import bank.effectivemobilebank.dto.CardTransactionPage;
+import bank.effectivemobilebank.model.LedgerDirection;
+import bank.effectivemobilebank.model.LedgerEntry;
+import bank.effectivemobilebank.model.LedgerOperationType;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.repository.LedgerEntryRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class LedgerService {
+    private final LedgerEntryRepository ledgerEntryRepository;
+
+    public LedgerService(LedgerEntryRepository ledgerEntryRepository) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+    }
+
+    @Transactional
+    public UUID recordTransfer(UUID fromCardId, UUID toCardId, Money amount) {
+        UUID operationId = UUID.randomUUID();
+        ledgerEntryRepository.saveAll(List.of(
+            entry(operationId, fromCardId, LedgerOperationType.TRANSFER, LedgerDirection.DEBIT, amount),
+            entry(operationId, toCardId, LedgerOperationType.TRANSFER, LedgerDirection.CREDIT, amount)
+        ));
+        return operationId;
+    }
+
+    @Transactional
+    public UUID recordTopUp(UUID cardId, Money amount, LedgerOperationType type) {
+        UUID operationId = UUID.randomUUID();
+        ledgerEntryRepository.saveAll(List.of(
+            entry(operationId, null, type, LedgerDirection.DEBIT, amount),
+            entry(operationId, cardId, type, LedgerDirection.CREDIT, amount)
+        ));
+        return operationId;
+    }
+
+    public Money balanceOf(UUID cardId) {
+        return Money.of(ledgerEntryRepository.sumBalanceByCardId(cardId));
+    }
+
+    /**
+     * История проводок по карте, новые сверху. Страницы листаются курсором по (createdAt, id)
+     * последней выданной записи, поэтому стоимость запроса не растёт с глубиной листания.
+     */
+    @Transactional(readOnly = true)
+    public CardTransactionPage history(UUID cardId, String cursor, int size) {
+        // запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        Limit limit = Limit.of(size + 1);
+        List<LedgerEntry> entries;
+        if (cursor == null || cursor.isBlank()) {
+            entries = ledgerEntryRepository.findHistory(cardId, limit);
+        } else {
+            LedgerEntry last = decodeCursor(cursor);
+            entries = ledgerEntryRepository.findHistoryBefore(cardId, last.getCreatedAt(), last.getId(), limit);
+        }
+        String nextCursor = null;
+        if (entries.size() > size) {
+            entries = entries.subList(0, size);
+            nextCursor = encodeCursor(entries.get(size - 1));
+        }
+        return CardTransactionPage.of(entries.stream().map(CardTransactionDto::of).toList(), nextCursor);
+    }
+
+    private static String encodeCursor(LedgerEntry entry) {
+        String raw = entry.getCreatedAt() + "|" + entry.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LedgerEntry decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            LedgerEntry position = new LedgerEntry();
+            position.setCreatedAt(Instant.parse(raw.substring(0, separator)));
+            position.setId(UUID.fromString(raw.substring(separator + 1)));
+            return position;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор");
+        }
+    }
+
+    private static LedgerEntry entry(UUID operationId, UUID cardId, LedgerOperationType type,
+                                     LedgerDirection direction, Money amount) {
+        LedgerEntry entry = new LedgerEntry();
+        entry.setOperationId(operationId);
+        entry.setCardId(cardId);
+        entry.setOperationType(type);
+        entry.setDirection(direction);
+        entry.setAmount(amount);
+        return entry;
+    }
+}
@@ -0,0 +1,132 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.OutboxEvent;
+import bank.effectivemobilebank.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раздает события из outbox слушателям приложения ({@code @EventListener(CardEvent.class)}).
+ * Каждый поток забирает пачку самых старых событий через SELECT ... FOR UPDATE SKIP LOCKED,
+ * поэтому потоки (и экземпляры приложения) не ждут друг друга и не раздают одно событие дважды;
+ * пропускная способность растет с {@code bank.outbox.dispatcher-threads}. Пачка удаляется
+ * в той же транзакции, так что после падения нераспределенные события будут разданы повторно:
+ * доставка «хотя бы один раз», слушатели должны быть идемпотентны по {@link CardEvent#id()}.
+ * Ошибка слушателя не останавливает пачку — событие считается доставленным, ошибка учитывается
+ * в bank.outbox.listener.errors.
+ */
+@Component
+public class OutboxDispatcher {
+    private final OutboxEventRepository repository;
+    private final ApplicationEventPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int threads;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final Timer lag;
+    private final Counter dispatched;
+    private final Counter listenerErrors;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public OutboxDispatcher(OutboxEventRepository repository,
+                            ApplicationEventPublisher publisher,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${bank.outbox.dispatcher-threads:2}") int threads,
+                            @Value("${bank.outbox.batch-size:200}") int batchSize,
+                            @Value("${bank.outbox.poll-interval-ms:200}") long pollIntervalMillis) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.threads = Math.max(0, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMillis = Math.max(1, pollIntervalMillis);
+        this.lag = meterRegistry.timer("bank.outbox.lag");
+        this.dispatched = meterRegistry.counter("bank.outbox.dispatched");
+        this.listenerErrors = meterRegistry.counter("bank.outbox.listener.errors");
+    }
+
+    // Ноль потоков отключает раздачу: события копятся в таблице до включения
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running || threads == 0) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().name("outbox-dispatcher-" + i).daemon(true).start(this::poll));
+        }
+    }
+
+    @PreDestroy
+    synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        workers.clear();
+    }
+
+    /**
+     * Раздает одну пачку событий и удаляет ее. Возвращает размер пачки.
+     */
+    public int dispatchBatch() {
+        Integer size = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = repository.lockBatch(Limit.of(batchSize));
+            for (OutboxEvent event : events) {
+                publish(event);
+            }
+            repository.deleteAllInBatch(events);
+            return events.size();
+        });
+        return size == null ? 0 : size;
+    }
+
+    private void publish(OutboxEvent event) {
+        try {
+            publisher.publishEvent(CardEvent.of(event));
+        } catch (RuntimeException e) {
+            listenerErrors.increment();
+        }
+        dispatched.increment();
+        lag.record(Duration.between(event.getCreatedAt(), Instant.now()));
+    }
+
+    // Полная пачка — сразу за следующей, иначе пауза до следующего опроса
+    private void poll() {
+        while (running) {
+            try {
+                if (dispatchBatch() < batchSize) {
+                    Thread.sleep(pollIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // база недоступна или пачка откатилась — события останутся в таблице до следующего опроса
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
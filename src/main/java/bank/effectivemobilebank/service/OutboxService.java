@@ -0,0 +1,49 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.OutboxEvent;
+import bank.effectivemobilebank.repository.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запись событий по картам в outbox. Вызывается только внутри транзакции изменения,
+ * поэтому событие появляется тогда и только тогда, когда изменение закоммичено.
+ */
+@Service
+public class OutboxService {
+    private final OutboxEventRepository repository;
+
+    public OutboxService(OutboxEventRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void transfer(UUID fromCardId, UUID toCardId, Money amount, UUID operationId) {
+        repository.saveAll(List.of(
+            OutboxEvent.balanceChanged(fromCardId, amount.negate(), operationId),
+            OutboxEvent.balanceChanged(toCardId, amount, operationId)
+        ));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void topUp(UUID cardId, Money amount, UUID operationId) {
+        repository.save(OutboxEvent.balanceChanged(cardId, amount, operationId));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void statusChanged(UUID cardId, CardStatus status) {
+        repository.save(OutboxEvent.statusChanged(cardId, status));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void statusChanged(Collection<UUID> cardIds, CardStatus status) {
+        repository.saveAll(cardIds.stream().map(cardId -> OutboxEvent.statusChanged(cardId, status)).toList());
+    }
+}
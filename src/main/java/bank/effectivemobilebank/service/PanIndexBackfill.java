@@ -0,0 +1,66 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.config.CardNumberCipher;
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.repository.CardRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Заполняет слепой индекс номера для карт, созданных до появления колонки pan_hash.
+ * Индекс считается по ключу приложения, поэтому миграция не может заполнить его в SQL.
+ */
+@Component
+public class PanIndexBackfill {
+    static final int CHUNK_SIZE = 500;
+    // Меньше любого uuid в порядке PostgreSQL — начало обхода по id
+    private static final UUID START = new UUID(0L, 0L);
+
+    private final CardRepository cardRepository;
+    private final CardNumberCipher cipher;
+    private final TransactionTemplate transactionTemplate;
+
+    public PanIndexBackfill(CardRepository cardRepository, CardNumberCipher cipher,
+                            PlatformTransactionManager transactionManager) {
+        this.cardRepository = cardRepository;
+        this.cipher = cipher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Обходит карты без индекса порциями по id, каждая порция в своей транзакции.
+     * Повторяющийся номер пропускается: такая карта остается без индекса и не находится
+     * по номеру, пока дубль не разберут вручную. Возвращает число заполненных карт.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public int backfill() {
+        int filled = 0;
+        UUID after = START;
+        while (true) {
+            List<Card> chunk = cardRepository.findWithoutPanHashAfter(after, Limit.of(CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                return filled;
+            }
+            filled += transactionTemplate.execute(status -> fill(chunk));
+            after = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    private int fill(List<Card> cards) {
+        int filled = 0;
+        for (Card card : cards) {
+            String panHash = cipher.blindIndex(cipher.decrypt(card.getPanEncrypted()));
+            if (!cardRepository.existsByPanHash(panHash)) {
+                filled += cardRepository.updatePanHash(card.getId(), panHash);
+            }
+        }
+        return filled;
+    }
+}
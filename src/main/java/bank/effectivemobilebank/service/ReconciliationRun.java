@@ -0,0 +1,96 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Money;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ход одной сверки. Счетчики обновляются потоками пула по мере проверки порций,
+ * поэтому прогресс виден, пока сверка идет. Хранится не больше {@code maxReported}
+ * расхождений, остальные только считаются.
+ */
+public class ReconciliationRun {
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public record Mismatch(UUID cardId, Money balance, Money ledgerBalance) {
+    }
+
+    private final UUID id = UUID.randomUUID();
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong cardsChecked = new AtomicLong();
+    private final AtomicLong mismatchCount = new AtomicLong();
+    private final Queue<Mismatch> mismatches = new ConcurrentLinkedQueue<>();
+    private final int maxReported;
+    private volatile Status status = Status.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    ReconciliationRun(int maxReported) {
+        this.maxReported = maxReported;
+    }
+
+    void checked(int cards) {
+        cardsChecked.addAndGet(cards);
+    }
+
+    void mismatch(Mismatch mismatch) {
+        if (mismatchCount.incrementAndGet() <= maxReported) {
+            mismatches.add(mismatch);
+        }
+    }
+
+    void finish(Throwable failure) {
+        error = failure == null ? null : String.valueOf(failure.getMessage());
+        finishedAt = Instant.now();
+        status = failure == null ? Status.COMPLETED : Status.FAILED;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getCardsChecked() {
+        return cardsChecked.get();
+    }
+
+    public long getMismatchCount() {
+        return mismatchCount.get();
+    }
+
+    public List<Mismatch> getMismatches() {
+        return List.copyOf(mismatches);
+    }
+
+    // Карт в секунду с начала сверки до ее окончания (или до текущего момента)
+    public double getCardsPerSecond() {
+        Instant end = finishedAt == null ? Instant.now() : finishedAt;
+        long millis = Math.max(1, Duration.between(startedAt, end).toMillis());
+        return cardsChecked.get() * 1000.0 / millis;
+    }
+}
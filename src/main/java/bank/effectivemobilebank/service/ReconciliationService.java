@@ -0,0 +1,208 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.repository.CardRepository;
+import bank.effectivemobilebank.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Сверка балансов карт с журналом проводок по всем картам. Id карт читаются курсором
+ * по возрастанию порциями {@code bank.reconciliation.chunk-size}, порции проверяются
+ * параллельно в ForkJoinPool. Число порций в работе ограничено, поэтому память не растет
+ * с числом карт. Каждая порция читается в одной транзакции REPEATABLE READ: в PostgreSQL
+ * баланс и проводки видны на один момент. Базы, где снимок берется по таблице при первом
+ * чтении, могут увидеть перевод наполовину, поэтому подозрительная карта перепроверяется
+ * отдельно и попадает в отчет, только если расхождение держится во всех попытках.
+ */
+@Service
+public class ReconciliationService {
+    static final int RECHECK_ATTEMPTS = 3;
+
+    private final CardRepository cardRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final HotCardService hotCardService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxReportedMismatches;
+    private final AtomicReference<ReconciliationRun> lastRun = new AtomicReference<>();
+    private final Counter cardsChecked;
+    private final Counter mismatches;
+    private final Timer chunkTimer;
+
+    public ReconciliationService(CardRepository cardRepository,
+                                 LedgerEntryRepository ledgerEntryRepository,
+                                 HotCardService hotCardService,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${bank.reconciliation.chunk-size:1000}") int chunkSize,
+                                 @Value("${bank.reconciliation.parallelism:4}") int parallelism,
+                                 @Value("${bank.reconciliation.max-reported-mismatches:1000}") int maxReportedMismatches) {
+        this.cardRepository = cardRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.hotCardService = hotCardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.maxReportedMismatches = maxReportedMismatches;
+        this.cardsChecked = meterRegistry.counter("bank.reconciliation.cards.checked");
+        this.mismatches = meterRegistry.counter("bank.reconciliation.mismatches");
+        this.chunkTimer = meterRegistry.timer("bank.reconciliation.chunk");
+        Gauge.builder("bank.reconciliation.running", lastRun,
+                ref -> ref.get() != null && ref.get().getStatus() == ReconciliationRun.Status.RUNNING ? 1 : 0)
+            .register(meterRegistry);
+        Gauge.builder("bank.reconciliation.throughput", lastRun,
+                ref -> ref.get() == null ? 0 : ref.get().getCardsPerSecond())
+            .baseUnit("cards/s")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${bank.reconciliation.cron:0 30 1 * * *}", zone = "UTC")
+    public void scheduledReconcile() {
+        ReconciliationRun run = begin();
+        if (run != null) {
+            execute(run);
+        }
+    }
+
+    /**
+     * Запускает сверку в отдельном потоке и сразу возвращает ее ход.
+     * Одновременно выполняется не больше одной сверки.
+     */
+    public ReconciliationRun start() {
+        ReconciliationRun run = begin();
+        if (run == null) {
+            throw new IllegalStateException("Сверка уже выполняется");
+        }
+        Thread.ofPlatform().name("reconciliation").daemon(true).start(() -> execute(run));
+        return run;
+    }
+
+    // Синхронная сверка, как по расписанию
+    public ReconciliationRun reconcile() {
+        ReconciliationRun run = begin();
+        if (run == null) {
+            throw new IllegalStateException("Сверка уже выполняется");
+        }
+        execute(run);
+        return run;
+    }
+
+    public Optional<ReconciliationRun> lastRun() {
+        return Optional.ofNullable(lastRun.get());
+    }
+
+    private ReconciliationRun begin() {
+        ReconciliationRun previous = lastRun.get();
+        if (previous != null && previous.getStatus() == ReconciliationRun.Status.RUNNING) {
+            return null;
+        }
+        ReconciliationRun run = new ReconciliationRun(maxReportedMismatches);
+        return lastRun.compareAndSet(previous, run) ? run : null;
+    }
+
+    private void execute(ReconciliationRun run) {
+        int maxInFlight = parallelism * 2;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<UUID> chunk = cardRepository.findIdsOrdered(Limit.of(chunkSize));
+            while (!chunk.isEmpty() && failure.get() == null) {
+                inFlight.acquire();
+                List<UUID> cardIds = chunk;
+                pool.execute(() -> {
+                    try {
+                        chunkTimer.record(() -> check(run, cardIds));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                chunk = cardRepository.findIdsAfter(cardIds.get(cardIds.size() - 1), Limit.of(chunkSize));
+            }
+            // дожидаемся порций, которые еще в работе
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            pool.shutdown();
+        }
+        run.finish(failure.get());
+    }
+
+    private void check(ReconciliationRun run, List<UUID> cardIds) {
+        List<UUID> suspects = new ArrayList<>();
+        int checked = transactionTemplate.execute(status -> {
+            Map<UUID, Money> ledger = new HashMap<>();
+            for (LedgerEntryRepository.CardTotal total : ledgerEntryRepository.sumBalances(cardIds)) {
+                ledger.put(total.getCardId(), Money.of(total.getBalance()));
+            }
+            // карты, удаленные после чтения id, просто не найдутся
+            List<Card> cards = cardRepository.findAllById(cardIds);
+            hotCardService.loadStripedBalances(cards);
+            for (Card card : cards) {
+                if (!ledger.getOrDefault(card.getId(), Money.ZERO).equals(card.getTotalBalance())) {
+                    suspects.add(card.getId());
+                }
+            }
+            return cards.size();
+        });
+        for (UUID cardId : suspects) {
+            recheck(cardId).ifPresent(mismatch -> {
+                run.mismatch(mismatch);
+                mismatches.increment();
+            });
+        }
+        run.checked(checked);
+        cardsChecked.increment(checked);
+    }
+
+    private Optional<ReconciliationRun.Mismatch> recheck(UUID cardId) {
+        ReconciliationRun.Mismatch mismatch = null;
+        for (int attempt = 0; attempt < RECHECK_ATTEMPTS; attempt++) {
+            mismatch = transactionTemplate.execute(status -> {
+                Money ledgerBalance = Money.of(ledgerEntryRepository.sumBalanceByCardId(cardId));
+                Card card = cardRepository.findById(cardId).orElse(null);
+                if (card == null) {
+                    return null;
+                }
+                hotCardService.loadStripedBalances(List.of(card));
+                return ledgerBalance.equals(card.getTotalBalance())
+                    ? null
+                    : new ReconciliationRun.Mismatch(cardId, card.getTotalBalance(), ledgerBalance);
+            });
+            if (mismatch == null) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(mismatch);
+    }
+}
@@ -0,0 +1,6 @@
+package bank.effectivemobilebank.service;
+
+public enum TransferEngineMode {
+    DATABASE,
+    IN_MEMORY
+}
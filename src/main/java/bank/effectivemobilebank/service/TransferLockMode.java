@@ -0,0 +1,7 @@
+package bank.effectivemobilebank.service;
+
+public enum TransferLockMode {
+    ATOMIC,
+    PESSIMISTIC,
+    OPTIMISTIC
+}
@@ -1,24 +1,94 @@
 package bank.effectivemobilebank.service;
 
+import bank.effectivemobilebank.dto.BatchTransferItemResult;
+import bank.effectivemobilebank.dto.TransferRequest;
+import bank.effectivemobilebank.model.Money;
 import bank.effectivemobilebank.model.User;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class TransferService {
     private final CardService cardService;
+    private final ConcurrencyRetry retry;
+    private final Optional<InMemoryTransferEngine> engine;
+    private final TransactionTemplate transactionTemplate;
+    private final long engineTimeoutMillis;
 
-    public TransferService(CardService cardService) {
+    public TransferService(CardService cardService, ConcurrencyRetry retry, Optional<InMemoryTransferEngine> engine,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${bank.transfer.engine.await-timeout-ms:5000}") long engineTimeoutMillis) {
         this.cardService = cardService;
+        this.retry = retry;
+        this.engine = engine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.engineTimeoutMillis = engineTimeoutMillis;
     }
 
-    @Transactional
-    public void transferBetweenOwn(User owner, UUID fromCardId, UUID toCardId, BigDecimal amount) {
-        cardService.transfer(owner, fromCardId, toCardId, amount);
+    public void transferBetweenOwn(User owner, UUID fromCardId, UUID toCardId, Money amount) {
+        transferBetweenOwn(owner, fromCardId, toCardId, amount, () -> { });
+    }
+
+    /**
+     * {@code inTransaction} выполняется в транзакции, которая проводит перевод, и коммитится
+     * вместе с ним. Через него IdempotencyService сохраняет ключ запроса.
+     * Каждая попытка идет в отдельной транзакции, поэтому здесь @Transactional не нужен.
+     */
+    public void transferBetweenOwn(User owner, UUID fromCardId, UUID toCardId, Money amount,
+                                   Runnable inTransaction) {
+        if (engine.isPresent()) {
+            await(engine.get().submit(owner, fromCardId, toCardId, amount, inTransaction));
+            return;
+        }
+        retry.run(() -> transactionTemplate.executeWithoutResult(status -> {
+            inTransaction.run();
+            cardService.transfer(owner, fromCardId, toCardId, amount);
+        }));
+    }
+
+    // По таймауту исход неизвестен: перевод может закоммититься позже. Ключ идемпотентности
+    // коммитится вместе с ним, поэтому повтор с тем же ключом не спишет деньги второй раз
+    private void await(CompletableFuture<Void> result) {
+        try {
+            result.get(engineTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RejectedExecutionException(
+                "Перевод не завершился вовремя, повторите запрос с тем же ключом идемпотентности");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Перевод прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Перевод не выполнен", e.getCause());
+        }
+    }
+
+    public void transferToCardNumber(User owner, UUID fromCardId, String toCardNumber, Money amount) {
+        retry.run(() -> cardService.transferToCardNumber(owner, fromCardId, toCardNumber, amount));
+    }
+
+    public List<BatchTransferItemResult> transferBatch(User owner, List<TransferRequest> transfers) {
+        return retry.call(() -> cardService.transferBatch(owner, transfers));
     }
-}
 
+    public void topUp(User owner, UUID cardId, Money amount) {
+        retry.run(() -> cardService.topUp(owner, cardId, amount));
+    }
 
+    public void adminTopUp(UUID cardId, Money amount) {
+        retry.run(() -> cardService.adminTopUp(cardId, amount));
+    }
+}
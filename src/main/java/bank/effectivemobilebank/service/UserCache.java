@@ -0,0 +1,79 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Кеш пользователей и их authorities по логину для входа, UserService и JwtAuthFilter.
+ * Ограничен размером {@code bank.users.cache-size} и временем жизни {@code bank.users.cache-ttl-seconds}.
+ * Смена ролей и удаление сбрасывают запись на этом экземпляре сразу после коммита,
+ * на остальных она устаревает не дольше чем через TTL. Отсутствующие логины не кешируются.
+ * Попадания и промахи видны в метриках cache.gets{cache=users}.
+ */
+@Component
+public class UserCache {
+    private final UserRepository userRepository;
+    private final Cache<String, CachedUser> users;
+
+    public UserCache(UserRepository userRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${bank.users.cache-size:10000}") long cacheSize,
+                     @Value("${bank.users.cache-ttl-seconds:30}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+            .maximumSize(Math.max(1, cacheSize))
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+    }
+
+    /**
+     * Неизменяемый снимок пользователя. Хеш пароля нужен только для проверки при входе.
+     */
+    public record CachedUser(UUID id, String username, String passwordHash, Set<UserRole> roles,
+                             int tokenVersion, Set<GrantedAuthority> authorities) {
+
+        static CachedUser of(User user) {
+            Set<GrantedAuthority> authorities = user.getRoles().stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.name()))
+                .collect(Collectors.toUnmodifiableSet());
+            return new CachedUser(user.getId(), user.getUsername(), user.getPasswordHash(),
+                Set.copyOf(user.getRoles()), user.getTokenVersion(), authorities);
+        }
+
+        // Отдельная копия для вызывающего: сущность из кеша не должна меняться снаружи
+        public User toUser() {
+            return new User(id, username, passwordHash, new HashSet<>(roles), tokenVersion);
+        }
+    }
+
+    public Optional<CachedUser> find(String username) {
+        return Optional.ofNullable(users.get(username,
+            name -> userRepository.findByUsername(name).map(CachedUser::of).orElse(null)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.username() != null) {
+            users.invalidate(event.username());
+        }
+    }
+}
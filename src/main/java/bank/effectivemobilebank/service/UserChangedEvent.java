@@ -0,0 +1,10 @@
+package bank.effectivemobilebank.service;
+
+import java.util.UUID;
+
+/**
+ * Роли пользователя изменились или он удален: выданные ему токены и закешированные
+ * данные о нем больше не действительны.
+ */
+public record UserChangedEvent(UUID userId, String username) {
+}
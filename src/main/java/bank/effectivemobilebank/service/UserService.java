@@ -3,6 +3,7 @@ package bank.effectivemobilebank.service;
 import bank.effectivemobilebank.model.User;
 import bank.effectivemobilebank.model.UserRole;
 import bank.effectivemobilebank.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,10 +17,15 @@ import java.util.UUID;
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserCache userCache;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, UserCache userCache,
+                       ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -34,8 +40,9 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    // Отдает отдельную копию из кеша пользователей, а не управляемую сущность
     public Optional<User> findByUsername(String username) {
-        return userRepository.findByUsername(username);
+        return userCache.find(username).map(UserCache.CachedUser::toUser);
     }
 
     public List<User> findAll() {
@@ -44,14 +51,28 @@ public class UserService {
 
     @Transactional
     public void deleteById(UUID id) {
+        String username = userRepository.findUsernameById(id).orElse(null);
         userRepository.deleteById(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id, username));
+    }
+
+    // Перехеширование при входе: версия токена не меняется, выданные токены остаются действительными
+    @Transactional
+    public void updatePasswordHash(String username, String passwordHash) {
+        User user = userRepository.findByUsername(username).orElseThrow();
+        user.setPasswordHash(passwordHash);
+        userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), username));
     }
 
     @Transactional
     public User updateRoles(UUID id, Set<UserRole> roles) {
         User user = userRepository.findById(id).orElseThrow();
         user.setRoles(roles);
-        return userRepository.save(user);
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(id, user.getUsername()));
+        return saved;
     }
 }
 
@@ -0,0 +1,392 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.CardLimit;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.VelocityBucket;
+import bank.effectivemobilebank.model.VelocityBucketId;
+import bank.effectivemobilebank.model.VelocityScope;
+import bank.effectivemobilebank.repository.CardLimitRepository;
+import bank.effectivemobilebank.repository.VelocityBucketRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Часовые и суточные лимиты сумм по карте и по пользователю. Окна считаются в памяти:
+ * 60 минутных и 24 часовые корзины на карту и на пользователя, проверка не ходит в базу.
+ * Корзины защищены полосатыми блокировками по id и периодически сохраняются в velocity_buckets,
+ * чтобы перезапуск не обнулял окна. В базу уходят только приращения этого экземпляра,
+ * поэтому строка корзины накапливает суммы всех экземпляров, а при старте окна получают их общий итог.
+ */
+@Service
+public class VelocityLimitService {
+    private static final Comparator<VelocityBucket> BUCKET_ORDER = Comparator
+        .comparing((VelocityBucket bucket) -> bucket.getId().getSubjectId())
+        .thenComparingInt(bucket -> bucket.getId().getBucketMinutes())
+        .thenComparingLong(bucket -> bucket.getId().getBucketStart());
+
+    private final CardLimitRepository cardLimitRepository;
+    private final VelocityBucketRepository bucketRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long cardHourly;
+    private final long cardDaily;
+    private final long userHourly;
+    private final long userDaily;
+    private final Object[] locks;
+    private final Map<UUID, Window> cardWindows = new ConcurrentHashMap<>();
+    private final Map<UUID, Window> userWindows = new ConcurrentHashMap<>();
+    private final Map<UUID, CardLimit> cardLimits = new ConcurrentHashMap<>();
+
+    public VelocityLimitService(CardLimitRepository cardLimitRepository,
+                                VelocityBucketRepository bucketRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${bank.limits.card-hourly:0}") BigDecimal cardHourly,
+                                @Value("${bank.limits.card-daily:0}") BigDecimal cardDaily,
+                                @Value("${bank.limits.user-hourly:0}") BigDecimal userHourly,
+                                @Value("${bank.limits.user-daily:0}") BigDecimal userDaily,
+                                @Value("${bank.limits.lock-stripes:64}") int lockStripes) {
+        this.cardLimitRepository = cardLimitRepository;
+        this.bucketRepository = bucketRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cardHourly = limitOf(Money.of(cardHourly));
+        this.cardDaily = limitOf(Money.of(cardDaily));
+        this.userHourly = limitOf(Money.of(userHourly));
+        this.userDaily = limitOf(Money.of(userDaily));
+        this.locks = new Object[Math.max(1, lockStripes)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public record Reservation(UUID userId, UUID cardId, long minute, long kopecks) {
+    }
+
+    public record Usage(Money hourly, Money daily) {
+    }
+
+    @PostConstruct
+    void restore() {
+        long minute = currentMinute();
+        for (VelocityBucket bucket : bucketRepository.findLive(minute, minute / 60)) {
+            Map<UUID, Window> windows = bucket.getScope() == VelocityScope.CARD ? cardWindows : userWindows;
+            VelocityBucketId id = bucket.getId();
+            windows.computeIfAbsent(id.getSubjectId(), subjectId -> new Window())
+                .restore(id.getBucketMinutes(), id.getBucketStart(), bucket.getAmount().kopecks());
+        }
+        reloadCardLimits();
+    }
+
+    /**
+     * Учитывает сумму в окнах карты и пользователя или бросает {@link IllegalStateException},
+     * если она превысит лимит. Внутри транзакции учет снимается сам, если транзакция откатится.
+     */
+    public Reservation reserve(UUID userId, UUID cardId, Money amount) {
+        Reservation reservation = reserve(userId, cardId, amount, currentMinute());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(reservation);
+                    }
+                }
+            });
+        }
+        return reservation;
+    }
+
+    Reservation reserve(UUID userId, UUID cardId, Money amount, long minute) {
+        long kopecks = amount.kopecks();
+        CardLimit override = cardLimits.get(cardId);
+        long hourlyLimit = override == null || override.getHourlyLimit() == null
+            ? cardHourly : override.getHourlyLimit().kopecks();
+        long dailyLimit = override == null || override.getDailyLimit() == null
+            ? cardDaily : override.getDailyLimit().kopecks();
+        withLocks(cardId, userId, () -> {
+            Window card = cardWindows.computeIfAbsent(cardId, id -> new Window());
+            Window user = userWindows.computeIfAbsent(userId, id -> new Window());
+            check(card.hourTotal(minute), kopecks, hourlyLimit, "Превышен часовой лимит по карте");
+            check(card.dayTotal(minute), kopecks, dailyLimit, "Превышен суточный лимит по карте");
+            check(user.hourTotal(minute), kopecks, userHourly, "Превышен часовой лимит пользователя");
+            check(user.dayTotal(minute), kopecks, userDaily, "Превышен суточный лимит пользователя");
+            card.add(minute, kopecks);
+            user.add(minute, kopecks);
+        });
+        return new Reservation(userId, cardId, minute, kopecks);
+    }
+
+    // Возвращает сумму в окна, если операция не состоялась
+    public void release(Reservation reservation) {
+        withLocks(reservation.cardId(), reservation.userId(), () -> {
+            Window card = cardWindows.get(reservation.cardId());
+            Window user = userWindows.get(reservation.userId());
+            if (card != null) {
+                card.remove(reservation.minute(), reservation.kopecks());
+            }
+            if (user != null) {
+                user.remove(reservation.minute(), reservation.kopecks());
+            }
+        });
+    }
+
+    public Usage usage(UUID cardId) {
+        long minute = currentMinute();
+        synchronized (lockFor(cardId)) {
+            Window card = cardWindows.get(cardId);
+            return card == null
+                ? new Usage(Money.ZERO, Money.ZERO)
+                : new Usage(Money.ofKopecks(card.hourTotal(minute)), Money.ofKopecks(card.dayTotal(minute)));
+        }
+    }
+
+    public CardLimit limitsOf(UUID cardId) {
+        return cardLimits.getOrDefault(cardId, new CardLimit(cardId, null, null));
+    }
+
+    public CardLimit setCardLimits(UUID cardId, Money hourlyLimit, Money dailyLimit) {
+        CardLimit limit = new CardLimit(cardId, hourlyLimit, dailyLimit);
+        if (hourlyLimit == null && dailyLimit == null) {
+            cardLimitRepository.deleteById(cardId);
+            cardLimits.remove(cardId);
+            return limit;
+        }
+        cardLimitRepository.save(limit);
+        cardLimits.put(cardId, limit);
+        return limit;
+    }
+
+    /**
+     * Прибавляет к корзинам в базе приращения окон с прошлого checkpoint, удаляет просроченные
+     * корзины и перечитывает лимиты карт, чтобы подхватить изменения с других экземпляров.
+     * Окна без операций больше суток выгружаются из памяти.
+     */
+    @Scheduled(fixedDelayString = "${bank.limits.checkpoint-interval-ms:10000}")
+    public void checkpoint() {
+        long minute = currentMinute();
+        List<VelocityBucket> deltas = new ArrayList<>();
+        collect(cardWindows, VelocityScope.CARD, minute, deltas);
+        collect(userWindows, VelocityScope.USER, minute, deltas);
+        // Строки корзин блокируются в одном порядке на всех экземплярах
+        deltas.sort(BUCKET_ORDER);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                deltas.forEach(this::merge);
+                bucketRepository.deleteExpired(minute, minute / 60);
+            });
+        } catch (RuntimeException e) {
+            // Приращения попадут в следующий checkpoint
+            deltas.forEach(this::retain);
+            throw e;
+        }
+        reloadCardLimits();
+    }
+
+    private void merge(VelocityBucket delta) {
+        VelocityBucketId id = delta.getId();
+        int inserted = bucketRepository.insertIfAbsent(id.getSubjectId(), id.getBucketMinutes(),
+            id.getBucketStart(), delta.getScope().name(), delta.getAmount().toBigDecimal());
+        if (inserted == 0) {
+            bucketRepository.addAmount(id.getSubjectId(), id.getBucketMinutes(), id.getBucketStart(),
+                delta.getAmount());
+        }
+    }
+
+    private void collect(Map<UUID, Window> windows, VelocityScope scope, long minute, List<VelocityBucket> deltas) {
+        for (UUID subjectId : windows.keySet()) {
+            synchronized (lockFor(subjectId)) {
+                Window window = windows.get(subjectId);
+                if (window == null) {
+                    continue;
+                }
+                if (window.lastMinute <= minute - 24 * 60) {
+                    windows.remove(subjectId);
+                    continue;
+                }
+                window.export(subjectId, scope, minute, deltas);
+            }
+        }
+    }
+
+    private void retain(VelocityBucket delta) {
+        UUID subjectId = delta.getId().getSubjectId();
+        synchronized (lockFor(subjectId)) {
+            Window window = (delta.getScope() == VelocityScope.CARD ? cardWindows : userWindows).get(subjectId);
+            if (window != null) {
+                window.retain(delta.getId(), delta.getAmount().kopecks());
+            }
+        }
+    }
+
+    private void reloadCardLimits() {
+        List<CardLimit> limits = cardLimitRepository.findAll();
+        Set<UUID> present = new HashSet<>();
+        for (CardLimit limit : limits) {
+            cardLimits.put(limit.getCardId(), limit);
+            present.add(limit.getCardId());
+        }
+        cardLimits.keySet().retainAll(present);
+    }
+
+    // Две полосы берутся в порядке номера, чтобы встречные операции не взаимоблокировались
+    private void withLocks(UUID cardId, UUID userId, Runnable action) {
+        int a = stripe(cardId);
+        int b = stripe(userId);
+        synchronized (locks[Math.min(a, b)]) {
+            synchronized (locks[Math.max(a, b)]) {
+                action.run();
+            }
+        }
+    }
+
+    private Object lockFor(UUID id) {
+        return locks[stripe(id)];
+    }
+
+    private int stripe(UUID id) {
+        return Math.floorMod(id.hashCode(), locks.length);
+    }
+
+    private static void check(long used, long amount, long limit, String message) {
+        if (used + amount > limit) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    // Ноль в настройках означает «без лимита»
+    private static long limitOf(Money limit) {
+        return limit.signum() > 0 ? limit.kopecks() : Long.MAX_VALUE;
+    }
+
+    private static long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    /**
+     * Скользящие окна одного субъекта в копейках: слот минутной корзины — минута от эпохи по модулю 60,
+     * часовой — час по модулю 24. Доступ только под блокировкой полосы субъекта.
+     */
+    static final class Window {
+        private final long[] minuteStarts = new long[60];
+        private final long[] minuteAmounts = new long[60];
+        private final long[] hourStarts = new long[24];
+        private final long[] hourAmounts = new long[24];
+        // Приращения корзин с прошлого checkpoint по началу корзины; нулевые не хранятся
+        private final Map<Long, Long> minuteDeltas = new HashMap<>();
+        private final Map<Long, Long> hourDeltas = new HashMap<>();
+        private long lastMinute;
+
+        long hourTotal(long minute) {
+            long total = 0;
+            for (int i = 0; i < minuteStarts.length; i++) {
+                if (minuteStarts[i] > minute - 60 && minuteStarts[i] <= minute) {
+                    total += minuteAmounts[i];
+                }
+            }
+            return total;
+        }
+
+        long dayTotal(long minute) {
+            long hour = minute / 60;
+            long total = 0;
+            for (int i = 0; i < hourStarts.length; i++) {
+                if (hourStarts[i] > hour - 24 && hourStarts[i] <= hour) {
+                    total += hourAmounts[i];
+                }
+            }
+            return total;
+        }
+
+        void add(long minute, long kopecks) {
+            int slot = (int) (minute % 60);
+            if (minuteStarts[slot] != minute) {
+                minuteStarts[slot] = minute;
+                minuteAmounts[slot] = 0;
+            }
+            minuteAmounts[slot] += kopecks;
+            long hour = minute / 60;
+            int hourSlot = (int) (hour % 24);
+            if (hourStarts[hourSlot] != hour) {
+                hourStarts[hourSlot] = hour;
+                hourAmounts[hourSlot] = 0;
+            }
+            hourAmounts[hourSlot] += kopecks;
+            lastMinute = Math.max(lastMinute, minute);
+            minuteDeltas.merge(minute, kopecks, Window::sum);
+            hourDeltas.merge(hour, kopecks, Window::sum);
+        }
+
+        // Корзина, которую уже заняла более поздняя минута или час, вышла из окна — из нее вычитать нечего
+        void remove(long minute, long kopecks) {
+            int slot = (int) (minute % 60);
+            if (minuteStarts[slot] == minute) {
+                minuteAmounts[slot] -= kopecks;
+                minuteDeltas.merge(minute, -kopecks, Window::sum);
+            }
+            long hour = minute / 60;
+            int hourSlot = (int) (hour % 24);
+            if (hourStarts[hourSlot] == hour) {
+                hourAmounts[hourSlot] -= kopecks;
+                hourDeltas.merge(hour, -kopecks, Window::sum);
+            }
+        }
+
+        void restore(int bucketMinutes, long start, long kopecks) {
+            if (bucketMinutes == 1) {
+                int slot = (int) (start % 60);
+                minuteStarts[slot] = start;
+                minuteAmounts[slot] = kopecks;
+                lastMinute = Math.max(lastMinute, start);
+            } else {
+                int slot = (int) (start % 24);
+                hourStarts[slot] = start;
+                hourAmounts[slot] = kopecks;
+                lastMinute = Math.max(lastMinute, start * 60);
+            }
+        }
+
+        // Выгружает приращения корзин, еще попадающих в окна, и обнуляет их
+        void export(UUID subjectId, VelocityScope scope, long minute, List<VelocityBucket> deltas) {
+            minuteDeltas.forEach((start, kopecks) -> {
+                if (start > minute - 60) {
+                    deltas.add(new VelocityBucket(new VelocityBucketId(subjectId, 1, start), scope,
+                        Money.ofKopecks(kopecks)));
+                }
+            });
+            long hour = minute / 60;
+            hourDeltas.forEach((start, kopecks) -> {
+                if (start > hour - 24) {
+                    deltas.add(new VelocityBucket(new VelocityBucketId(subjectId, 60, start), scope,
+                        Money.ofKopecks(kopecks)));
+                }
+            });
+            minuteDeltas.clear();
+            hourDeltas.clear();
+        }
+
+        // Возвращает приращение, которое не удалось сохранить
+        void retain(VelocityBucketId id, long kopecks) {
+            (id.getBucketMinutes() == 1 ? minuteDeltas : hourDeltas).merge(id.getBucketStart(), kopecks, Window::sum);
+        }
+
+        private static Long sum(Long a, Long b) {
+            long total = a + b;
+            return total == 0 ? null : total;
+        }
+    }
+}
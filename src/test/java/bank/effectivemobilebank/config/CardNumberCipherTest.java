@@ -277,4 +277,21 @@ class CardNumberCipherTest {
         assertNotEquals(plainCardNumber, encrypted);
         assertEquals(plainCardNumber, decrypted);
     }
+
+    @Test
+    void testBlindIndex_DeterministicAndIgnoresSeparators() {
+        String index = cipher.blindIndex("1234567890123456");
+
+        assertEquals(64, index.length());
+        assertEquals(index, cipher.blindIndex("1234567890123456"));
+        assertEquals(index, cipher.blindIndex("1234 5678 9012-3456"));
+        assertNotEquals(index, cipher.blindIndex("1234567890123457"));
+    }
+
+    @Test
+    void testBlindIndex_DependsOnSecretKey() {
+        CardNumberCipher cipher2 = new CardNumberCipher("different-secret-key");
+
+        assertNotEquals(cipher.blindIndex("1234567890123456"), cipher2.blindIndex("1234567890123456"));
+    }
 }
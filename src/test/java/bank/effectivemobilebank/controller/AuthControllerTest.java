@@ -2,7 +2,7 @@ package bank.effectivemobilebank.controller;
 
 import bank.effectivemobilebank.model.User;
 import bank.effectivemobilebank.model.UserRole;
-import bank.effectivemobilebank.security.JwtService;
+import bank.effectivemobilebank.security.AuthTokenService;
 import bank.effectivemobilebank.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,11 +18,15 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -37,7 +41,7 @@ class AuthControllerTest {
     private AuthenticationManager authenticationManager;
 
     @MockitoBean
-    private JwtService jwtService;
+    private AuthTokenService authTokenService;
 
     @MockitoBean
     private UserService userService;
@@ -51,14 +55,82 @@ class AuthControllerTest {
         user.setRoles(Set.of(UserRole.USER));
 
         when(userService.findByUsername("john")).thenReturn(Optional.of(user));
-        when(jwtService.generate("john", java.util.Map.of("roles", user.getRoles())))
-                .thenReturn("fake-jwt");
+        when(authTokenService.issue(user))
+                .thenReturn(new AuthTokenService.TokenPair("fake-jwt", "fake-refresh"));
 
         mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"username\":\"john\", \"password\":\"pass\"}"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.token").value("fake-jwt"));
+                .andExpect(jsonPath("$.token").value("fake-jwt"))
+                .andExpect(jsonPath("$.refreshToken").value("fake-refresh"));
+    }
+
+    @Test
+    void loginThrottledPerUsername() throws Exception {
+        doThrow(new AuthenticationException("Bad credentials") {})
+                .when(authenticationManager).authenticate(any());
+
+        // попытки с разных адресов: ограничивает ведро логина, а не IP
+        for (int i = 1; i <= 5; i++) {
+            String address = "10.0.0." + i;
+            mockMvc.perform(post("/api/auth/login")
+                            .with(request -> {
+                                request.setRemoteAddr(address);
+                                return request;
+                            })
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"throttled\", \"password\":\"wrong\"}"))
+                    .andExpect(status().isUnauthorized());
+        }
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"throttled\", \"password\":\"wrong\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(jsonPath("$.message").value("Слишком много попыток входа, повторите позже"));
+        verify(authenticationManager, times(5)).authenticate(any());
+    }
+
+    @Test
+    void refreshSuccess() throws Exception {
+        when(authTokenService.refresh("old-refresh"))
+                .thenReturn(Optional.of(new AuthTokenService.TokenPair("new-jwt", "new-refresh")));
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"old-refresh\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("new-jwt"))
+                .andExpect(jsonPath("$.refreshToken").value("new-refresh"));
+    }
+
+    @Test
+    void refreshWithUsedToken() throws Exception {
+        when(authTokenService.refresh("used-refresh")).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"used-refresh\"}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Недействительный refresh-токен"));
+    }
+
+    @Test
+    void logoutRevokesTokens() throws Exception {
+        when(authTokenService.logout("access", "refresh")).thenReturn(true);
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer access")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"refresh\"}"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void logoutWithoutToken() throws Exception {
+        mockMvc.perform(post("/api/auth/logout"))
+                .andExpect(status().isUnauthorized());
     }
 
     @Test
@@ -78,7 +150,7 @@ class AuthControllerTest {
         UUID uuid = UUID.fromString("f427b7d0-6d42-4f1d-a442-ef6e4950537d");
 
         when(userService.createUser("john", "pass", Set.of(UserRole.USER)))
-                .thenReturn(new User(uuid, "john", "pass", Set.of(UserRole.USER)));
+                .thenReturn(new User(uuid, "john", "pass", Set.of(UserRole.USER), 0));
 
         mockMvc.perform(post("/api/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -112,6 +184,18 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.message").value("Неверные учетные данные"));
     }
 
+    @Test
+    void loginRejectedWhenHashingQueueIsFull() throws Exception {
+        doThrow(new RejectedExecutionException("Слишком много запросов на вход, повторите позже"))
+                .when(authenticationManager).authenticate(any());
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"john\", \"password\":\"pass\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("Слишком много запросов на вход, повторите позже"));
+    }
+
     @Test
     void registerWithEmptyUsername() throws Exception {
         mockMvc.perform(post("/api/auth/register")
@@ -0,0 +1,165 @@
+package bank.effectivemobilebank.controller;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.security.AuthenticatedUser;
+import bank.effectivemobilebank.security.JwtService;
+import bank.effectivemobilebank.service.CardService;
+import bank.effectivemobilebank.service.UserService;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Число SQL-запросов на аутентифицированный запрос: пользователь берется из токена,
+ * таблицы users и user_roles не читаются (кроме версии токена при первом запросе).
+ * Считаются только запросы потока теста, фоновые задачи не мешают.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(UserCardControllerSqlCountTest.SqlCountConfig.class)
+class UserCardControllerSqlCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private SqlStatementCounter counter;
+
+    @TestConfiguration
+    static class SqlCountConfig {
+        @Bean
+        SqlStatementCounter sqlStatementCounter() {
+            return new SqlStatementCounter();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer sqlStatementCounterCustomizer(SqlStatementCounter counter) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, counter);
+        }
+    }
+
+    static class SqlStatementCounter implements StatementInspector {
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+        private volatile Thread recording;
+
+        @Override
+        public String inspect(String sql) {
+            if (Thread.currentThread() == recording) {
+                statements.add(sql.toLowerCase());
+            }
+            return sql;
+        }
+
+        List<String> record(ThrowingRunnable action) throws Exception {
+            statements.clear();
+            recording = Thread.currentThread();
+            try {
+                action.run();
+            } finally {
+                recording = null;
+            }
+            return List.copyOf(statements);
+        }
+    }
+
+    interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    // GET /api/cards — один запрос к cards, пользователь и роли из базы не читаются
+    @Test
+    void testListCardsRunsSingleStatement() throws Exception {
+        String token = tokenWithCards("sql-list");
+        listCards(token);
+
+        List<String> statements = counter.record(() -> listCards(token));
+
+        assertEquals(1, statements.size(), () -> "Запросы: " + statements);
+        assertTrue(statements.get(0).contains("from cards"));
+    }
+
+    // первый запрос с токеном — пользователь вместе с ролями читается одним запросом и попадает в кеш
+    @Test
+    void testFirstRequestLoadsUserWithRolesInOneQuery() throws Exception {
+        String token = tokenWithCards("sql-first");
+
+        List<String> statements = counter.record(() -> listCards(token));
+
+        assertEquals(2, statements.size(), () -> "Запросы: " + statements);
+        assertEquals(1, statements.stream().filter(sql -> sql.contains("from users")).count());
+        assertEquals(1, statements.stream().filter(sql -> sql.contains("user_roles")).count());
+    }
+
+    // POST /api/cards/transfer — переводу не нужна сущность пользователя из базы
+    @Test
+    void testTransferDoesNotLoadUser() throws Exception {
+        User user = userService.createUser("sql-transfer-" + UUID.randomUUID(), "password", Set.of(UserRole.USER));
+        Card from = cardService.createCard(user, pan(), LocalDate.now().plusYears(1));
+        Card to = cardService.createCard(user, pan(), LocalDate.now().plusYears(1));
+        cardService.adminTopUp(from.getId(), Money.parse("10.00"));
+        String token = jwtService.generate(user.getUsername(), AuthenticatedUser.claimsOf(user));
+        listCards(token);
+
+        List<String> statements = counter.record(() -> mockMvc.perform(post("/api/cards/transfer")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromCardId\":\"" + from.getId() + "\",\"toCardId\":\"" + to.getId()
+                    + "\",\"amount\":1.00}"))
+            .andExpect(status().isOk()));
+
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains("from users") || sql.contains("user_roles")),
+            () -> "Запросы: " + statements);
+    }
+
+    private String tokenWithCards(String prefix) {
+        User user = userService.createUser(prefix + "-" + UUID.randomUUID(), "password", Set.of(UserRole.USER));
+        cardService.createCard(user, pan(), LocalDate.now().plusYears(1));
+        cardService.createCard(user, pan(), LocalDate.now().plusYears(1));
+        return jwtService.generate(user.getUsername(), AuthenticatedUser.claimsOf(user));
+    }
+
+    private void listCards(String token) throws Exception {
+        mockMvc.perform(get("/api/cards").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(status().isOk());
+    }
+
+    private static String pan() {
+        return String.format("5%015d", Math.floorMod(UUID.randomUUID().getLeastSignificantBits(), 1_000_000_000_000_000L));
+    }
+}
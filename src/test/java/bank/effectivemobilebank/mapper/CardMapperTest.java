@@ -3,6 +3,7 @@ package bank.effectivemobilebank.mapper;
 import bank.effectivemobilebank.dto.CardDto;
 import bank.effectivemobilebank.model.Card;
 import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
 import bank.effectivemobilebank.model.User;
 import bank.effectivemobilebank.model.UserRole;
 import org.junit.jupiter.api.BeforeEach;
@@ -41,7 +42,7 @@ class CardMapperTest {
         testCard.setId(UUID.randomUUID());
         testCard.setOwner(testUser);
         testCard.setStatus(CardStatus.ACTIVE);
-        testCard.setBalance(BigDecimal.valueOf(1000.50));
+        testCard.setBalance(Money.parse("1000.50"));
         testCard.setExpiry(LocalDate.of(2025, 12, 31));
         testCard.setPanLast4("1234");
         testCard.setPanEncrypted("encrypted_pan");
@@ -56,7 +57,7 @@ class CardMapperTest {
         assertEquals("**** **** **** 1234", result.getMaskedNumber());
         assertEquals(testCard.getExpiry(), result.getExpiry());
         assertEquals(testCard.getStatus(), result.getStatus());
-        assertEquals(testCard.getBalance(), result.getBalance());
+        assertEquals(testCard.getBalance().toBigDecimal(), result.getBalance());
         assertEquals(testCard.getOwner().getId(), result.getOwnerId());
     }
 
@@ -80,16 +81,16 @@ class CardMapperTest {
 
     @Test
     void testToDto_WithZeroBalance() {
-        testCard.setBalance(BigDecimal.ZERO);
+        testCard.setBalance(Money.ZERO);
 
         CardDto result = cardMapper.toDto(testCard);
 
-        assertEquals(BigDecimal.ZERO, result.getBalance());
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getBalance()));
     }
 
     @Test
     void testToDto_WithLargeBalance() {
-        testCard.setBalance(BigDecimal.valueOf(999999.99));
+        testCard.setBalance(Money.parse("999999.99"));
 
         CardDto result = cardMapper.toDto(testCard);
 
@@ -190,7 +191,7 @@ class CardMapperTest {
         UUID cardId = UUID.randomUUID();
         UUID userId = UUID.randomUUID();
         LocalDate expiry = LocalDate.of(2026, 6, 15);
-        BigDecimal balance = BigDecimal.valueOf(2500.75);
+        Money balance = Money.parse("2500.75");
         
         testCard.setId(cardId);
         testUser.setId(userId);
@@ -204,21 +205,21 @@ class CardMapperTest {
         assertEquals("**** **** **** 9876", result.getMaskedNumber());
         assertEquals(expiry, result.getExpiry());
         assertEquals(CardStatus.ACTIVE, result.getStatus());
-        assertEquals(balance, result.getBalance());
+        assertEquals(balance.toBigDecimal(), result.getBalance());
         assertEquals(userId, result.getOwnerId());
     }
 
     @Test
     void testToDto_WithNegativeBalance() {
-        testCard.setBalance(BigDecimal.valueOf(-100.25));
+        testCard.setBalance(Money.parse("-100.25"));
         CardDto result = cardMapper.toDto(testCard);
         assertEquals(BigDecimal.valueOf(-100.25), result.getBalance());
     }
 
     @Test
     void testToDto_WithPreciseBalance() {
-        testCard.setBalance(new BigDecimal("1234.5678"));
+        testCard.setBalance(Money.parse("1234.56"));
         CardDto result = cardMapper.toDto(testCard);
-        assertEquals(new BigDecimal("1234.5678"), result.getBalance());
+        assertEquals(new BigDecimal("1234.56"), result.getBalance());
     }
 }
@@ -0,0 +1,50 @@
+package bank.effectivemobilebank.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    // метод of — сумма переводится в копейки независимо от масштаба BigDecimal
+    @Test
+    void testOfConvertsToKopecks() {
+        assertEquals(1050, Money.of(new BigDecimal("10.5")).kopecks());
+        assertEquals(Money.of(new BigDecimal("10.50")), Money.of(new BigDecimal("10.500")));
+        assertEquals(-1, Money.of(new BigDecimal("-0.01")).kopecks());
+    }
+
+    // метод of — дробные копейки не округляются молча
+    @Test
+    void testOfRejectsFractionalKopecks() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+    }
+
+    // метод toBigDecimal — на границе всегда два знака после запятой
+    @Test
+    void testToBigDecimal() {
+        assertEquals(new BigDecimal("12.30"), Money.ofKopecks(1230).toBigDecimal());
+        assertEquals("0.00", Money.ZERO.toString());
+    }
+
+    // методы plus, minus, isLessThan — арифметика по long
+    @Test
+    void testArithmetic() {
+        Money balance = Money.parse("100.00");
+        Money amount = Money.parse("30.25");
+
+        assertEquals(Money.parse("69.75"), balance.minus(amount));
+        assertEquals(Money.parse("130.25"), balance.plus(amount));
+        assertTrue(amount.isLessThan(balance));
+        assertFalse(balance.isLessThan(balance));
+        assertEquals(-1, amount.negate().signum());
+    }
+
+    // метод plus — переполнение не превращается в отрицательный баланс
+    @Test
+    void testOverflow() {
+        assertThrows(ArithmeticException.class, () -> Money.ofKopecks(Long.MAX_VALUE).plus(Money.ofKopecks(1)));
+    }
+}
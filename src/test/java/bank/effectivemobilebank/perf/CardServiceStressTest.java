@@ -0,0 +1,220 @@
+package bank.effectivemobilebank.perf;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.repository.CardRepository;
+import bank.effectivemobilebank.service.CardService;
+import bank.effectivemobilebank.service.ConcurrencyRetry;
+import bank.effectivemobilebank.service.HotCardService;
+import bank.effectivemobilebank.service.LedgerService;
+import bank.effectivemobilebank.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочная проверка сохранения денег: тысячи карт, случайные параллельные переводы,
+ * пополнения и смены статуса из многих потоков. После прогона сумма балансов должна
+ * совпасть с начальной плюс пополнения, ни один баланс не может быть отрицательным,
+ * а баланс каждой карты — разойтись с журналом проводок.
+ * <p>
+ * По умолчанию работает на H2 в режиме PostgreSQL: ./mvnw test -Pperf -Dtest=CardServiceStressTest.
+ * Для локального PostgreSQL достаточно переопределить spring.datasource.* и
+ * spring.jpa.database-platform системными свойствами. Размеры задаются свойствами
+ * stress.users, stress.cards-per-user, stress.threads и stress.operations.
+ */
+@Tag("perf")
+@SpringBootTest
+@ActiveProfiles("test")
+class CardServiceStressTest {
+    private static final int USERS = Integer.getInteger("stress.users", 200);
+    private static final int CARDS_PER_USER = Integer.getInteger("stress.cards-per-user", 10);
+    private static final int THREADS = Integer.getInteger("stress.threads", 32);
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 20000);
+    private static final Money INITIAL_BALANCE = Money.parse("1000.00");
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private HotCardService hotCardService;
+
+    @Autowired
+    private ConcurrencyRetry retry;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    private enum Operation {
+        TRANSFER,
+        TOP_UP,
+        CHANGE_STATUS
+    }
+
+    private record Account(User owner, List<UUID> cardIds) {
+    }
+
+    @Test
+    void moneyIsConservedUnderConcurrentLoad() throws InterruptedException {
+        List<Account> accounts = createAccounts();
+        List<UUID> allCards = accounts.stream().flatMap(account -> account.cardIds().stream()).toList();
+        Money initialTotal = Money.ofKopecks(INITIAL_BALANCE.kopecks() * allCards.size());
+
+        AtomicLong toppedUp = new AtomicLong();
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+        Map<Operation, AtomicInteger> counts = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new long[OPERATIONS]);
+            counts.put(operation, new AtomicInteger());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Account account = accounts.get(random.nextInt(accounts.size()));
+                Operation operation = pick(random.nextInt(100));
+                long begin = System.nanoTime();
+                try {
+                    execute(operation, account, random, toppedUp);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    // недостаточно средств, заблокированная карта и т.п. — ожидаемые отказы
+                    rejected.incrementAndGet();
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    long[] samples = latencies.get(operation);
+                    samples[counts.get(operation).getAndIncrement()] = System.nanoTime() - begin;
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.MINUTES));
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+        System.out.printf("Карт: %d, потоков: %d, операций: %d за %.1f с (%.0f оп/с), отказов: %d, ошибок: %d%n",
+            allCards.size(), THREADS, OPERATIONS, seconds, OPERATIONS / seconds, rejected.get(), errors.size());
+        for (Operation operation : Operation.values()) {
+            int count = counts.get(operation).get();
+            long[] samples = Arrays.copyOf(latencies.get(operation), count);
+            Arrays.sort(samples);
+            System.out.printf("  %-13s %6d оп, p50 = %6.2f мс, p99 = %6.2f мс%n", operation, count,
+                percentile(samples, 0.50), percentile(samples, 0.99));
+        }
+
+        assertTrue(errors.isEmpty(), () -> "Непредвиденные ошибки: " + errors.peek());
+        // Карта и ее полосы читаются разными запросами, и компактор может свернуть полосы между ними.
+        // Сворачиваем сами: после этого полосы пусты и компактору переносить нечего
+        for (UUID cardId : allCards) {
+            if (hotCardService.isHot(cardId)) {
+                hotCardService.fold(cardId);
+            }
+        }
+        Money total = Money.ZERO;
+        List<Card> cards = cardRepository.findAllById(allCards);
+        hotCardService.loadStripedBalances(cards);
+        for (Card card : cards) {
+            assertTrue(card.getBalance().signum() >= 0, () -> "Отрицательный баланс карты " + card.getId());
+            assertEquals(ledgerService.balanceOf(card.getId()), card.getTotalBalance(),
+                () -> "Баланс расходится с журналом проводок: " + card.getId());
+            total = total.plus(card.getTotalBalance());
+        }
+        assertEquals(initialTotal.plus(Money.ofKopecks(toppedUp.get())), total);
+    }
+
+    private void execute(Operation operation, Account account, ThreadLocalRandom random, AtomicLong toppedUp) {
+        List<UUID> cards = account.cardIds();
+        UUID cardId = cards.get(random.nextInt(cards.size()));
+        switch (operation) {
+            case TRANSFER -> {
+                UUID toCardId = cards.get(random.nextInt(cards.size()));
+                if (toCardId.equals(cardId)) {
+                    toCardId = cards.get((cards.indexOf(cardId) + 1) % cards.size());
+                }
+                UUID target = toCardId;
+                Money amount = Money.ofKopecks(random.nextLong(1, 50_000));
+                retry.run(() -> cardService.transfer(account.owner(), cardId, target, amount));
+            }
+            case TOP_UP -> {
+                Money amount = Money.ofKopecks(random.nextLong(1, 10_000));
+                retry.run(() -> cardService.topUp(account.owner(), cardId, amount));
+                toppedUp.addAndGet(amount.kopecks());
+            }
+            case CHANGE_STATUS -> {
+                CardStatus status = random.nextInt(4) == 0 ? CardStatus.BLOCKED : CardStatus.ACTIVE;
+                retry.run(() -> cardService.changeStatus(cardId, account.owner(), status));
+            }
+        }
+    }
+
+    // 75% переводов, 20% пополнений, 5% смен статуса
+    private static Operation pick(int roll) {
+        if (roll < 75) {
+            return Operation.TRANSFER;
+        }
+        return roll < 95 ? Operation.TOP_UP : Operation.CHANGE_STATUS;
+    }
+
+    private List<Account> createAccounts() {
+        // Номер прогона в логинах и номерах карт, чтобы повторный запуск на PostgreSQL не упирался в уникальность
+        int run = ThreadLocalRandom.current().nextInt(1000);
+        List<Account> accounts = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User owner = userService.createUser("stress-" + run + "-" + i, "password", Set.of(UserRole.USER));
+            List<UUID> cardIds = new ArrayList<>(CARDS_PER_USER);
+            for (int j = 0; j < CARDS_PER_USER; j++) {
+                String pan = String.format("9%03d%05d%07d", run, i, j);
+                Card card = cardService.createCard(owner, pan, LocalDate.now().plusYears(3));
+                cardService.adminTopUp(card.getId(), INITIAL_BALANCE);
+                cardIds.add(card.getId());
+            }
+            // Часть карт горячие, чтобы под нагрузкой шли и зачисления в полосы, и их сворачивание
+            if (i % 10 == 0) {
+                hotCardService.enable(cardIds.get(0));
+            }
+            accounts.add(new Account(owner, cardIds));
+        }
+        return accounts;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
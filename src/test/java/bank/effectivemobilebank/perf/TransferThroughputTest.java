@@ -0,0 +1,130 @@
+package bank.effectivemobilebank.perf;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.service.CardService;
+import bank.effectivemobilebank.service.ConcurrencyRetry;
+import bank.effectivemobilebank.service.LedgerService;
+import bank.effectivemobilebank.service.TransferService;
+import bank.effectivemobilebank.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение пропускной способности переводов: транзакция на перевод через CardService
+ * против однопоточных партиций InMemoryTransferEngine. Запуск: ./mvnw test -Pperf
+ */
+@Tag("perf")
+@SpringBootTest(properties = "bank.transfer.engine=IN_MEMORY")
+@ActiveProfiles("test")
+class TransferThroughputTest {
+    private static final int USERS = 16;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS = 4000;
+    private static final Money INITIAL_BALANCE = Money.parse("1000000.00");
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private ConcurrencyRetry retry;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    private record Account(User owner, Card first, Card second) {
+    }
+
+    @Test
+    void compareDatabaseAndInMemoryEngine() throws InterruptedException {
+        List<Account> databaseAccounts = createAccounts("db");
+        List<Account> engineAccounts = createAccounts("engine");
+
+        double databaseRate = run(databaseAccounts, (owner, from, to) ->
+            retry.run(() -> cardService.transfer(owner, from.getId(), to.getId(), Money.parse("1"))));
+        double engineRate = run(engineAccounts, (owner, from, to) ->
+            transferService.transferBetweenOwn(owner, from.getId(), to.getId(), Money.parse("1")));
+
+        System.out.printf("Переводов в секунду: CardService.transfer = %.0f, InMemoryTransferEngine = %.0f%n",
+            databaseRate, engineRate);
+        assertBalancesConserved(databaseAccounts);
+        assertBalancesConserved(engineAccounts);
+    }
+
+    private interface TransferCall {
+        void transfer(User owner, Card from, Card to);
+    }
+
+    private double run(List<Account> accounts, TransferCall call) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+        long started = System.nanoTime();
+        for (int i = 0; i < TRANSFERS; i++) {
+            Account account = accounts.get(i % accounts.size());
+            boolean forward = ThreadLocalRandom.current().nextBoolean();
+            pool.submit(() -> {
+                try {
+                    call.transfer(account.owner(), forward ? account.first() : account.second(),
+                        forward ? account.second() : account.first());
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        assertEquals(0, failures.get());
+        return TRANSFERS / seconds;
+    }
+
+    private List<Account> createAccounts(String prefix) {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User owner = userService.createUser(prefix + "-user-" + i, "password", Set.of(UserRole.USER));
+            Card first = cardService.createCard(owner, pan(prefix, i, 1), LocalDate.now().plusYears(3));
+            Card second = cardService.createCard(owner, pan(prefix, i, 2), LocalDate.now().plusYears(3));
+            cardService.adminTopUp(first.getId(), INITIAL_BALANCE);
+            cardService.adminTopUp(second.getId(), INITIAL_BALANCE);
+            accounts.add(new Account(owner, first, second));
+        }
+        return accounts;
+    }
+
+    private void assertBalancesConserved(List<Account> accounts) {
+        for (Account account : accounts) {
+            Money first = cardService.findById(account.first().getId()).getTotalBalance();
+            Money second = cardService.findById(account.second().getId()).getTotalBalance();
+            assertEquals(INITIAL_BALANCE.plus(INITIAL_BALANCE), first.plus(second));
+            assertEquals(first, ledgerService.balanceOf(account.first().getId()));
+        }
+    }
+
+    private static String pan(String prefix, int user, int card) {
+        return String.format("%d%03d%012d", prefix.length(), user, card);
+    }
+}
@@ -0,0 +1,105 @@
+package bank.effectivemobilebank.security;
+
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.repository.RevokedTokenRepository;
+import bank.effectivemobilebank.repository.UserRepository;
+import bank.effectivemobilebank.service.UserCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthTokenServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private JwtService jwtService;
+    private TokenRevocationService revocationService;
+    private UserCache userCache;
+    private AuthTokenService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService("test-secret-key-for-auth-token-testing-only", 60, 30, 100);
+        revocationService = new TokenRevocationService(revokedTokenRepository, transactionManager,
+            new SimpleMeterRegistry());
+        userCache = new UserCache(userRepository, new SimpleMeterRegistry(), 100, 30);
+        service = new AuthTokenService(jwtService, revocationService, userCache);
+        user = new User(UUID.randomUUID(), "maks", "hash", new HashSet<>(Set.of(UserRole.USER)), 1);
+    }
+
+    // метод issue — access- и refresh-токен различаются типом и jti
+    @Test
+    void testIssue() {
+        AuthTokenService.TokenPair tokens = service.issue(user);
+
+        assertFalse(JwtService.isRefreshToken(jwtService.parse(tokens.token())));
+        assertTrue(JwtService.isRefreshToken(jwtService.parse(tokens.refreshToken())));
+        assertNotEquals(jwtService.parse(tokens.token()).getId(), jwtService.parse(tokens.refreshToken()).getId());
+    }
+
+    // метод refresh — refresh-токен одноразовый: повторный обмен отклоняется
+    @Test
+    void testRefreshRotatesToken() {
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(user));
+        when(revokedTokenRepository.insertIfAbsent(any(), any())).thenReturn(1);
+        AuthTokenService.TokenPair tokens = service.issue(user);
+
+        AuthTokenService.TokenPair refreshed = service.refresh(tokens.refreshToken()).orElseThrow();
+
+        assertEquals("maks", jwtService.parse(refreshed.token()).getSubject());
+        assertTrue(service.refresh(tokens.refreshToken()).isEmpty());
+        assertTrue(service.refresh(refreshed.refreshToken()).isPresent());
+    }
+
+    // метод refresh — access-токен, мусор и токен до смены ролей не обмениваются
+    @Test
+    void testRefreshRejectsInvalidTokens() {
+        AuthTokenService.TokenPair tokens = service.issue(user);
+        User promoted = new User(user.getId(), "maks", "hash", new HashSet<>(Set.of(UserRole.ADMIN)), 2);
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(promoted));
+
+        assertTrue(service.refresh(tokens.token()).isEmpty());
+        assertTrue(service.refresh("garbage").isEmpty());
+        assertTrue(service.refresh(null).isEmpty());
+        assertTrue(service.refresh(tokens.refreshToken()).isEmpty());
+        verifyNoInteractions(revokedTokenRepository);
+    }
+
+    // метод logout — отзываются оба токена, после чего refresh-токен не обменивается
+    @Test
+    void testLogoutRevokesBothTokens() {
+        when(revokedTokenRepository.insertIfAbsent(any(), any())).thenReturn(1);
+        AuthTokenService.TokenPair tokens = service.issue(user);
+
+        assertTrue(service.logout(tokens.token(), tokens.refreshToken()));
+
+        assertTrue(revocationService.isRevoked(jwtService.parse(tokens.token())));
+        assertTrue(service.refresh(tokens.refreshToken()).isEmpty());
+        verify(revokedTokenRepository, times(2)).insertIfAbsent(any(), any());
+        assertFalse(service.logout(tokens.refreshToken(), null));
+        assertFalse(service.logout(null, null));
+    }
+}
@@ -0,0 +1,150 @@
+package bank.effectivemobilebank.security;
+
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.repository.RevokedTokenRepository;
+import bank.effectivemobilebank.repository.UserRepository;
+import bank.effectivemobilebank.service.UserCache;
+import bank.effectivemobilebank.service.UserChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthFilterTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private JwtService jwtService;
+    private UserCache userCache;
+    private TokenRevocationService revocationService;
+    private JwtAuthFilter filter;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService("test-secret-key-for-jwt-filter-testing-only", 60, 30, 100);
+        userCache = new UserCache(userRepository, new SimpleMeterRegistry(), 100, 30);
+        revocationService = new TokenRevocationService(revokedTokenRepository, transactionManager,
+            new SimpleMeterRegistry());
+        filter = new JwtAuthFilter(jwtService, userCache, revocationService);
+        user = new User();
+        user.setId(UUID.randomUUID());
+        user.setUsername("maks");
+        user.setRoles(Set.of(UserRole.USER, UserRole.ADMIN));
+        user.setTokenVersion(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // метод doFilter — принципал берется из claims, пользователь с ролями читается из базы один раз
+    @Test
+    void testAuthenticatesFromClaims() throws Exception {
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(user));
+        String token = jwtService.generate("maks", AuthenticatedUser.claimsOf(user));
+
+        Authentication first = authenticate(token);
+        Authentication second = authenticate(token);
+
+        AuthenticatedUser principal = (AuthenticatedUser) first.getPrincipal();
+        assertEquals(user.getId(), principal.id());
+        assertEquals("maks", first.getName());
+        assertTrue(first.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        assertNotNull(second);
+        verify(userRepository, times(1)).findByUsername("maks");
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    // метод doFilter — после смены ролей токен с прежней версией не принимается
+    @Test
+    void testRejectsStaleTokenVersion() throws Exception {
+        User promoted = new User(user.getId(), "maks", null, Set.of(UserRole.USER, UserRole.ADMIN), 3);
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(user), Optional.of(promoted));
+        String token = jwtService.generate("maks", AuthenticatedUser.claimsOf(user));
+        assertNotNull(authenticate(token));
+
+        userCache.onUserChanged(new UserChangedEvent(user.getId(), "maks"));
+
+        assertNull(authenticate(token));
+    }
+
+    // метод doFilter — удаленный или пересозданный под тем же логином пользователь и токен без id не аутентифицируются
+    @Test
+    void testRejectsDeletedUserAndTokenWithoutId() throws Exception {
+        String token = jwtService.generate("maks", AuthenticatedUser.claimsOf(user));
+        User recreated = new User(UUID.randomUUID(), "maks", null, Set.of(UserRole.USER), 2);
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.empty(), Optional.of(recreated));
+
+        assertNull(authenticate(token));
+        assertNull(authenticate(token));
+        assertNull(authenticate(jwtService.generate("maks", Map.of("roles", List.of("USER")))));
+        verify(userRepository, times(2)).findByUsername(any());
+    }
+
+    // метод doFilter — отозванный токен и refresh-токен не аутентифицируют запрос
+    @Test
+    void testRejectsRevokedAndRefreshTokens() throws Exception {
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(user));
+        when(revokedTokenRepository.insertIfAbsent(any(), any())).thenReturn(1);
+        String token = jwtService.generate("maks", AuthenticatedUser.claimsOf(user));
+        assertNotNull(authenticate(token));
+
+        revocationService.revoke(jwtService.parse(token));
+
+        assertNull(authenticate(token));
+        assertNull(authenticate(jwtService.generateRefresh("maks", AuthenticatedUser.claimsOf(user))));
+    }
+
+    // метод toUser — ссылка на пользователя для сервисов собирается из claims
+    @Test
+    void testToUser() {
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), "maks", Set.of(UserRole.USER), 2);
+
+        User reference = principal.toUser();
+
+        assertEquals(user.getId(), reference.getId());
+        assertEquals("maks", reference.getUsername());
+        assertEquals(Set.of(UserRole.USER), reference.getRoles());
+        assertNull(reference.getPasswordHash());
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
@@ -0,0 +1,86 @@
+package bank.effectivemobilebank.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private SimpleMeterRegistry meterRegistry;
+    private LoginRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // IP: 4 попытки, затем одна в 15 секунд; логин: 2 попытки, затем одна в 30 секунд
+        limiter = new LoginRateLimiter(meterRegistry, 4, 4, 2, 2, 8, 1000);
+    }
+
+    // метод tryAcquire — ведро логина пустеет, жетоны возвращаются со временем
+    @Test
+    void testUsernameBucketRefills() {
+        assertTrue(limiter.tryAcquire("maks", "10.0.0.1", 0).allowed());
+        assertTrue(limiter.tryAcquire("maks", "10.0.0.2", 0).allowed());
+
+        LoginRateLimiter.Decision rejected = limiter.tryAcquire("maks", "10.0.0.3", 0);
+        assertFalse(rejected.allowed());
+        assertEquals(30, rejected.retryAfterSeconds());
+        assertEquals(1, meterRegistry.get("bank.login.rejected").tag("scope", "username").counter().count());
+
+        assertFalse(limiter.tryAcquire("maks", "10.0.0.3", 29 * SECOND).allowed());
+        assertTrue(limiter.tryAcquire("maks", "10.0.0.3", 30 * SECOND).allowed());
+    }
+
+    // метод tryAcquire — с одного адреса перебор разных логинов упирается в ведро IP
+    @Test
+    void testIpBucketAcrossUsernames() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire("user-" + i, "10.0.0.1", 0).allowed());
+        }
+
+        assertFalse(limiter.tryAcquire("user-4", "10.0.0.1", 0).allowed());
+        assertTrue(limiter.tryAcquire("user-4", "10.0.0.2", 0).allowed());
+        assertEquals(1, meterRegistry.get("bank.login.rejected").tag("scope", "ip").counter().count());
+    }
+
+    // метод tryAcquire — отклоненная попытка не тратит жетон второго ведра
+    @Test
+    void testRejectionDoesNotConsumeOtherBucket() {
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire("user-" + i, "10.0.0.1", 0);
+        }
+
+        assertFalse(limiter.tryAcquire("maks", "10.0.0.1", 0).allowed());
+        assertFalse(limiter.tryAcquire("maks", "10.0.0.1", 0).allowed());
+
+        assertTrue(limiter.tryAcquire("maks", "10.0.0.2", 0).allowed());
+        assertTrue(limiter.tryAcquire("maks", "10.0.0.3", 0).allowed());
+    }
+
+    // число ведер ограничено: давно неактивные ключи вытесняются
+    @Test
+    void testBucketsAreBounded() {
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("user-" + i, "10.0." + (i / 256) + "." + (i % 256), 0);
+        }
+
+        assertTrue(meterRegistry.get("bank.login.buckets").gauge().value() <= 2000);
+    }
+
+    // нулевая емкость отключает ограничение по признаку
+    @Test
+    void testZeroCapacityDisablesScope() {
+        limiter = new LoginRateLimiter(meterRegistry, 0, 0, 1, 1, 8, 1000);
+
+        assertTrue(limiter.tryAcquire("maks", "10.0.0.1", 0).allowed());
+        assertFalse(limiter.tryAcquire("maks", "10.0.0.1", 0).allowed());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire("user-" + i, "10.0.0.1", 0).allowed());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package bank.effectivemobilebank.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledPasswordEncoderTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PooledPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.shutdown();
+    }
+
+    // методы encode и matches — BCrypt выполняется в пуле, время хеширования и ожидания видно в метриках
+    @Test
+    void testEncodeAndMatchesOnPool() {
+        encoder = new PooledPasswordEncoder(4, 2, 8, meterRegistry);
+
+        String hash = encoder.encode("password");
+
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(encoder.matches("password", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(1, meterRegistry.get("bank.password.hash").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("bank.password.hash").tag("operation", "matches").timer().count());
+        assertEquals(3, meterRegistry.get("bank.password.queue.wait").timer().count());
+    }
+
+    // метод upgradeEncoding — перехешируется хеш с любым cost, отличным от настроенного
+    @Test
+    void testUpgradeEncodingOnCostChange() {
+        encoder = new PooledPasswordEncoder(5, 1, 1, meterRegistry);
+
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("password")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+        assertFalse(encoder.upgradeEncoding(null));
+        assertFalse(encoder.upgradeEncoding("plain"));
+    }
+
+    // метод matches — при заполненной очереди запрос сразу отклоняется, а не ждет
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        encoder = new PooledPasswordEncoder(blockingEncoder(started, release), 4, 1, 1, meterRegistry);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> running = callers.submit(() -> encoder.matches("a", "a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Boolean> queued = callers.submit(() -> encoder.matches("b", "b"));
+            while (meterRegistry.get("bank.password.queue.size").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            RejectedExecutionException e = assertThrows(RejectedExecutionException.class,
+                () -> encoder.matches("c", "c"));
+            assertEquals("Слишком много запросов на вход, повторите позже", e.getMessage());
+            assertEquals(1, meterRegistry.get("bank.password.rejected").counter().count());
+
+            release.countDown();
+            assertTrue(running.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    private static PasswordEncoder blockingEncoder(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+    }
+}
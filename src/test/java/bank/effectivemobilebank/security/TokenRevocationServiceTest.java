@@ -0,0 +1,113 @@
+package bank.effectivemobilebank.security;
+
+import bank.effectivemobilebank.repository.RevokedTokenRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new TokenRevocationService(repository, transactionManager, meterRegistry);
+    }
+
+    // метод isRevoked — снимок из базы проверяется только по памяти: фильтр и точный массив id
+    @Test
+    void testRebuildLoadsRevokedIds() {
+        List<UUID> revoked = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            revoked.add(UUID.randomUUID());
+        }
+        when(repository.findLiveIds(any())).thenReturn(revoked);
+
+        service.rebuild();
+
+        assertTrue(revoked.stream().allMatch(service::isRevoked));
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(service.isRevoked(UUID.randomUUID()));
+        }
+        // ложные срабатывания фильтра (около 1%, в среднем 100) отсеиваются в памяти, без запросов к базе
+        double falsePositives = meterRegistry.get("bank.tokens.revocation.false-positives").counter().count();
+        assertTrue(falsePositives < 200);
+        verify(repository, never()).existsById(any());
+        assertEquals(1000, meterRegistry.get("bank.tokens.revoked").gauge().value());
+        verify(repository, times(1)).findLiveIds(any());
+        verify(repository).deleteExpired(any());
+    }
+
+    // метод revoke — отзыв виден сразу и переживает пересборку, которая его еще не увидела
+    @Test
+    void testRevokeIsVisibleBeforeRebuild() {
+        Claims claims = claims(UUID.randomUUID(), Instant.now().plusSeconds(600));
+        when(repository.insertIfAbsent(any(), any())).thenReturn(1, 0);
+        when(repository.findLiveIds(any())).thenReturn(List.of());
+
+        assertTrue(service.revoke(claims));
+        assertTrue(service.isRevoked(claims));
+        service.rebuild();
+        assertTrue(service.isRevoked(claims));
+
+        assertFalse(service.revoke(claims));
+    }
+
+    // метод rebuild — отзыв, попавший в снимок, убирается из набора недавних
+    @Test
+    void testRebuildMovesRecentIntoSnapshot() {
+        UUID tokenId = UUID.randomUUID();
+        when(repository.insertIfAbsent(any(), any())).thenReturn(1);
+        when(repository.findLiveIds(any())).thenReturn(List.of(tokenId), List.of());
+        service.revoke(claims(tokenId, Instant.now().plusSeconds(600)));
+
+        service.rebuild();
+        assertTrue(service.isRevoked(tokenId));
+
+        // после истечения токена запись пропадает из базы и из снимка
+        service.rebuild();
+        assertFalse(service.isRevoked(tokenId));
+    }
+
+    // метод isRevoked — токены без jti не отзываются
+    @Test
+    void testTokenWithoutId() {
+        Claims claims = Jwts.claims().setSubject("maks");
+
+        assertFalse(service.isRevoked(claims));
+        assertFalse(service.revoke(claims));
+        verifyNoInteractions(repository);
+    }
+
+    private static Claims claims(UUID tokenId, Instant expiresAt) {
+        Claims claims = Jwts.claims().setSubject("maks");
+        claims.setId(tokenId.toString());
+        claims.setExpiration(Date.from(expiresAt));
+        return claims;
+    }
+}
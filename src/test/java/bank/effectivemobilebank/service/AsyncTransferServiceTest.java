@@ -0,0 +1,178 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.AsyncTransfer;
+import bank.effectivemobilebank.model.AsyncTransferStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.AsyncTransferRepository;
+import bank.effectivemobilebank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncTransferServiceTest {
+
+    @Mock
+    private AsyncTransferRepository repository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AsyncTransferService asyncTransferService;
+
+    private User user;
+    private UUID fromId;
+    private UUID toId;
+    private AsyncTransfer stored;
+
+    @BeforeEach
+    void setUp() {
+        asyncTransferService = newService(10);
+        user = new User();
+        user.setId(UUID.randomUUID());
+        fromId = UUID.randomUUID();
+        toId = UUID.randomUUID();
+        stored = new AsyncTransfer();
+        stored.setId(UUID.randomUUID());
+        stored.setOwnerId(user.getId());
+        stored.setFromCardId(fromId);
+        stored.setToCardId(toId);
+        stored.setAmount(Money.parse("10"));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncTransferService.shutdown();
+    }
+
+    // метод submit — перевод принимается со статусом PENDING и проводится в фоне
+    @Test
+    void testSubmitCompletesTransfer() throws InterruptedException {
+        when(repository.save(any())).thenReturn(stored);
+        when(repository.findByIdForUpdate(stored.getId())).thenReturn(Optional.of(stored));
+
+        AsyncTransfer accepted = asyncTransferService.submit(user, fromId, toId, Money.parse("10"));
+
+        assertEquals(stored.getId(), accepted.getId());
+        // shutdown дожидается фоновых переводов
+        asyncTransferService.shutdown();
+        verify(cardService).transfer(user, fromId, toId, Money.parse("10"));
+        assertEquals(AsyncTransferStatus.COMPLETED, stored.getStatus());
+        assertNotNull(stored.getCompletedAt());
+    }
+
+    // метод submit — бизнес-ошибка перевода сохраняется в статусе FAILED
+    @Test
+    void testSubmitRecordsFailure() throws InterruptedException {
+        when(repository.save(any())).thenReturn(stored);
+        when(repository.findByIdForUpdate(stored.getId())).thenReturn(Optional.of(stored));
+        doThrow(new IllegalStateException("Недостаточно средств"))
+            .when(cardService).transfer(user, fromId, toId, Money.parse("10"));
+
+        asyncTransferService.submit(user, fromId, toId, Money.parse("10"));
+
+        asyncTransferService.shutdown();
+        assertEquals(AsyncTransferStatus.FAILED, stored.getStatus());
+        assertEquals("Недостаточно средств", stored.getError());
+    }
+
+    // метод submit — перевод на ту же карту отклоняется сразу
+    @Test
+    void testSubmitRejectsSameCard() {
+        assertThrows(IllegalArgumentException.class, () ->
+            asyncTransferService.submit(user, fromId, fromId, Money.parse("10")));
+        verifyNoInteractions(repository);
+    }
+
+    // метод submit — при переполнении очереди новые переводы не принимаются
+    @Test
+    void testSubmitRejectsWhenQueueIsFull() throws InterruptedException {
+        asyncTransferService.shutdown();
+        asyncTransferService = newService(0);
+
+        assertThrows(RejectedExecutionException.class, () ->
+            asyncTransferService.submit(user, fromId, toId, Money.parse("10")));
+        verifyNoInteractions(repository);
+    }
+
+    // метод resumePending — незавершенные переводы доводятся после старта, попытка засчитывается
+    @Test
+    void testResumePending() throws InterruptedException {
+        when(repository.findPendingCreatedBefore(any(), eq(Limit.of(1000)))).thenReturn(List.of(stored));
+        when(repository.incrementAttempts(stored.getId())).thenReturn(1);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(repository.findByIdForUpdate(stored.getId())).thenReturn(Optional.of(stored));
+
+        asyncTransferService.resumePending();
+
+        asyncTransferService.shutdown();
+        assertEquals(AsyncTransferStatus.COMPLETED, stored.getStatus());
+        verify(cardService).transfer(user, fromId, toId, Money.parse("10"));
+    }
+
+    // метод redispatchStale — после сбоя базы перевод остается PENDING и отправляется повторно
+    @Test
+    void testRedispatchAfterTransientFailure() throws InterruptedException {
+        when(repository.save(any())).thenReturn(stored);
+        when(repository.findByIdForUpdate(stored.getId()))
+            .thenThrow(new DataAccessResourceFailureException("connection refused"))
+            .thenReturn(Optional.of(stored));
+        when(repository.findPendingCreatedBefore(any(), eq(Limit.of(1000)))).thenReturn(List.of(stored));
+        when(repository.incrementAttempts(stored.getId())).thenReturn(1);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        asyncTransferService.submit(user, fromId, toId, Money.parse("10"));
+        verify(repository, timeout(5000)).findByIdForUpdate(stored.getId());
+        // Пока первая попытка не отпустила перевод, повтор его пропускает
+        for (int i = 0; i < 100 && stored.getStatus() == AsyncTransferStatus.PENDING; i++) {
+            asyncTransferService.redispatchStale();
+            Thread.sleep(20);
+        }
+
+        assertEquals(AsyncTransferStatus.COMPLETED, stored.getStatus());
+        verify(cardService).transfer(user, fromId, toId, Money.parse("10"));
+    }
+
+    // метод redispatchStale — после max-attempts повторов перевод помечается FAILED
+    @Test
+    void testRedispatchGivesUpAfterMaxAttempts() {
+        stored.setAttempts(3);
+        when(repository.findPendingCreatedBefore(any(), eq(Limit.of(1000)))).thenReturn(List.of(stored));
+        when(repository.findByIdForUpdate(stored.getId())).thenReturn(Optional.of(stored));
+
+        asyncTransferService.redispatchStale();
+
+        assertEquals(AsyncTransferStatus.FAILED, stored.getStatus());
+        assertEquals("Перевод не выполнен: исчерпаны попытки", stored.getError());
+        verify(repository, never()).incrementAttempts(any());
+        verifyNoInteractions(cardService);
+    }
+
+    private AsyncTransferService newService(int maxPending) {
+        return new AsyncTransferService(repository, userRepository, cardService, new ConcurrencyRetry(1, 0),
+            transactionManager, 4, maxPending, 3, 0);
+    }
+}
@@ -0,0 +1,198 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.dto.CardStatementDto;
+import bank.effectivemobilebank.model.CardBalanceSnapshot;
+import bank.effectivemobilebank.model.CardBalanceSnapshotId;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.CardBalanceSnapshotRepository;
+import bank.effectivemobilebank.repository.CardRepository;
+import bank.effectivemobilebank.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceSnapshotServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+    private static final Instant DAY_START = Instant.parse("2025-03-10T00:00:00Z");
+    private static final Instant DAY_END = Instant.parse("2025-03-11T00:00:00Z");
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardBalanceSnapshotRepository snapshotRepository;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BalanceSnapshotService service;
+    private User user;
+    private UUID cardId;
+
+    @BeforeEach
+    void setUp() {
+        service = new BalanceSnapshotService(cardRepository, snapshotRepository, ledgerEntryRepository,
+            transactionManager, 2);
+        user = new User();
+        user.setId(UUID.randomUUID());
+        cardId = UUID.randomUUID();
+    }
+
+    // метод snapshot — карты обходятся порциями по id, снимок = вчерашний снимок + проводки дня
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSnapshotWalksCardsInChunks() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        when(cardRepository.findIdsOrdered(Limit.of(2))).thenReturn(List.of(first, second));
+        when(cardRepository.findIdsAfter(second, Limit.of(2))).thenReturn(List.of(third));
+        when(cardRepository.findIdsAfter(third, Limit.of(2))).thenReturn(List.of());
+        when(snapshotRepository.findAllByIdCardIdInAndIdSnapshotDate(List.of(first, second), DAY.minusDays(1)))
+            .thenReturn(List.of(new CardBalanceSnapshot(new CardBalanceSnapshotId(first, DAY.minusDays(1)),
+                Money.parse("100.00"))));
+        when(ledgerEntryRepository.sumBalancesBetween(List.of(first, second), DAY_START, DAY_END))
+            .thenReturn(List.of(total(first, "-30.00")));
+        when(ledgerEntryRepository.sumBalancesBefore(List.of(second), DAY_END))
+            .thenReturn(List.of(total(second, "55.50")));
+        ArgumentCaptor<List<CardBalanceSnapshot>> captor = ArgumentCaptor.forClass(List.class);
+
+        int written = service.snapshot(DAY);
+
+        assertEquals(3, written);
+        verify(snapshotRepository, times(2)).saveAll(captor.capture());
+        Map<UUID, Money> balances = captor.getAllValues().stream().flatMap(List::stream)
+            .collect(Collectors.toMap(s -> s.getId().getCardId(), CardBalanceSnapshot::getBalance));
+        assertEquals(Money.parse("70.00"), balances.get(first));
+        assertEquals(Money.parse("55.50"), balances.get(second));
+        assertEquals(Money.ZERO, balances.get(third));
+        verify(snapshotRepository).deleteAllByCardIdsAndDate(List.of(first, second), DAY);
+    }
+
+    // метод snapshot — день еще не закончился, неполный баланс не записывается
+    @Test
+    void testSnapshotRejectsTodayAndFuture() {
+        LocalDate today = LocalDate.now(BalanceSnapshotService.ZONE);
+
+        assertThrows(IllegalArgumentException.class, () -> service.snapshot(today));
+        assertThrows(IllegalArgumentException.class, () -> service.snapshot(today.plusDays(1)));
+        verifyNoInteractions(cardRepository, snapshotRepository);
+    }
+
+    // метод balanceAsOf — снимок на ту же дату возвращается без обращения к проводкам
+    @Test
+    void testBalanceAsOfExactSnapshot() {
+        when(cardRepository.existsByIdAndOwner(cardId, user)).thenReturn(true);
+        when(snapshotRepository.findFirstByIdCardIdAndIdSnapshotDateLessThanEqualOrderByIdSnapshotDateDesc(cardId, DAY))
+            .thenReturn(Optional.of(new CardBalanceSnapshot(new CardBalanceSnapshotId(cardId, DAY), Money.parse("12.34"))));
+
+        assertEquals(Money.parse("12.34"), service.balanceAsOf(user, cardId, DAY));
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+
+    // метод balanceAsOf — к более раннему снимку добавляются только проводки после него
+    @Test
+    void testBalanceAsOfReplaysFromNearestSnapshot() {
+        when(cardRepository.existsByIdAndOwner(cardId, user)).thenReturn(true);
+        when(snapshotRepository.findFirstByIdCardIdAndIdSnapshotDateLessThanEqualOrderByIdSnapshotDateDesc(cardId, DAY))
+            .thenReturn(Optional.of(new CardBalanceSnapshot(new CardBalanceSnapshotId(cardId, DAY.minusDays(1)),
+                Money.parse("100.00"))));
+        when(ledgerEntryRepository.sumTurnoverByCardIdBetween(cardId, DAY_START, DAY_END))
+            .thenReturn(turnover("20.00", "5.00"));
+
+        assertEquals(Money.parse("115.00"), service.balanceAsOf(user, cardId, DAY));
+    }
+
+    // метод balanceAsOf — без снимков баланс считается по всей истории, чужая карта не видна
+    @Test
+    void testBalanceAsOfWithoutSnapshotAndForeignCard() {
+        when(cardRepository.existsByIdAndOwner(cardId, user)).thenReturn(true);
+        when(snapshotRepository.findFirstByIdCardIdAndIdSnapshotDateLessThanEqualOrderByIdSnapshotDateDesc(cardId, DAY))
+            .thenReturn(Optional.empty());
+        when(ledgerEntryRepository.sumBalanceByCardIdBefore(cardId, DAY_END)).thenReturn(new BigDecimal("7.00"));
+
+        assertEquals(Money.parse("7.00"), service.balanceAsOf(user, cardId, DAY));
+
+        UUID foreign = UUID.randomUUID();
+        assertThrows(NoSuchElementException.class, () -> service.balanceAsOf(user, foreign, DAY));
+    }
+
+    // метод statement — входящий остаток на конец предыдущего дня и обороты за период
+    @Test
+    void testStatement() {
+        LocalDate from = DAY;
+        LocalDate to = DAY.plusDays(2);
+        when(cardRepository.existsByIdAndOwner(cardId, user)).thenReturn(true);
+        when(snapshotRepository.findFirstByIdCardIdAndIdSnapshotDateLessThanEqualOrderByIdSnapshotDateDesc(
+            cardId, from.minusDays(1)))
+            .thenReturn(Optional.of(new CardBalanceSnapshot(new CardBalanceSnapshotId(cardId, from.minusDays(1)),
+                Money.parse("50.00"))));
+        when(ledgerEntryRepository.sumTurnoverByCardIdBetween(cardId, DAY_START, Instant.parse("2025-03-13T00:00:00Z")))
+            .thenReturn(turnover("30.00", "10.00"));
+
+        CardStatementDto statement = service.statement(user, cardId, from, to);
+
+        assertEquals(new BigDecimal("50.00"), statement.getOpeningBalance());
+        assertEquals(new BigDecimal("30.00"), statement.getCredits());
+        assertEquals(new BigDecimal("10.00"), statement.getDebits());
+        assertEquals(new BigDecimal("70.00"), statement.getClosingBalance());
+    }
+
+    // метод statement — начало периода позже конца
+    @Test
+    void testStatementRejectsInvertedPeriod() {
+        assertThrows(IllegalArgumentException.class, () -> service.statement(user, cardId, DAY, DAY.minusDays(1)));
+        verifyNoInteractions(cardRepository, ledgerEntryRepository);
+    }
+
+    private static LedgerEntryRepository.CardTotal total(UUID cardId, String balance) {
+        return new LedgerEntryRepository.CardTotal() {
+            @Override
+            public UUID getCardId() {
+                return cardId;
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return new BigDecimal(balance);
+            }
+        };
+    }
+
+    private static LedgerEntryRepository.Turnover turnover(String credits, String debits) {
+        return new LedgerEntryRepository.Turnover() {
+            @Override
+            public BigDecimal getCredits() {
+                return new BigDecimal(credits);
+            }
+
+            @Override
+            public BigDecimal getDebits() {
+                return new BigDecimal(debits);
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardExpirySweeperTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 4, 1);
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CardExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new CardExpirySweeper(cardRepository, outboxService, transactionManager,
+            Clock.fixed(TODAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC), 2);
+    }
+
+    // метод sweep — карты истекают порциями, пока выборка по индексу не опустеет
+    @Test
+    void testSweepExpiresInChunks() {
+        List<UUID> first = List.of(UUID.randomUUID(), UUID.randomUUID());
+        List<UUID> second = List.of(UUID.randomUUID());
+        when(cardRepository.findExpiredActiveIds(TODAY, Limit.of(2))).thenReturn(first, second, List.of());
+        when(cardRepository.expireAll(first, TODAY)).thenReturn(2);
+        when(cardRepository.expireAll(second, TODAY)).thenReturn(1);
+
+        assertEquals(3, sweeper.sweep(TODAY));
+
+        verify(cardRepository, times(3)).findExpiredActiveIds(TODAY, Limit.of(2));
+        verify(transactionManager, times(3)).commit(any());
+        verify(outboxService).statusChanged(first, CardStatus.EXPIRED);
+        verify(outboxService).statusChanged(second, CardStatus.EXPIRED);
+    }
+
+    // метод sweep — если порцию уже успели изменить, обход останавливается, а не крутится на тех же id
+    @Test
+    void testSweepStopsWhenNothingUpdated() {
+        List<UUID> ids = List.of(UUID.randomUUID());
+        when(cardRepository.findExpiredActiveIds(TODAY, Limit.of(2))).thenReturn(ids);
+        when(cardRepository.expireAll(ids, TODAY)).thenReturn(0);
+
+        assertEquals(0, sweeper.sweep(TODAY));
+
+        verify(cardRepository, times(1)).expireAll(ids, TODAY);
+        verifyNoInteractions(outboxService);
+    }
+
+    // метод sweep — если часть порции поменяли параллельно, события пишутся только по истекшим картам
+    @Test
+    void testSweepEmitsEventsOnlyForExpiredCards() {
+        UUID expired = UUID.randomUUID();
+        List<UUID> ids = List.of(expired, UUID.randomUUID());
+        when(cardRepository.findExpiredActiveIds(TODAY, Limit.of(2))).thenReturn(ids, List.of());
+        when(cardRepository.expireAll(ids, TODAY)).thenReturn(1);
+        when(cardRepository.findIdsByIdInAndStatus(ids, CardStatus.EXPIRED)).thenReturn(List.of(expired));
+
+        assertEquals(1, sweeper.sweep(TODAY));
+
+        verify(outboxService).statusChanged(List.of(expired), CardStatus.EXPIRED);
+    }
+
+    // метод sweep без даты — берет текущий день из часов сервиса
+    @Test
+    void testSweepUsesClockDate() {
+        when(cardRepository.findExpiredActiveIds(TODAY, Limit.of(2))).thenReturn(List.of());
+
+        assertEquals(0, sweeper.sweep());
+
+        verify(cardRepository).findExpiredActiveIds(TODAY, Limit.of(2));
+    }
+}
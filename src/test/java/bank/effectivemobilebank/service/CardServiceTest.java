@@ -1,15 +1,20 @@
 package bank.effectivemobilebank.service;
 
 import bank.effectivemobilebank.config.CardNumberCipher;
+import bank.effectivemobilebank.dto.BatchTransferItemResult;
+import bank.effectivemobilebank.dto.CardTransactionPage;
+import bank.effectivemobilebank.dto.TransferRequest;
 import bank.effectivemobilebank.model.Card;
 import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.LedgerOperationType;
+import bank.effectivemobilebank.model.Money;
 import bank.effectivemobilebank.model.User;
 import bank.effectivemobilebank.repository.CardRepository;
 import bank.effectivemobilebank.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
@@ -17,18 +22,30 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class CardServiceTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.now(), ZoneId.systemDefault());
+    private static final LocalDate TODAY = LocalDate.now(CLOCK);
+
 
     @Mock
     private CardRepository cardRepository;
@@ -39,7 +56,18 @@ class CardServiceTest {
     @Mock
     private CardNumberCipher cipher;
 
-    @InjectMocks
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private HotCardService hotCardService;
+
+    @Mock
+    private VelocityLimitService velocityLimitService;
+
+    @Mock
+    private OutboxService outboxService;
+
     private CardService cardService;
 
     private User user;
@@ -47,6 +75,8 @@ class CardServiceTest {
 
     @BeforeEach
     void setUp() {
+        cardService = newCardService(TransferLockMode.ATOMIC);
+
         user = new User();
         user.setId(UUID.randomUUID());
         user.setUsername("maks");
@@ -60,19 +90,34 @@ class CardServiceTest {
         String plainPan = "1234567890123456";
         LocalDate expiry = LocalDate.now().plusYears(3);
         when(cipher.encrypt(plainPan)).thenReturn("encryptedPan");
+        when(cipher.blindIndex(plainPan)).thenReturn("panHash");
         when(cardRepository.save(any())).thenAnswer(i -> i.getArguments()[0]);
 
         Card card = cardService.createCard(user, plainPan, expiry);
 
         assertEquals(user, card.getOwner());
         assertEquals("encryptedPan", card.getPanEncrypted());
+        assertEquals("panHash", card.getPanHash());
         assertEquals("3456", card.getPanLast4());
         assertEquals(CardStatus.ACTIVE, card.getStatus());
-        assertEquals(BigDecimal.ZERO, card.getBalance());
+        assertEquals(Money.ZERO, card.getBalance());
 
         verify(cardRepository).save(card);
     }
 
+    // метод createCard — номер уже занят другой картой
+    @Test
+    void testCreateCardDuplicatePan() {
+        when(cipher.blindIndex("1234567890123456")).thenReturn("panHash");
+        when(cardRepository.existsByPanHash("panHash")).thenReturn(true);
+
+        Exception ex = assertThrows(IllegalArgumentException.class,
+            () -> cardService.createCard(user, "1234567890123456", LocalDate.now().plusYears(3)));
+
+        assertEquals("Карта с таким номером уже существует", ex.getMessage());
+        verify(cardRepository, never()).save(any());
+    }
+
     // метод createCardForOwnerId — создание карты по ID владельца
     @Test
     void testCreateCardForOwnerId() {
@@ -85,55 +130,231 @@ class CardServiceTest {
         assertEquals(user, card.getOwner());
     }
 
-    // метод transfer — успешный перевод между картами одного пользователя
+    // метод transfer — успешный перевод между картами одного пользователя (режим PESSIMISTIC)
     @Test
     void testTransferSuccessful() {
+        cardService = newCardService(TransferLockMode.PESSIMISTIC);
         Card from = new Card();
         from.setId(cardId);
         from.setOwner(user);
-        from.setBalance(new BigDecimal("100"));
+        from.setBalance(Money.parse("100"));
         from.setStatus(CardStatus.ACTIVE);
+        from.setExpiry(LocalDate.now().plusYears(1));
 
         Card to = new Card();
         to.setId(UUID.randomUUID());
         to.setOwner(user);
-        to.setBalance(BigDecimal.ZERO);
+        to.setBalance(Money.ZERO);
         to.setStatus(CardStatus.ACTIVE);
+        to.setExpiry(LocalDate.now().plusYears(1));
 
-        when(cardRepository.findByIdAndOwner(from.getId(), user)).thenReturn(Optional.of(from));
-        when(cardRepository.findByIdAndOwner(to.getId(), user)).thenReturn(Optional.of(to));
+        when(cardRepository.findByIdAndOwnerForUpdate(from.getId(), user)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdAndOwnerForUpdate(to.getId(), user)).thenReturn(Optional.of(to));
 
-        cardService.transfer(user, from.getId(), to.getId(), new BigDecimal("50"));
+        cardService.transfer(user, from.getId(), to.getId(), Money.parse("50"));
 
-        assertEquals(new BigDecimal("50"), from.getBalance());
-        assertEquals(new BigDecimal("50"), to.getBalance());
+        assertEquals(Money.parse("50"), from.getBalance());
+        assertEquals(Money.parse("50"), to.getBalance());
 
         verify(cardRepository).save(from);
         verify(cardRepository).save(to);
+        verify(ledgerService).recordTransfer(from.getId(), to.getId(), Money.parse("50"));
     }
 
-    // метод transfer — недостаточно средств для перевода
+    // метод transfer — недостаточно средств для перевода (режим PESSIMISTIC)
     @Test
     void testTransferInsufficientFunds() {
+        cardService = newCardService(TransferLockMode.PESSIMISTIC);
         Card from = new Card();
         from.setId(cardId);
         from.setOwner(user);
-        from.setBalance(new BigDecimal("10"));
+        from.setBalance(Money.parse("10"));
         from.setStatus(CardStatus.ACTIVE);
+        from.setExpiry(LocalDate.now().plusYears(1));
 
         Card to = new Card();
         to.setId(UUID.randomUUID());
         to.setOwner(user);
-        to.setBalance(BigDecimal.ZERO);
+        to.setBalance(Money.ZERO);
         to.setStatus(CardStatus.ACTIVE);
+        to.setExpiry(LocalDate.now().plusYears(1));
+
+        when(cardRepository.findByIdAndOwnerForUpdate(from.getId(), user)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdAndOwnerForUpdate(to.getId(), user)).thenReturn(Optional.of(to));
+
+        Exception ex = assertThrows(IllegalStateException.class, () ->
+                cardService.transfer(user, from.getId(), to.getId(), Money.parse("50"))
+        );
+        assertEquals("Недостаточно средств", ex.getMessage());
+        verifyNoInteractions(ledgerService);
+    }
+
+    // метод transfer — строки блокируются в порядке UUID независимо от направления перевода
+    @Test
+    void testTransferLocksCardsInFixedOrder() {
+        cardService = newCardService(TransferLockMode.PESSIMISTIC);
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+        Card lowCard = activeCard(low, Money.parse("100"));
+        Card highCard = activeCard(high, Money.parse("100"));
+
+        when(cardRepository.findByIdAndOwnerForUpdate(low, user)).thenReturn(Optional.of(lowCard));
+        when(cardRepository.findByIdAndOwnerForUpdate(high, user)).thenReturn(Optional.of(highCard));
+
+        cardService.transfer(user, high, low, Money.parse("10"));
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findByIdAndOwnerForUpdate(low, user);
+        inOrder.verify(cardRepository).findByIdAndOwnerForUpdate(high, user);
+        assertEquals(Money.parse("90"), highCard.getBalance());
+        assertEquals(Money.parse("110"), lowCard.getBalance());
+    }
+
+    // метод transfer — в оптимистичном режиме карты читаются без блокировки
+    @Test
+    void testTransferOptimisticModeReadsWithoutLock() {
+        cardService = newCardService(TransferLockMode.OPTIMISTIC);
+        Card from = activeCard(cardId, Money.parse("100"));
+        Card to = activeCard(UUID.randomUUID(), Money.ZERO);
 
         when(cardRepository.findByIdAndOwner(from.getId(), user)).thenReturn(Optional.of(from));
         when(cardRepository.findByIdAndOwner(to.getId(), user)).thenReturn(Optional.of(to));
 
+        cardService.transfer(user, from.getId(), to.getId(), Money.parse("40"));
+
+        assertEquals(Money.parse("60"), from.getBalance());
+        assertEquals(Money.parse("40"), to.getBalance());
+        verify(cardRepository, never()).findByIdAndOwnerForUpdate(any(), any());
+    }
+
+    // метод transfer — режим ATOMIC: одно условное списание и одно зачисление без чтения карт
+    @Test
+    void testTransferAtomicSuccessful() {
+        UUID toId = UUID.randomUUID();
+        when(cardRepository.debitIfActive(cardId, user, Money.parse("10"), TODAY)).thenReturn(1);
+        when(cardRepository.creditIfActive(toId, user, Money.parse("10"), TODAY)).thenReturn(1);
+        UUID operationId = UUID.randomUUID();
+        when(ledgerService.recordTransfer(cardId, toId, Money.parse("10"))).thenReturn(operationId);
+
+        cardService.transfer(user, cardId, toId, Money.parse("10"));
+
+        verify(cardRepository, never()).findByIdAndOwner(any(), any());
+        verify(cardRepository, never()).save(any());
+        verify(outboxService).transfer(cardId, toId, Money.parse("10"), operationId);
+    }
+
+    // метод transfer — режим ATOMIC: UPDATE выполняются в порядке UUID
+    @Test
+    void testTransferAtomicUpdatesInFixedOrder() {
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+        when(cardRepository.debitIfActive(high, user, Money.parse("1"), TODAY)).thenReturn(1);
+        when(cardRepository.creditIfActive(low, user, Money.parse("1"), TODAY)).thenReturn(1);
+
+        cardService.transfer(user, high, low, Money.parse("1"));
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).creditIfActive(low, user, Money.parse("1"), TODAY);
+        inOrder.verify(cardRepository).debitIfActive(high, user, Money.parse("1"), TODAY);
+    }
+
+    // метод transfer — режим ATOMIC: списание не прошло из-за нехватки средств
+    @Test
+    void testTransferAtomicInsufficientFunds() {
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+        when(cardRepository.debitIfActive(low, user, Money.parse("50"), TODAY)).thenReturn(0);
+        when(cardRepository.findByIdAndOwner(low, user)).thenReturn(Optional.of(activeCard(low, Money.parse("10"))));
+
         Exception ex = assertThrows(IllegalStateException.class, () ->
-                cardService.transfer(user, from.getId(), to.getId(), new BigDecimal("50"))
+                cardService.transfer(user, low, high, Money.parse("50"))
         );
         assertEquals("Недостаточно средств", ex.getMessage());
+        verify(cardRepository, never()).creditIfActive(any(UUID.class), any(User.class), any(), any());
+        verifyNoInteractions(ledgerService);
+    }
+
+    // метод transfer — режим ATOMIC: у горячей карты не хватает основного баланса, полосы сворачиваются
+    @Test
+    void testTransferAtomicFoldsHotCardStripes() {
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+        Card hot = activeCard(low, Money.parse("10"));
+        hot.setHot(true);
+        when(cardRepository.debitIfActive(low, user, Money.parse("50"), TODAY)).thenReturn(0, 1);
+        when(cardRepository.findByIdAndOwner(low, user)).thenReturn(Optional.of(hot));
+        when(hotCardService.fold(low)).thenReturn(Money.parse("90"));
+        when(cardRepository.creditIfActive(high, user, Money.parse("50"), TODAY)).thenReturn(1);
+
+        cardService.transfer(user, low, high, Money.parse("50"));
+
+        verify(cardRepository, times(2)).debitIfActive(low, user, Money.parse("50"), TODAY);
+        verify(ledgerService).recordTransfer(low, high, Money.parse("50"));
+    }
+
+    // метод transfer — режим ATOMIC: карта-получатель заблокирована
+    @Test
+    void testTransferAtomicBlockedTarget() {
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+        Card blocked = activeCard(low, Money.ZERO);
+        blocked.setStatus(CardStatus.BLOCKED);
+        when(cardRepository.creditIfActive(low, user, Money.parse("1"), TODAY)).thenReturn(0);
+        when(cardRepository.findByIdAndOwner(low, user)).thenReturn(Optional.of(blocked));
+
+        Exception ex = assertThrows(IllegalStateException.class, () ->
+                cardService.transfer(user, high, low, Money.parse("1"))
+        );
+        assertEquals("Карты должны быть активны", ex.getMessage());
+        verify(cardRepository, never()).debitIfActive(any(), any(), any(), any());
+    }
+
+    // метод transferBatch — карты блокируются один раз, ошибка одного перевода не отменяет остальные
+    @Test
+    void testTransferBatch() {
+        Card a = activeCard(UUID.randomUUID(), Money.parse("100"));
+        Card b = activeCard(UUID.randomUUID(), Money.ZERO);
+        when(cardRepository.findAllByIdInAndOwnerForUpdate(Set.of(a.getId(), b.getId()), user)).thenReturn(List.of(a, b));
+
+        List<BatchTransferItemResult> results = cardService.transferBatch(user, List.of(
+            transferRequest(a.getId(), b.getId(), "60"),
+            transferRequest(a.getId(), b.getId(), "60"),
+            transferRequest(b.getId(), a.getId(), "10")
+        ));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("Недостаточно средств", results.get(1).getError());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(Money.parse("50"), a.getBalance());
+        assertEquals(Money.parse("50"), b.getBalance());
+        verify(cardRepository, times(1)).findAllByIdInAndOwnerForUpdate(any(), eq(user));
+        verify(ledgerService, times(2)).recordTransfer(any(), any(), any());
+        verify(cardRepository, never()).save(any());
+    }
+
+    // метод transferBatch — карта чужого пользователя не найдена
+    @Test
+    void testTransferBatchUnknownCard() {
+        Card a = activeCard(UUID.randomUUID(), Money.parse("100"));
+        UUID foreign = UUID.randomUUID();
+        when(cardRepository.findAllByIdInAndOwnerForUpdate(Set.of(a.getId(), foreign), user)).thenReturn(List.of(a));
+
+        List<BatchTransferItemResult> results = cardService.transferBatch(user,
+            List.of(transferRequest(a.getId(), foreign, "10")));
+
+        assertEquals("Карта не найдена", results.getFirst().getError());
+        assertEquals(Money.parse("100"), a.getBalance());
+    }
+
+    // метод transferBatch — размер пачки ограничен
+    @Test
+    void testTransferBatchTooLarge() {
+        List<TransferRequest> transfers = java.util.Collections.nCopies(101,
+            transferRequest(UUID.randomUUID(), UUID.randomUUID(), "1"));
+
+        assertThrows(IllegalArgumentException.class, () -> cardService.transferBatch(user, transfers));
+        verifyNoInteractions(cardRepository);
     }
 
     // метод findUserCards — получение карт пользователя с фильтром по статусу
@@ -165,6 +386,7 @@ class CardServiceTest {
 
         assertEquals(CardStatus.BLOCKED, card.getStatus());
         verify(cardRepository).save(card);
+        verify(outboxService).statusChanged(cardId, CardStatus.BLOCKED);
     }
 
     // метод changeStatus — изменение статуса карты без указания владельца
@@ -183,22 +405,30 @@ class CardServiceTest {
         verify(cardRepository).save(card);
     }
 
-    // метод topUp — успешное пополнение активной карты
+    // метод topUp — успешное пополнение активной карты одним UPDATE
     @Test
     void testTopUpSuccessful() {
-        Card card = new Card();
-        card.setId(cardId);
-        card.setOwner(user);
-        card.setStatus(CardStatus.ACTIVE);
-        card.setBalance(BigDecimal.ZERO);
+        when(cardRepository.creditIfActive(cardId, user, Money.parse("100"), TODAY)).thenReturn(1);
 
-        when(cardRepository.findByIdAndOwner(cardId, user)).thenReturn(Optional.of(card));
-        when(cardRepository.save(card)).thenReturn(card);
+        UUID operationId = UUID.randomUUID();
+        when(ledgerService.recordTopUp(cardId, Money.parse("100"), LedgerOperationType.TOP_UP)).thenReturn(operationId);
 
-        cardService.topUp(user, cardId, new BigDecimal("100"));
+        cardService.topUp(user, cardId, Money.parse("100"));
 
-        assertEquals(new BigDecimal("100"), card.getBalance());
-        verify(cardRepository).save(card);
+        verify(cardRepository, never()).save(any());
+        verify(outboxService).topUp(cardId, Money.parse("100"), operationId);
+    }
+
+    // метод topUp — зачисление на горячую карту уходит в полосу, строка cards не обновляется
+    @Test
+    void testTopUpHotCard() {
+        when(hotCardService.isHot(cardId)).thenReturn(true);
+        when(hotCardService.credit(cardId, user, Money.parse("10"), TODAY)).thenReturn(true);
+
+        cardService.topUp(user, cardId, Money.parse("10"));
+
+        verify(cardRepository, never()).creditIfActive(any(UUID.class), any(User.class), any(), any());
+        verify(ledgerService).recordTopUp(cardId, Money.parse("10"), LedgerOperationType.TOP_UP);
     }
 
     // метод topUp — попытка пополнения неактивной карты
@@ -209,29 +439,25 @@ class CardServiceTest {
         card.setOwner(user);
         card.setStatus(CardStatus.BLOCKED);
 
+        when(cardRepository.creditIfActive(cardId, user, Money.parse("10"), TODAY)).thenReturn(0);
         when(cardRepository.findByIdAndOwner(cardId, user)).thenReturn(Optional.of(card));
 
         Exception ex = assertThrows(IllegalStateException.class, () ->
-                cardService.topUp(user, cardId, BigDecimal.TEN)
+                cardService.topUp(user, cardId, Money.parse("10"))
         );
         assertEquals("Карта должна быть активна", ex.getMessage());
+        verifyNoInteractions(ledgerService, outboxService);
     }
 
     // метод adminTopUp — успешное пополнение карты администратором
     @Test
     void testAdminTopUpSuccessful() {
-        Card card = new Card();
-        card.setId(cardId);
-        card.setStatus(CardStatus.ACTIVE);
-        card.setBalance(BigDecimal.ZERO);
+        when(cardRepository.creditIfActive(cardId, Money.parse("50"), TODAY)).thenReturn(1);
 
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
-        when(cardRepository.save(card)).thenReturn(card);
+        cardService.adminTopUp(cardId, Money.parse("50"));
 
-        cardService.adminTopUp(cardId, new BigDecimal("50"));
-
-        assertEquals(new BigDecimal("50"), card.getBalance());
-        verify(cardRepository).save(card);
+        verify(cardRepository, never()).save(any());
+        verify(ledgerService).recordTopUp(cardId, Money.parse("50"), LedgerOperationType.ADMIN_TOP_UP);
     }
 
     // метод deleteById — удаление карты
@@ -293,6 +519,156 @@ class CardServiceTest {
 
         assertEquals(1, result.getContent().size());
     }
-}
 
+    private CardService newCardService(TransferLockMode lockMode) {
+        return new CardService(cardRepository, userRepository, cipher, ledgerService, hotCardService, velocityLimitService,
+            outboxService, CLOCK, lockMode, 100);
+    }
+
+    private static TransferRequest transferRequest(UUID from, UUID to, String amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from);
+        request.setToCardId(to);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+
+    private Card activeCard(UUID id, Money balance) {
+        Card card = new Card();
+        card.setId(id);
+        card.setOwner(user);
+        card.setBalance(balance);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setExpiry(LocalDate.now().plusYears(1));
+        return card;
+    }
+
+    // метод findTransactions — история только по своей карте
+    @Test
+    void testFindTransactionsForOwnCard() {
+        CardTransactionPage page = CardTransactionPage.of(List.of(), null);
+        when(cardRepository.existsByIdAndOwner(cardId, user)).thenReturn(true);
+        when(ledgerService.history(cardId, "cursor", 20)).thenReturn(page);
+
+        assertSame(page, cardService.findTransactions(user, cardId, "cursor", 20));
+    }
+
+    // метод findTransactions — чужая карта и недопустимый размер страницы
+    @Test
+    void testFindTransactionsRejectsForeignCardAndBadSize() {
+        when(cardRepository.existsByIdAndOwner(cardId, user)).thenReturn(false);
+
+        assertThrows(NoSuchElementException.class, () -> cardService.findTransactions(user, cardId, null, 20));
+        assertThrows(IllegalArgumentException.class, () -> cardService.findTransactions(user, cardId, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> cardService.findTransactions(user, cardId, null, 101));
+        verifyNoInteractions(ledgerService);
+    }
+
+    // метод transfer — превышение лимита отклоняет перевод до обращения к базе
+    @Test
+    void testTransferRejectedByVelocityLimit() {
+        UUID toId = UUID.randomUUID();
+        when(velocityLimitService.reserve(user.getId(), cardId, Money.parse("10.00")))
+            .thenThrow(new IllegalStateException("Превышен суточный лимит по карте"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> cardService.transfer(user, cardId, toId, Money.parse("10.00")));
+
+        assertEquals("Превышен суточный лимит по карте", e.getMessage());
+        verifyNoInteractions(cardRepository, ledgerService);
+    }
+
+    // метод topUp — пополнение учитывается в лимитах карты
+    @Test
+    void testTopUpReservesLimit() {
+        when(cardRepository.creditIfActive(cardId, user, Money.parse("5.00"), TODAY)).thenReturn(1);
+
+        cardService.topUp(user, cardId, Money.parse("5.00"));
 
+        verify(velocityLimitService).reserve(user.getId(), cardId, Money.parse("5.00"));
+    }
+
+    // метод transferToCardNumber — получатель найден по слепому индексу, зачисление без проверки владельца
+    @Test
+    void testTransferToCardNumber() {
+        UUID toId = UUID.randomUUID();
+        when(cipher.blindIndex("4276380012345678")).thenReturn("panHash");
+        when(cardRepository.findIdByPanHash("panHash")).thenReturn(Optional.of(toId));
+        when(cardRepository.debitIfActive(cardId, user, Money.parse("25.00"), TODAY)).thenReturn(1);
+        when(cardRepository.creditIfActive(toId, Money.parse("25.00"), TODAY)).thenReturn(1);
+
+        cardService.transferToCardNumber(user, cardId, "4276380012345678", Money.parse("25.00"));
+
+        verify(velocityLimitService).reserve(user.getId(), cardId, Money.parse("25.00"));
+        verify(cardRepository, never()).creditIfActive(any(UUID.class), any(User.class), any(), any());
+        verify(cipher, never()).decrypt(anyString());
+        verify(ledgerService).recordTransfer(cardId, toId, Money.parse("25.00"));
+    }
+
+    // метод transferToCardNumber — неизвестный номер и заблокированная карта получателя
+    @Test
+    void testTransferToCardNumberUnknownOrInactiveRecipient() {
+        UUID toId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID fromId = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+        when(cipher.blindIndex("0000000000000000")).thenReturn("unknown");
+        when(cipher.blindIndex("4276380012345678")).thenReturn("panHash");
+        when(cardRepository.findIdByPanHash("unknown")).thenReturn(Optional.empty());
+        when(cardRepository.findIdByPanHash("panHash")).thenReturn(Optional.of(toId));
+        when(cardRepository.creditIfActive(toId, Money.parse("1.00"), TODAY)).thenReturn(0);
+
+        assertThrows(NoSuchElementException.class,
+            () -> cardService.transferToCardNumber(user, fromId, "0000000000000000", Money.parse("1.00")));
+        Exception ex = assertThrows(IllegalStateException.class,
+            () -> cardService.transferToCardNumber(user, fromId, "4276380012345678", Money.parse("1.00")));
+
+        assertEquals("Карта получателя не активна", ex.getMessage());
+        verify(cardRepository, never()).debitIfActive(any(), any(), any(), any());
+        verifyNoInteractions(ledgerService);
+    }
+
+    // метод topUp — активная карта с прошедшим сроком отклоняется, даже если сборщик еще не сработал
+    @Test
+    void testTopUpExpiredCard() {
+        Card expired = activeCard(cardId, Money.ZERO);
+        expired.setExpiry(TODAY.minusDays(1));
+        when(cardRepository.creditIfActive(cardId, user, Money.parse("5.00"), TODAY)).thenReturn(0);
+        when(cardRepository.findByIdAndOwner(cardId, user)).thenReturn(Optional.of(expired));
+
+        Exception ex = assertThrows(IllegalStateException.class,
+            () -> cardService.topUp(user, cardId, Money.parse("5.00")));
+
+        assertEquals("Срок действия карты истек", ex.getMessage());
+        verifyNoInteractions(ledgerService);
+    }
+
+    // метод transfer — режим PESSIMISTIC: карта-отправитель с прошедшим сроком
+    @Test
+    void testTransferPessimisticExpiredCard() {
+        cardService = newCardService(TransferLockMode.PESSIMISTIC);
+        UUID toId = UUID.randomUUID();
+        Card from = activeCard(cardId, Money.parse("100"));
+        from.setExpiry(TODAY.minusDays(1));
+        when(cardRepository.findByIdAndOwnerForUpdate(cardId, user)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdAndOwnerForUpdate(toId, user)).thenReturn(Optional.of(activeCard(toId, Money.ZERO)));
+
+        Exception ex = assertThrows(IllegalStateException.class,
+            () -> cardService.transfer(user, cardId, toId, Money.parse("10")));
+
+        assertEquals("Срок действия карты истек", ex.getMessage());
+        verify(cardRepository, never()).save(any());
+    }
+
+    // метод transfer — карта действует по день expiry включительно по дате из часов сервиса
+    @Test
+    void testTransferPessimisticCardExpiringToday() {
+        cardService = newCardService(TransferLockMode.PESSIMISTIC);
+        UUID toId = UUID.randomUUID();
+        Card from = activeCard(cardId, Money.parse("100"));
+        from.setExpiry(TODAY);
+        when(cardRepository.findByIdAndOwnerForUpdate(cardId, user)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdAndOwnerForUpdate(toId, user)).thenReturn(Optional.of(activeCard(toId, Money.ZERO)));
+        cardService.transfer(user, cardId, toId, Money.parse("10"));
+
+        assertEquals(Money.parse("90"), from.getBalance());
+    }
+}
@@ -0,0 +1,212 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.CardBalanceStripe;
+import bank.effectivemobilebank.model.CardBalanceStripeId;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.CardBalanceStripeRepository;
+import bank.effectivemobilebank.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotCardServiceTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 4, 1);
+
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardBalanceStripeRepository stripeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HotCardService hotCardService;
+
+    private UUID cardId;
+
+    @BeforeEach
+    void setUp() {
+        hotCardService = new HotCardService(cardRepository, stripeRepository, transactionManager,
+            new ConcurrencyRetry(3, 0), 4);
+        cardId = UUID.randomUUID();
+    }
+
+    // метод enable — создаются только недостающие полосы, карта помечается горячей
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEnableCreatesMissingStripes() {
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(new Card()));
+        when(stripeRepository.findAllByIdCardId(cardId)).thenReturn(List.of(stripe(0, Money.ZERO)));
+        ArgumentCaptor<List<CardBalanceStripe>> captor = ArgumentCaptor.forClass(List.class);
+
+        hotCardService.enable(cardId);
+
+        verify(stripeRepository).saveAll(captor.capture());
+        assertEquals(List.of(1, 2, 3), captor.getValue().stream().map(s -> s.getId().getStripe()).toList());
+        verify(cardRepository).updateHot(cardId, true);
+        assertTrue(hotCardService.isHot(cardId));
+    }
+
+    // метод credit — зачисление в одну из полос с проверкой владельца
+    @Test
+    void testCreditGoesToStripe() {
+        User owner = new User();
+        when(stripeRepository.creditIfHot(eq(cardId), eq(owner), anyInt(), eq(Money.parse("10")), eq(TODAY)))
+            .thenReturn(1);
+
+        assertTrue(hotCardService.credit(cardId, owner, Money.parse("10"), TODAY));
+    }
+
+    // метод credit — карта уже не горячая, вызывающий зачисляет на основной баланс
+    @Test
+    void testCreditRejectedForNotHotCard() {
+        when(stripeRepository.creditIfHot(eq(cardId), anyInt(), eq(Money.parse("10")), eq(TODAY))).thenReturn(0);
+
+        assertFalse(hotCardService.credit(cardId, null, Money.parse("10"), TODAY));
+    }
+
+    // метод fold — строка карты блокируется раньше полос, из полос вычитается прочитанное
+    // и переносится на основной баланс; пустые полосы не обновляются
+    @Test
+    void testFoldMovesStripesToBalance() {
+        when(cardRepository.lockById(cardId)).thenReturn(Optional.of(cardId));
+        when(stripeRepository.findBalancesForUpdate(cardId)).thenReturn(List.of(
+            balance(0, Money.parse("15")), balance(1, Money.ZERO), balance(2, Money.parse("25"))));
+
+        Money folded = hotCardService.fold(cardId);
+
+        assertEquals(Money.parse("40"), folded);
+        InOrder order = inOrder(cardRepository, stripeRepository);
+        order.verify(cardRepository).lockById(cardId);
+        order.verify(stripeRepository).findBalancesForUpdate(cardId);
+        order.verify(stripeRepository).withdraw(cardId, 0, Money.parse("15"));
+        order.verify(stripeRepository).withdraw(cardId, 2, Money.parse("25"));
+        order.verify(cardRepository).addToBalance(cardId, Money.parse("40"));
+        verify(stripeRepository, never()).withdraw(cardId, 1, Money.ZERO);
+    }
+
+    // метод fold — карта удалена, полосы не трогаются
+    @Test
+    void testFoldMissingCard() {
+        when(cardRepository.lockById(cardId)).thenReturn(Optional.empty());
+
+        assertEquals(Money.ZERO, hotCardService.fold(cardId));
+        verifyNoInteractions(stripeRepository);
+    }
+
+    // метод foldInto — сумма полос добавляется к загруженной карте без отдельного UPDATE
+    @Test
+    void testFoldIntoLoadedCard() {
+        Card card = new Card();
+        card.setId(cardId);
+        card.setBalance(Money.parse("1"));
+        when(stripeRepository.findBalancesForUpdate(cardId)).thenReturn(List.of(balance(0, Money.parse("10"))));
+
+        hotCardService.foldInto(card);
+
+        assertEquals(Money.parse("11"), card.getBalance());
+        InOrder order = inOrder(cardRepository, stripeRepository);
+        order.verify(cardRepository).findByIdForUpdate(cardId);
+        order.verify(stripeRepository).findBalancesForUpdate(cardId);
+        order.verify(stripeRepository).withdraw(cardId, 0, Money.parse("10"));
+        verify(cardRepository, never()).addToBalance(any(), any());
+    }
+
+    // метод loadStripedBalances — сумма полос запрашивается только для горячих карт
+    @Test
+    void testLoadStripedBalancesOnlyForHotCards() {
+        Card hot = new Card();
+        hot.setId(cardId);
+        hot.setHot(true);
+        hot.setBalance(Money.parse("1"));
+        Card plain = new Card();
+        plain.setId(UUID.randomUUID());
+        plain.setBalance(Money.parse("2"));
+        when(stripeRepository.sumBalances(Set.of(cardId))).thenReturn(List.of(total(cardId, Money.parse("9"))));
+
+        hotCardService.loadStripedBalances(List.of(hot, plain));
+
+        assertEquals(Money.parse("10"), hot.getTotalBalance());
+        assertEquals(Money.parse("2"), plain.getTotalBalance());
+    }
+
+    // метод loadStripedBalances — без горячих карт запроса к полосам нет
+    @Test
+    void testLoadStripedBalancesSkipsPlainCards() {
+        Card plain = new Card();
+        plain.setId(cardId);
+
+        hotCardService.loadStripedBalances(List.of(plain));
+
+        verifyNoInteractions(stripeRepository);
+    }
+
+    // метод compact — сворачивает карты с ненулевыми полосами и обновляет список горячих карт
+    @Test
+    void testCompact() {
+        when(cardRepository.findHotCardIds()).thenReturn(List.of(cardId));
+        when(stripeRepository.findCardIdsWithPendingBalance()).thenReturn(List.of(cardId));
+        when(cardRepository.lockById(cardId)).thenReturn(Optional.of(cardId));
+        when(stripeRepository.findBalancesForUpdate(cardId)).thenReturn(List.of(balance(0, Money.parse("10"))));
+
+        hotCardService.compact();
+
+        verify(cardRepository).addToBalance(cardId, Money.parse("10"));
+        assertTrue(hotCardService.isHot(cardId));
+    }
+
+    private CardBalanceStripe stripe(int index, Money balance) {
+        return new CardBalanceStripe(new CardBalanceStripeId(cardId, index), balance);
+    }
+
+    private static CardBalanceStripeRepository.StripeBalance balance(int stripe, Money balance) {
+        return new CardBalanceStripeRepository.StripeBalance() {
+            @Override
+            public int getStripe() {
+                return stripe;
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return balance.toBigDecimal();
+            }
+        };
+    }
+
+    private static CardBalanceStripeRepository.StripeTotal total(UUID cardId, Money balance) {
+        return new CardBalanceStripeRepository.StripeTotal() {
+            @Override
+            public UUID getCardId() {
+                return cardId;
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return balance.toBigDecimal();
+            }
+        };
+    }
+}
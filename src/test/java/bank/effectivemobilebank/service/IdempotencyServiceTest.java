@@ -0,0 +1,171 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.IdempotencyRecord;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotencyService idempotencyService;
+
+    private User user;
+    private AtomicInteger executions;
+    private Supplier<ResponseEntity<?>> operation;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(repository, transactionManager, new ConcurrencyRetry(1, 0),
+            new ObjectMapper(), 24, 100);
+        user = new User();
+        user.setId(UUID.randomUUID());
+        executions = new AtomicInteger();
+        operation = () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok(Map.of("message", "Перевод выполнен успешно"));
+        };
+    }
+
+    // метод execute — без ключа операция выполняется как обычно
+    @Test
+    void testExecuteWithoutKey() {
+        ResponseEntity<?> response = idempotencyService.execute(user, null, "transfer:1", operation);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(1, executions.get());
+        verifyNoInteractions(repository);
+    }
+
+    // метод execute — повтор с тем же ключом отдается из кэша без повторного перевода
+    @Test
+    void testExecuteReplaysFromCache() {
+        ResponseEntity<?> first = idempotencyService.execute(user, "key-1", "transfer:1", operation);
+        ResponseEntity<?> second = idempotencyService.execute(user, "key-1", "transfer:1", operation);
+
+        assertEquals(1, executions.get());
+        verify(repository, times(1)).saveAndFlush(any(IdempotencyRecord.class));
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    // метод execute — ключ уже сохранен другим узлом: ответ читается из таблицы
+    @Test
+    void testExecuteReplaysFromDatabase() {
+        IdempotencyRecord existing = new IdempotencyRecord();
+        existing.setRequestHash(sha256Of("transfer:1"));
+        existing.setResponseStatus(200);
+        existing.setResponseBody("{\"message\":\"Перевод выполнен успешно\"}");
+        when(repository.saveAndFlush(any(IdempotencyRecord.class)))
+            .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(repository.findByOwnerIdAndIdempotencyKey(user.getId(), "key-2")).thenReturn(Optional.of(existing));
+
+        ResponseEntity<?> response = idempotencyService.execute(user, "key-2", "transfer:1", operation);
+
+        assertEquals(0, executions.get());
+        assertEquals(Map.of("message", "Перевод выполнен успешно"), response.getBody());
+    }
+
+    // метод execute — тот же ключ с другим телом запроса отклоняется
+    @Test
+    void testExecuteRejectsKeyReuseWithDifferentRequest() {
+        idempotencyService.execute(user, "key-3", "transfer:1", operation);
+
+        Exception ex = assertThrows(IllegalArgumentException.class, () ->
+            idempotencyService.execute(user, "key-3", "transfer:2", operation));
+        assertEquals("Ключ идемпотентности уже использован для другого запроса", ex.getMessage());
+        assertEquals(1, executions.get());
+    }
+
+    // метод execute — неуспешная операция не запоминается
+    @Test
+    void testExecuteDoesNotStoreFailures() {
+        Supplier<ResponseEntity<?>> failing = () -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("Недостаточно средств");
+        };
+
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(user, "key-4", "transfer:1", failing));
+        idempotencyService.execute(user, "key-4", "transfer:1", operation);
+
+        assertEquals(2, executions.get());
+    }
+
+    // метод executeCommitting — ключ записывается операцией в ее транзакции, повтор отдается из кэша
+    @Test
+    void testExecuteCommittingStoresKeyThroughOperation() {
+        ResponseEntity<?> success = ResponseEntity.ok(Map.of("message", "Перевод выполнен успешно"));
+        Consumer<Runnable> transfer = recordKey -> {
+            executions.incrementAndGet();
+            recordKey.run();
+        };
+
+        ResponseEntity<?> first = idempotencyService.executeCommitting(user, "key-5", "transfer:1", success, transfer);
+        ResponseEntity<?> second = idempotencyService.executeCommitting(user, "key-5", "transfer:1", success, transfer);
+
+        assertEquals(1, executions.get());
+        ArgumentCaptor<IdempotencyRecord> captor = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(repository).saveAndFlush(captor.capture());
+        assertEquals(200, captor.getValue().getResponseStatus());
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        // транзакцию открывает сама операция
+        verifyNoInteractions(transactionManager);
+    }
+
+    // метод executeCommitting — ключ уже закоммичен вместе с другим переводом: ответ читается из таблицы
+    @Test
+    void testExecuteCommittingReplaysFromDatabase() {
+        IdempotencyRecord existing = new IdempotencyRecord();
+        existing.setRequestHash(sha256Of("transfer:1"));
+        existing.setResponseStatus(200);
+        existing.setResponseBody("{\"message\":\"Перевод выполнен успешно\"}");
+        when(repository.saveAndFlush(any(IdempotencyRecord.class)))
+            .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(repository.findByOwnerIdAndIdempotencyKey(user.getId(), "key-6")).thenReturn(Optional.of(existing));
+
+        ResponseEntity<?> response = idempotencyService.executeCommitting(user, "key-6", "transfer:1",
+            ResponseEntity.ok(Map.of()), Runnable::run);
+
+        assertEquals(Map.of("message", "Перевод выполнен успешно"), response.getBody());
+        assertEquals("true", response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    private static String sha256Of(String fingerprint) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(fingerprint.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.repository.CardRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryTransferEngineTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.now(), ZoneId.systemDefault());
+    private static final LocalDate TODAY = LocalDate.now(CLOCK);
+
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private HotCardService hotCardService;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private VelocityLimitService velocityLimitService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private InMemoryTransferEngine engine;
+
+    private User user;
+    private UUID fromId;
+    private UUID toId;
+
+    @BeforeEach
+    void setUp() {
+        engine = newEngine();
+        engine.start();
+        user = new User();
+        user.setId(UUID.randomUUID());
+        fromId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        toId = UUID.fromString("ffffffff-0000-0000-0000-000000000002");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        engine.stop();
+    }
+
+    // метод submit — перевод проверяется в памяти и сохраняется чистыми изменениями балансов
+    @Test
+    void testTransferPersistsDeltas() {
+        when(cardRepository.findByIdAndOwner(fromId, user)).thenReturn(Optional.of(card(fromId, "100")));
+        when(cardRepository.findByIdAndOwner(toId, user)).thenReturn(Optional.of(card(toId, "0")));
+        when(cardRepository.applyIfActive(fromId, user, Money.parse("-10"), Money.parse("10"), TODAY)).thenReturn(1);
+        when(cardRepository.applyIfActive(toId, user, Money.parse("10"), Money.ZERO, TODAY)).thenReturn(1);
+
+        engine.submit(user, fromId, toId, Money.parse("10")).orTimeout(5, TimeUnit.SECONDS).join();
+
+        verify(ledgerService).recordTransfer(fromId, toId, Money.parse("10"));
+        verify(outboxService).transfer(fromId, toId, Money.parse("10"), null);
+        verifyNoInteractions(cardService);
+    }
+
+    // метод submit — действие вызывающего (запись ключа идемпотентности) выполняется в транзакции пачки
+    @Test
+    void testRunsCallbackInBatchTransaction() {
+        when(cardRepository.findByIdAndOwner(fromId, user)).thenReturn(Optional.of(card(fromId, "100")));
+        when(cardRepository.findByIdAndOwner(toId, user)).thenReturn(Optional.of(card(toId, "0")));
+        when(cardRepository.applyIfActive(any(), any(), any(), any(), any())).thenReturn(1);
+        AtomicInteger recorded = new AtomicInteger();
+
+        engine.submit(user, fromId, toId, Money.parse("10"), recorded::incrementAndGet)
+            .orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals(1, recorded.get());
+        verify(transactionManager).commit(any());
+    }
+
+    // метод submit — второй перевод берет баланс из памяти, карта читается из базы один раз
+    @Test
+    void testBalancesAreKeptInMemory() {
+        when(cardRepository.findByIdAndOwner(fromId, user))
+            .thenReturn(Optional.of(card(fromId, "100")), Optional.of(card(fromId, "40")));
+        when(cardRepository.findByIdAndOwner(toId, user)).thenReturn(Optional.of(card(toId, "0")));
+        when(cardRepository.applyIfActive(any(), any(), any(), any(), any())).thenReturn(1);
+
+        engine.submit(user, fromId, toId, Money.parse("60")).orTimeout(5, TimeUnit.SECONDS).join();
+        CompletionException ex = assertThrows(CompletionException.class, () ->
+            engine.submit(user, fromId, toId, Money.parse("60")).orTimeout(5, TimeUnit.SECONDS).join());
+
+        assertEquals("Недостаточно средств", ex.getCause().getMessage());
+        // повторное чтение только при отказе, чтобы учесть пополнения в обход движка
+        verify(cardRepository, times(2)).findByIdAndOwner(fromId, user);
+        verify(ledgerService, times(1)).recordTransfer(any(), any(), any());
+    }
+
+    // метод submit — база не приняла изменение, перевод проводится обычным путем через CardService
+    @Test
+    void testFallsBackToDatabaseOnStaleState() {
+        when(cardRepository.findByIdAndOwner(fromId, user)).thenReturn(Optional.of(card(fromId, "100")));
+        when(cardRepository.findByIdAndOwner(toId, user)).thenReturn(Optional.of(card(toId, "0")));
+        when(cardRepository.applyIfActive(fromId, user, Money.parse("-10"), Money.parse("10"), TODAY)).thenReturn(0);
+
+        engine.submit(user, fromId, toId, Money.parse("10")).orTimeout(5, TimeUnit.SECONDS).join();
+
+        verify(cardService).transfer(user, fromId, toId, Money.parse("10"));
+        verifyNoInteractions(ledgerService);
+    }
+
+    // метод submit — в памяти только основной баланс: полосы горячей карты сворачиваются, когда его не хватает
+    @Test
+    void testFoldsHotCardWhenBaseBalanceIsShort() {
+        when(cardRepository.findByIdAndOwner(fromId, user))
+            .thenReturn(Optional.of(card(fromId, "5")), Optional.of(card(fromId, "25")));
+        when(cardRepository.findByIdAndOwner(toId, user)).thenReturn(Optional.of(card(toId, "0")));
+        when(hotCardService.isHot(fromId)).thenReturn(true);
+        when(cardRepository.applyIfActive(any(), any(), any(), any(), any())).thenReturn(1);
+
+        engine.submit(user, fromId, toId, Money.parse("20")).orTimeout(5, TimeUnit.SECONDS).join();
+
+        verify(hotCardService).fold(fromId);
+        verify(cardRepository).applyIfActive(fromId, user, Money.parse("-20"), Money.parse("20"), TODAY);
+        verifyNoInteractions(cardService);
+    }
+
+    // метод submit — карта с нулевым итогом пачки тоже проверяется в базе: ее могли заблокировать в обход движка
+    @Test
+    void testValidatesCardsWithZeroNetChange() throws InterruptedException {
+        when(cardRepository.findByIdAndOwner(fromId, user)).thenReturn(Optional.of(card(fromId, "100")));
+        when(cardRepository.findByIdAndOwner(toId, user)).thenReturn(Optional.of(card(toId, "100")));
+        when(cardRepository.applyIfActive(fromId, user, Money.ZERO, Money.parse("10"), TODAY)).thenReturn(0);
+        InMemoryTransferEngine stopped = newEngine();
+        // Встречные переводы разбираются одной пачкой, итог по обеим картам нулевой
+        CompletableFuture<Void> forward = stopped.submit(user, fromId, toId, Money.parse("10"));
+        CompletableFuture<Void> backward = stopped.submit(user, toId, fromId, Money.parse("10"));
+        stopped.start();
+
+        forward.orTimeout(5, TimeUnit.SECONDS).join();
+        backward.orTimeout(5, TimeUnit.SECONDS).join();
+        stopped.stop();
+
+        verify(cardService).transfer(user, fromId, toId, Money.parse("10"));
+        verify(cardService).transfer(user, toId, fromId, Money.parse("10"));
+        verifyNoInteractions(ledgerService);
+    }
+
+    // метод submit — сбой посреди пачки не отклоняет повторно уже отклоненные переводы и не снимает лимит дважды
+    @Test
+    void testBatchFailureReleasesEachReservationOnce() throws InterruptedException {
+        UUID missingId = UUID.randomUUID();
+        when(cardRepository.findByIdAndOwner(missingId, user)).thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndOwner(toId, user)).thenReturn(Optional.of(card(toId, "0")));
+        when(cardRepository.findByIdAndOwner(fromId, user)).thenThrow(new IllegalStateException("База недоступна"));
+        InMemoryTransferEngine stopped = newEngine();
+        // Обе команды попадают в очередь до старта и разбираются одной пачкой
+        CompletableFuture<Void> missing = stopped.submit(user, missingId, toId, Money.parse("10"));
+        CompletableFuture<Void> broken = stopped.submit(user, fromId, toId, Money.parse("10"));
+        stopped.start();
+
+        CompletionException missingError = assertThrows(CompletionException.class, () ->
+            missing.orTimeout(5, TimeUnit.SECONDS).join());
+        CompletionException brokenError = assertThrows(CompletionException.class, () ->
+            broken.orTimeout(5, TimeUnit.SECONDS).join());
+        stopped.stop();
+
+        assertEquals("Карта не найдена", missingError.getCause().getMessage());
+        assertEquals("База недоступна", brokenError.getCause().getMessage());
+        verify(velocityLimitService, times(2)).release(any());
+    }
+
+    // метод stop — команды, оставшиеся в очереди, отклоняются, а не ждут вечно
+    @Test
+    void testStopFailsQueuedCommands() throws InterruptedException {
+        InMemoryTransferEngine stopped = newEngine();
+        CompletableFuture<Void> queued = stopped.submit(user, fromId, toId, Money.parse("10"));
+
+        stopped.stop();
+
+        CompletionException ex = assertThrows(CompletionException.class, queued::join);
+        assertEquals("Движок переводов остановлен", ex.getCause().getMessage());
+        verify(velocityLimitService).release(any());
+        assertThrows(IllegalStateException.class, () -> stopped.submit(user, fromId, toId, Money.parse("10")));
+    }
+
+    // метод submit — некорректные параметры отклоняются сразу, без очереди
+    @Test
+    void testRejectsSameCard() {
+        assertThrows(IllegalArgumentException.class, () -> engine.submit(user, fromId, fromId, Money.parse("10")));
+    }
+
+    private InMemoryTransferEngine newEngine() {
+        return new InMemoryTransferEngine(cardRepository, cardService, hotCardService, ledgerService, outboxService,
+            new ConcurrencyRetry(3, 0), velocityLimitService, transactionManager, CLOCK, 2, 16, 8, 100);
+    }
+
+    private Card card(UUID id, String balance) {
+        Card card = new Card();
+        card.setId(id);
+        card.setOwner(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse(balance));
+        card.setExpiry(LocalDate.now().plusYears(1));
+        return card;
+    }
+}
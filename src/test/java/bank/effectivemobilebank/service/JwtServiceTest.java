@@ -2,6 +2,8 @@ package bank.effectivemobilebank.service;
 
 import bank.effectivemobilebank.security.JwtService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,7 +25,7 @@ class JwtServiceTest {
 
     @BeforeEach
     void setUp() {
-        jwtService = new JwtService(SECRET_KEY, EXPIRATION_MINUTES);
+        jwtService = new JwtService(SECRET_KEY, EXPIRATION_MINUTES, 30, 100);
     }
 
     @Test
@@ -187,4 +189,43 @@ class JwtServiceTest {
         assertNotNull(issuedAt);
         assertTrue(issuedAt.before(now) || issuedAt.equals(now));
     }
+
+    @Test
+    void testParse_CachedTokenReusesClaims() {
+        String token = jwtService.generate("testuser", new HashMap<>());
+
+        Claims first = jwtService.parse(token);
+
+        assertSame(first, jwtService.parse(token));
+    }
+
+    @Test
+    void testParse_TamperedTokenAfterCachedOne() {
+        String token = jwtService.generate("testuser", new HashMap<>());
+        jwtService.parse(token);
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + parts[1] + "." + new StringBuilder(parts[2]).reverse();
+
+        assertThrows(SignatureException.class, () -> jwtService.parse(forged));
+    }
+
+    @Test
+    void testParse_ExpiredTokenIsNotServedFromCache() {
+        JwtService shortLived = new JwtService(SECRET_KEY, 0, 30, 100);
+        String token = shortLived.generate("testuser", new HashMap<>());
+
+        assertThrows(ExpiredJwtException.class, () -> shortLived.parse(token));
+        assertThrows(ExpiredJwtException.class, () -> shortLived.parse(token));
+    }
+
+    @Test
+    void testParse_WithoutCache() {
+        JwtService uncached = new JwtService(SECRET_KEY, EXPIRATION_MINUTES, 30, 0);
+        String token = uncached.generate("testuser", new HashMap<>());
+
+        Claims first = uncached.parse(token);
+
+        assertNotSame(first, uncached.parse(token));
+        assertEquals("testuser", first.getSubject());
+    }
 }
@@ -0,0 +1,127 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.dto.CardTransactionPage;
+import bank.effectivemobilebank.model.LedgerDirection;
+import bank.effectivemobilebank.model.LedgerEntry;
+import bank.effectivemobilebank.model.LedgerOperationType;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceTest {
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    private LedgerService ledgerService;
+
+    @BeforeEach
+    void setUp() {
+        ledgerService = new LedgerService(ledgerEntryRepository);
+    }
+
+    // метод recordTransfer — дебет карты-отправителя и кредит карты-получателя одной операцией
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordTransfer() {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        ArgumentCaptor<List<LedgerEntry>> captor = ArgumentCaptor.forClass(List.class);
+
+        UUID operationId = ledgerService.recordTransfer(from, to, Money.parse("25.00"));
+
+        verify(ledgerEntryRepository).saveAll(captor.capture());
+        List<LedgerEntry> entries = captor.getValue();
+        assertEquals(2, entries.size());
+        assertEquals(from, entries.get(0).getCardId());
+        assertEquals(LedgerDirection.DEBIT, entries.get(0).getDirection());
+        assertEquals(to, entries.get(1).getCardId());
+        assertEquals(LedgerDirection.CREDIT, entries.get(1).getDirection());
+        entries.forEach(e -> {
+            assertEquals(operationId, e.getOperationId());
+            assertEquals(LedgerOperationType.TRANSFER, e.getOperationType());
+            assertEquals(Money.parse("25.00"), e.getAmount());
+        });
+    }
+
+    // метод recordTopUp — списание идет с внешнего счета (cardId = null)
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordTopUp() {
+        UUID cardId = UUID.randomUUID();
+        ArgumentCaptor<List<LedgerEntry>> captor = ArgumentCaptor.forClass(List.class);
+
+        ledgerService.recordTopUp(cardId, Money.parse("10"), LedgerOperationType.ADMIN_TOP_UP);
+
+        verify(ledgerEntryRepository).saveAll(captor.capture());
+        List<LedgerEntry> entries = captor.getValue();
+        assertNull(entries.get(0).getCardId());
+        assertEquals(LedgerDirection.DEBIT, entries.get(0).getDirection());
+        assertEquals(cardId, entries.get(1).getCardId());
+        assertEquals(LedgerDirection.CREDIT, entries.get(1).getDirection());
+        assertEquals(LedgerOperationType.ADMIN_TOP_UP, entries.get(1).getOperationType());
+    }
+
+    // метод balanceOf — баланс считается по проводкам
+    @Test
+    void testBalanceOf() {
+        UUID cardId = UUID.randomUUID();
+        when(ledgerEntryRepository.sumBalanceByCardId(cardId)).thenReturn(new BigDecimal("42.00"));
+
+        assertEquals(Money.parse("42.00"), ledgerService.balanceOf(cardId));
+    }
+
+    // метод history — первая страница без курсора, курсор указывает на последнюю выданную запись
+    @Test
+    void testHistoryFirstPage() {
+        UUID cardId = UUID.randomUUID();
+        LedgerEntry newest = historyEntry(cardId, Instant.parse("2025-01-03T10:00:00Z"));
+        LedgerEntry middle = historyEntry(cardId, Instant.parse("2025-01-02T10:00:00Z"));
+        LedgerEntry oldest = historyEntry(cardId, Instant.parse("2025-01-01T10:00:00Z"));
+        when(ledgerEntryRepository.findHistory(cardId, Limit.of(3))).thenReturn(List.of(newest, middle, oldest));
+
+        CardTransactionPage page = ledgerService.history(cardId, null, 2);
+
+        assertEquals(2, page.getItems().size());
+        assertEquals(newest.getOperationId(), page.getItems().get(0).getOperationId());
+        assertNotNull(page.getNextCursor());
+
+        when(ledgerEntryRepository.findHistoryBefore(cardId, middle.getCreatedAt(), middle.getId(), Limit.of(3)))
+            .thenReturn(List.of(oldest));
+
+        CardTransactionPage next = ledgerService.history(cardId, page.getNextCursor(), 2);
+
+        assertEquals(1, next.getItems().size());
+        assertEquals(oldest.getOperationId(), next.getItems().get(0).getOperationId());
+        assertNull(next.getNextCursor());
+    }
+
+    // метод history — испорченный курсор
+    @Test
+    void testHistoryInvalidCursor() {
+        UUID cardId = UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class, () -> ledgerService.history(cardId, "не-курсор", 20));
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+
+    private static LedgerEntry historyEntry(UUID cardId, Instant createdAt) {
+        return new LedgerEntry(UUID.randomUUID(), UUID.randomUUID(), cardId, LedgerOperationType.TRANSFER,
+            LedgerDirection.CREDIT, Money.parse("1.00"), createdAt);
+    }
+}
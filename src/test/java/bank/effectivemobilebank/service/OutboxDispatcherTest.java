@@ -0,0 +1,106 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.CardEventType;
+import bank.effectivemobilebank.model.CardStatus;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.OutboxEvent;
+import bank.effectivemobilebank.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    @Mock
+    private ApplicationEventPublisher publisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new OutboxDispatcher(repository, publisher, transactionManager, meterRegistry, 1, 10, 50);
+    }
+
+    // метод dispatchBatch — события пачки раздаются по порядку и удаляются в той же транзакции
+    @Test
+    void testDispatchBatchPublishesAndDeletes() {
+        UUID operationId = UUID.randomUUID();
+        OutboxEvent debit = event(OutboxEvent.balanceChanged(UUID.randomUUID(), Money.parse("-5.00"), operationId));
+        OutboxEvent blocked = event(OutboxEvent.statusChanged(UUID.randomUUID(), CardStatus.BLOCKED));
+        List<OutboxEvent> batch = List.of(debit, blocked);
+        when(repository.lockBatch(Limit.of(10))).thenReturn(batch);
+        ArgumentCaptor<CardEvent> captor = ArgumentCaptor.forClass(CardEvent.class);
+
+        assertEquals(2, dispatcher.dispatchBatch());
+
+        verify(publisher, times(2)).publishEvent(captor.capture());
+        CardEvent first = captor.getAllValues().get(0);
+        assertEquals(CardEventType.BALANCE_CHANGED, first.type());
+        assertEquals(Money.parse("-5.00"), first.amount());
+        assertEquals(operationId, first.operationId());
+        assertEquals(CardStatus.BLOCKED, captor.getAllValues().get(1).status());
+        verify(repository).deleteAllInBatch(batch);
+        verify(transactionManager).commit(any());
+        assertEquals(2, meterRegistry.counter("bank.outbox.dispatched").count());
+        assertEquals(2, meterRegistry.timer("bank.outbox.lag").count());
+        assertTrue(meterRegistry.timer("bank.outbox.lag").max(TimeUnit.MILLISECONDS) >= 1000);
+    }
+
+    // метод dispatchBatch — ошибка слушателя учитывается и не мешает остальным событиям
+    @Test
+    void testListenerErrorDoesNotStopBatch() {
+        List<OutboxEvent> batch = List.of(
+            event(OutboxEvent.statusChanged(UUID.randomUUID(), CardStatus.BLOCKED)),
+            event(OutboxEvent.statusChanged(UUID.randomUUID(), CardStatus.ACTIVE)));
+        when(repository.lockBatch(Limit.of(10))).thenReturn(batch);
+        doThrow(new IllegalStateException("сбой")).doNothing().when(publisher).publishEvent(any(Object.class));
+
+        assertEquals(2, dispatcher.dispatchBatch());
+
+        verify(publisher, times(2)).publishEvent(any(Object.class));
+        verify(repository).deleteAllInBatch(batch);
+        assertEquals(1, meterRegistry.counter("bank.outbox.listener.errors").count());
+    }
+
+    // метод dispatchBatch — пустая очередь ничего не раздает
+    @Test
+    void testDispatchEmptyBatch() {
+        when(repository.lockBatch(Limit.of(10))).thenReturn(List.of());
+
+        assertEquals(0, dispatcher.dispatchBatch());
+
+        verifyNoInteractions(publisher);
+    }
+
+    private static OutboxEvent event(OutboxEvent event) {
+        event.setId(UUID.randomUUID());
+        event.setCreatedAt(Instant.now().minusSeconds(2));
+        return event;
+    }
+}
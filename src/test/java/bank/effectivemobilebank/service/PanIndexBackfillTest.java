@@ -0,0 +1,73 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.config.CardNumberCipher;
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PanIndexBackfillTest {
+    private static final Limit CHUNK = Limit.of(PanIndexBackfill.CHUNK_SIZE);
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final CardNumberCipher cipher = new CardNumberCipher("0123456789ABCDEF0123456789ABCDEF");
+    private PanIndexBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new PanIndexBackfill(cardRepository, cipher, transactionManager);
+    }
+
+    // метод backfill — индекс считается по расшифрованному номеру, обход идет по id до пустой порции
+    @Test
+    void testBackfillFillsCardsWithoutIndex() {
+        Card first = card("1111222233334444");
+        Card second = card("5555666677778888");
+        when(cardRepository.findWithoutPanHashAfter(new UUID(0L, 0L), CHUNK)).thenReturn(List.of(first, second));
+        when(cardRepository.findWithoutPanHashAfter(second.getId(), CHUNK)).thenReturn(List.of());
+        when(cardRepository.updatePanHash(any(), any())).thenReturn(1);
+
+        assertEquals(2, backfill.backfill());
+
+        verify(cardRepository).updatePanHash(first.getId(), cipher.blindIndex("1111222233334444"));
+        verify(cardRepository).updatePanHash(second.getId(), cipher.blindIndex("5555666677778888"));
+    }
+
+    // метод backfill — повторяющийся номер пропускается, а не роняет старт приложения
+    @Test
+    void testBackfillSkipsDuplicateNumber() {
+        Card duplicate = card("1111222233334444");
+        when(cardRepository.findWithoutPanHashAfter(new UUID(0L, 0L), CHUNK)).thenReturn(List.of(duplicate));
+        when(cardRepository.findWithoutPanHashAfter(duplicate.getId(), CHUNK)).thenReturn(List.of());
+        when(cardRepository.existsByPanHash(cipher.blindIndex("1111222233334444"))).thenReturn(true);
+
+        assertEquals(0, backfill.backfill());
+
+        verify(cardRepository, never()).updatePanHash(any(), any());
+    }
+
+    private Card card(String pan) {
+        Card card = new Card();
+        card.setId(UUID.randomUUID());
+        card.setPanEncrypted(cipher.encrypt(pan));
+        return card;
+    }
+}
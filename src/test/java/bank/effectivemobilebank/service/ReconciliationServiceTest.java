@@ -0,0 +1,158 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Card;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.repository.CardRepository;
+import bank.effectivemobilebank.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationServiceTest {
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private HotCardService hotCardService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ReconciliationService(cardRepository, ledgerEntryRepository, hotCardService, transactionManager,
+            meterRegistry, 2, 2, 10);
+    }
+
+    // метод reconcile — карты обходятся порциями по id, расхождение с журналом попадает в отчет и метрики
+    @Test
+    void testReconcileFindsMismatchAcrossChunks() {
+        Card first = card("10.00");
+        Card second = card("0.00");
+        Card broken = card("7.00");
+        when(cardRepository.findIdsOrdered(Limit.of(2))).thenReturn(List.of(first.getId(), second.getId()));
+        when(cardRepository.findIdsAfter(second.getId(), Limit.of(2))).thenReturn(List.of(broken.getId()));
+        when(cardRepository.findIdsAfter(broken.getId(), Limit.of(2))).thenReturn(List.of());
+        when(cardRepository.findAllById(List.of(first.getId(), second.getId()))).thenReturn(List.of(first, second));
+        when(cardRepository.findAllById(List.of(broken.getId()))).thenReturn(List.of(broken));
+        when(ledgerEntryRepository.sumBalances(List.of(first.getId(), second.getId())))
+            .thenReturn(List.of(total(first.getId(), "10.00")));
+        when(ledgerEntryRepository.sumBalances(List.of(broken.getId())))
+            .thenReturn(List.of(total(broken.getId(), "5.00")));
+        when(ledgerEntryRepository.sumBalanceByCardId(broken.getId())).thenReturn(new BigDecimal("5.00"));
+        when(cardRepository.findById(broken.getId())).thenReturn(Optional.of(broken));
+
+        ReconciliationRun run = service.reconcile();
+
+        assertEquals(ReconciliationRun.Status.COMPLETED, run.getStatus());
+        assertEquals(3, run.getCardsChecked());
+        assertEquals(1, run.getMismatchCount());
+        ReconciliationRun.Mismatch mismatch = run.getMismatches().get(0);
+        assertEquals(broken.getId(), mismatch.cardId());
+        assertEquals(Money.parse("7.00"), mismatch.balance());
+        assertEquals(Money.parse("5.00"), mismatch.ledgerBalance());
+        assertEquals(3.0, meterRegistry.counter("bank.reconciliation.cards.checked").count());
+        assertEquals(1.0, meterRegistry.counter("bank.reconciliation.mismatches").count());
+        assertEquals(2, meterRegistry.timer("bank.reconciliation.chunk").count());
+        verify(cardRepository, never()).findAll();
+        verify(cardRepository, times(ReconciliationService.RECHECK_ATTEMPTS)).findById(broken.getId());
+    }
+
+    // метод reconcile — расхождение, пропавшее при перепроверке (перевод прочитан наполовину), не попадает в отчет
+    @Test
+    void testReconcileIgnoresTransientMismatch() {
+        Card card = card("10.00");
+        when(cardRepository.findIdsOrdered(Limit.of(2))).thenReturn(List.of(card.getId()));
+        when(cardRepository.findIdsAfter(card.getId(), Limit.of(2))).thenReturn(List.of());
+        when(cardRepository.findAllById(List.of(card.getId()))).thenReturn(List.of(card));
+        when(ledgerEntryRepository.sumBalances(List.of(card.getId())))
+            .thenReturn(List.of(total(card.getId(), "9.00")));
+        when(ledgerEntryRepository.sumBalanceByCardId(card.getId())).thenReturn(new BigDecimal("10.00"));
+        when(cardRepository.findById(card.getId())).thenReturn(Optional.of(card));
+
+        ReconciliationRun run = service.reconcile();
+
+        assertEquals(1, run.getCardsChecked());
+        assertEquals(0, run.getMismatchCount());
+        assertEquals(0.0, meterRegistry.counter("bank.reconciliation.mismatches").count());
+    }
+
+    // метод reconcile — ошибка порции останавливает обход и помечает сверку как FAILED
+    @Test
+    void testReconcileFailure() {
+        UUID cardId = UUID.randomUUID();
+        when(cardRepository.findIdsOrdered(Limit.of(2))).thenReturn(List.of(cardId));
+        when(cardRepository.findIdsAfter(cardId, Limit.of(2))).thenReturn(List.of());
+        when(ledgerEntryRepository.sumBalances(List.of(cardId))).thenThrow(new IllegalStateException("db down"));
+
+        ReconciliationRun run = service.reconcile();
+
+        assertEquals(ReconciliationRun.Status.FAILED, run.getStatus());
+        assertEquals("db down", run.getError());
+        assertNotNull(run.getFinishedAt());
+        assertTrue(service.lastRun().isPresent());
+    }
+
+    // метод start — вторая сверка не запускается, пока идет первая
+    @Test
+    void testStartRejectsConcurrentRun() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(cardRepository.findIdsOrdered(Limit.of(2))).thenAnswer(i -> {
+            release.await();
+            return List.of();
+        });
+
+        ReconciliationRun run = service.start();
+        assertThrows(IllegalStateException.class, () -> service.start());
+        release.countDown();
+
+        for (int i = 0; i < 100 && run.getStatus() == ReconciliationRun.Status.RUNNING; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(ReconciliationRun.Status.COMPLETED, run.getStatus());
+        assertEquals(0, run.getCardsChecked());
+    }
+
+    private static Card card(String balance) {
+        Card card = new Card();
+        card.setId(UUID.randomUUID());
+        card.setBalance(Money.parse(balance));
+        return card;
+    }
+
+    private static LedgerEntryRepository.CardTotal total(UUID cardId, String balance) {
+        return new LedgerEntryRepository.CardTotal() {
+            @Override
+            public UUID getCardId() {
+                return cardId;
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return new BigDecimal(balance);
+            }
+        };
+    }
+}
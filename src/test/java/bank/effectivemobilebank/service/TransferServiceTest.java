@@ -0,0 +1,140 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferServiceTest {
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransferService transferService;
+
+    private User user;
+    private UUID fromId;
+    private UUID toId;
+
+    @BeforeEach
+    void setUp() {
+        transferService = new TransferService(cardService, new ConcurrencyRetry(3, 0), Optional.empty(),
+            transactionManager, 100);
+        user = new User();
+        user.setId(UUID.randomUUID());
+        fromId = UUID.randomUUID();
+        toId = UUID.randomUUID();
+    }
+
+    // метод transferBetweenOwn — повтор после конфликта версий
+    @Test
+    void testTransferRetriesOnOptimisticLockFailure() {
+        doThrow(new ObjectOptimisticLockingFailureException("Card", fromId))
+            .doNothing()
+            .when(cardService).transfer(user, fromId, toId, Money.parse("10"));
+
+        transferService.transferBetweenOwn(user, fromId, toId, Money.parse("10"));
+
+        verify(cardService, times(2)).transfer(user, fromId, toId, Money.parse("10"));
+    }
+
+    // метод transferBetweenOwn — число попыток ограничено
+    @Test
+    void testTransferGivesUpAfterMaxAttempts() {
+        doThrow(new CannotAcquireLockException("could not serialize access"))
+            .when(cardService).transfer(user, fromId, toId, Money.parse("10"));
+
+        assertThrows(CannotAcquireLockException.class, () ->
+            transferService.transferBetweenOwn(user, fromId, toId, Money.parse("10")));
+
+        verify(cardService, times(3)).transfer(user, fromId, toId, Money.parse("10"));
+    }
+
+    // метод transferBetweenOwn — бизнес-ошибки не повторяются
+    @Test
+    void testTransferDoesNotRetryBusinessErrors() {
+        doThrow(new IllegalStateException("Недостаточно средств"))
+            .when(cardService).transfer(user, fromId, toId, Money.parse("10"));
+
+        assertThrows(IllegalStateException.class, () ->
+            transferService.transferBetweenOwn(user, fromId, toId, Money.parse("10")));
+
+        verify(cardService, times(1)).transfer(user, fromId, toId, Money.parse("10"));
+    }
+
+    // метод transferBetweenOwn — действие вызывающего выполняется в транзакции перевода
+    @Test
+    void testTransferRunsCallbackInTransferTransaction() {
+        AtomicInteger recorded = new AtomicInteger();
+
+        transferService.transferBetweenOwn(user, fromId, toId, Money.parse("10"), recorded::incrementAndGet);
+
+        assertEquals(1, recorded.get());
+        verify(transactionManager).commit(any());
+        verify(cardService).transfer(user, fromId, toId, Money.parse("10"));
+    }
+
+    // метод transferBetweenOwn — в режиме IN_MEMORY перевод уходит в движок, ошибка движка пробрасывается как есть
+    @Test
+    void testTransferThroughInMemoryEngine() {
+        InMemoryTransferEngine engine = mock(InMemoryTransferEngine.class);
+        transferService = new TransferService(cardService, new ConcurrencyRetry(3, 0), Optional.of(engine),
+            transactionManager, 100);
+        when(engine.submit(eq(user), eq(fromId), eq(toId), eq(Money.parse("10")), any()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Недостаточно средств")));
+
+        Exception ex = assertThrows(IllegalStateException.class, () ->
+            transferService.transferBetweenOwn(user, fromId, toId, Money.parse("10")));
+
+        assertEquals("Недостаточно средств", ex.getMessage());
+        verifyNoInteractions(cardService);
+    }
+
+    // метод transferBetweenOwn — ожидание движка ограничено, по таймауту сервис недоступен
+    @Test
+    void testTransferThroughInMemoryEngineTimesOut() {
+        InMemoryTransferEngine engine = mock(InMemoryTransferEngine.class);
+        transferService = new TransferService(cardService, new ConcurrencyRetry(3, 0), Optional.of(engine),
+            transactionManager, 50);
+        when(engine.submit(eq(user), eq(fromId), eq(toId), eq(Money.parse("10")), any()))
+            .thenReturn(new CompletableFuture<>());
+
+        assertThrows(RejectedExecutionException.class, () ->
+            transferService.transferBetweenOwn(user, fromId, toId, Money.parse("10")));
+        verifyNoInteractions(cardService);
+    }
+
+    // метод adminTopUp — повтор после конфликта блокировок
+    @Test
+    void testAdminTopUpRetries() {
+        doThrow(new CannotAcquireLockException("lock timeout"))
+            .doNothing()
+            .when(cardService).adminTopUp(toId, Money.parse("1"));
+
+        transferService.adminTopUp(toId, Money.parse("1"));
+
+        verify(cardService, times(2)).adminTopUp(toId, Money.parse("1"));
+    }
+}
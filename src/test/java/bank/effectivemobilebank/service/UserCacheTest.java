@@ -0,0 +1,96 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.User;
+import bank.effectivemobilebank.model.UserRole;
+import bank.effectivemobilebank.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserCache cache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UserCache(userRepository, meterRegistry, 100, 30);
+        user = new User(UUID.randomUUID(), "maks", "hash", new HashSet<>(Set.of(UserRole.USER)), 0);
+    }
+
+    // метод find — повторный поиск идет из кеша, попадания и промахи видны в метриках
+    @Test
+    void testFindCachesUserAndAuthorities() {
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(user));
+
+        UserCache.CachedUser first = cache.find("maks").orElseThrow();
+        UserCache.CachedUser second = cache.find("maks").orElseThrow();
+
+        assertSame(first, second);
+        assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_USER")), first.authorities());
+        verify(userRepository, times(1)).findByUsername("maks");
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit")
+            .functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss")
+            .functionCounter().count());
+    }
+
+    // метод find — неизвестный логин не кешируется: созданный позже пользователь сразу виден
+    @Test
+    void testMissingUserIsNotCached() {
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.empty(), Optional.of(user));
+
+        assertTrue(cache.find("maks").isEmpty());
+        assertTrue(cache.find("maks").isPresent());
+    }
+
+    // метод onUserChanged — смена ролей сбрасывает только запись этого пользователя
+    @Test
+    void testInvalidationOnUserChanged() {
+        User other = new User(UUID.randomUUID(), "other", "hash", new HashSet<>(Set.of(UserRole.USER)), 0);
+        User promoted = new User(user.getId(), "maks", "hash", new HashSet<>(Set.of(UserRole.ADMIN)), 1);
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(user), Optional.of(promoted));
+        when(userRepository.findByUsername("other")).thenReturn(Optional.of(other));
+        cache.find("maks");
+        cache.find("other");
+
+        cache.onUserChanged(new UserChangedEvent(user.getId(), "maks"));
+
+        UserCache.CachedUser reloaded = cache.find("maks").orElseThrow();
+        assertEquals(1, reloaded.tokenVersion());
+        assertEquals(Set.of(UserRole.ADMIN), reloaded.roles());
+        cache.find("other");
+        verify(userRepository, times(1)).findByUsername("other");
+    }
+
+    // метод toUser — каждый вызов отдает отдельную копию, кеш не меняется снаружи
+    @Test
+    void testToUserReturnsCopy() {
+        when(userRepository.findByUsername("maks")).thenReturn(Optional.of(user));
+        UserCache.CachedUser cached = cache.find("maks").orElseThrow();
+
+        User copy = cached.toUser();
+        copy.getRoles().add(UserRole.ADMIN);
+
+        assertEquals(Set.of(UserRole.USER), cached.roles());
+        assertNotSame(copy, cached.toUser());
+    }
+}
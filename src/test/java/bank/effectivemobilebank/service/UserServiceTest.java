@@ -3,11 +3,13 @@ package bank.effectivemobilebank.service;
 import bank.effectivemobilebank.model.User;
 import bank.effectivemobilebank.model.UserRole;
 import bank.effectivemobilebank.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.*;
@@ -25,13 +27,17 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private UserService userService;
 
     private User testUser;
 
     @BeforeEach
     void setUp() {
-        userService = new UserService(userRepository, passwordEncoder);
+        userService = new UserService(userRepository, passwordEncoder,
+            new UserCache(userRepository, new SimpleMeterRegistry(), 100, 30), eventPublisher);
 
         testUser = new User();
         testUser.setId(UUID.randomUUID());
@@ -95,7 +101,9 @@ class UserServiceTest {
         Optional<User> result = userService.findByUsername(username);
 
         assertTrue(result.isPresent());
-        assertEquals(testUser, result.get());
+        assertEquals(testUser.getId(), result.get().getId());
+        assertEquals(testUser.getUsername(), result.get().getUsername());
+        assertEquals(testUser.getRoles(), result.get().getRoles());
         verify(userRepository).findByUsername(username);
     }
 
@@ -141,6 +149,14 @@ class UserServiceTest {
         verify(userRepository).deleteById(userId);
     }
 
+    @Test
+    void testDeleteById_PublishesUserChanged() {
+        UUID userId = UUID.randomUUID();
+        when(userRepository.findUsernameById(userId)).thenReturn(Optional.of("testuser"));
+        userService.deleteById(userId);
+        verify(eventPublisher).publishEvent(new UserChangedEvent(userId, "testuser"));
+    }
+
     @Test
     void testDeleteById_UserNotExists() {
         UUID userId = UUID.randomUUID();
@@ -194,4 +210,31 @@ class UserServiceTest {
         verify(userRepository).findById(userId);
         verify(userRepository).save(testUser);
     }
+
+    @Test
+    void testUpdateRoles_InvalidatesIssuedTokens() {
+        UUID userId = testUser.getId();
+        testUser.setTokenVersion(3);
+
+        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+
+        userService.updateRoles(userId, new HashSet<>(List.of(UserRole.ADMIN)));
+
+        assertEquals(4, testUser.getTokenVersion());
+        verify(eventPublisher).publishEvent(new UserChangedEvent(userId, "testuser"));
+    }
+
+    @Test
+    void testUpdatePasswordHash_KeepsTokenVersion() {
+        testUser.setTokenVersion(3);
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+
+        userService.updatePasswordHash("testuser", "$2a$12$rehashed");
+
+        assertEquals("$2a$12$rehashed", testUser.getPasswordHash());
+        assertEquals(3, testUser.getTokenVersion());
+        verify(userRepository).save(testUser);
+        verify(eventPublisher).publishEvent(new UserChangedEvent(testUser.getId(), "testuser"));
+    }
 }
@@ -0,0 +1,188 @@
+package bank.effectivemobilebank.service;
+
+import bank.effectivemobilebank.model.CardLimit;
+import bank.effectivemobilebank.model.Money;
+import bank.effectivemobilebank.model.VelocityBucket;
+import bank.effectivemobilebank.model.VelocityBucketId;
+import bank.effectivemobilebank.model.VelocityScope;
+import bank.effectivemobilebank.repository.CardLimitRepository;
+import bank.effectivemobilebank.repository.VelocityBucketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VelocityLimitServiceTest {
+    private static final long MINUTE = 29_000_000L;
+
+    @Mock
+    private CardLimitRepository cardLimitRepository;
+
+    @Mock
+    private VelocityBucketRepository bucketRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private VelocityLimitService service;
+    private UUID userId;
+    private UUID cardId;
+
+    @BeforeEach
+    void setUp() {
+        service = newService("0", "0", "0", "0");
+        userId = UUID.randomUUID();
+        cardId = UUID.randomUUID();
+    }
+
+    // метод reserve — часовой лимит карты, сумма уходит из окна через час
+    @Test
+    void testCardHourlyLimitSlides() {
+        service.setCardLimits(cardId, Money.parse("100.00"), null);
+
+        service.reserve(userId, cardId, Money.parse("60.00"), MINUTE);
+        service.reserve(userId, cardId, Money.parse("40.00"), MINUTE + 30);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> service.reserve(userId, cardId, Money.parse("0.01"), MINUTE + 59));
+        assertEquals("Превышен часовой лимит по карте", e.getMessage());
+
+        // через час первая сумма вышла из окна
+        assertDoesNotThrow(() -> service.reserve(userId, cardId, Money.parse("60.00"), MINUTE + 60));
+    }
+
+    // метод reserve — суточный лимит пользователя действует по всем его картам
+    @Test
+    void testUserDailyLimitAcrossCards() {
+        service = newService("0", "0", "0", "500.00");
+
+        service.reserve(userId, cardId, Money.parse("300.00"), MINUTE);
+        service.reserve(userId, UUID.randomUUID(), Money.parse("200.00"), MINUTE + 120);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> service.reserve(userId, UUID.randomUUID(), Money.parse("1.00"), MINUTE + 600));
+        assertEquals("Превышен суточный лимит пользователя", e.getMessage());
+    }
+
+    // метод reserve — отклоненная операция не занимает лимит
+    @Test
+    void testRejectedReservationIsNotCounted() {
+        service = newService("100.00", "0", "0", "0");
+
+        assertThrows(IllegalStateException.class,
+            () -> service.reserve(userId, cardId, Money.parse("150.00"), MINUTE));
+        assertDoesNotThrow(() -> service.reserve(userId, cardId, Money.parse("100.00"), MINUTE));
+    }
+
+    // метод release — сумма несостоявшейся операции возвращается в окна
+    @Test
+    void testReleaseReturnsAmount() {
+        service.setCardLimits(cardId, Money.parse("100.00"), Money.parse("100.00"));
+        VelocityLimitService.Reservation reservation = service.reserve(userId, cardId, Money.parse("100.00"), MINUTE);
+
+        service.release(reservation);
+
+        assertDoesNotThrow(() -> service.reserve(userId, cardId, Money.parse("100.00"), MINUTE + 1));
+    }
+
+    // метод setCardLimits — пустые лимиты удаляют переопределение карты
+    @Test
+    void testSetCardLimitsClearsOverride() {
+        service.setCardLimits(cardId, Money.parse("10.00"), null);
+        verify(cardLimitRepository).save(any(CardLimit.class));
+
+        service.setCardLimits(cardId, null, null);
+
+        verify(cardLimitRepository).deleteById(cardId);
+        assertNull(service.limitsOf(cardId).getHourlyLimit());
+        assertDoesNotThrow(() -> service.reserve(userId, cardId, Money.parse("1000.00"), MINUTE));
+    }
+
+    // метод checkpoint — сохраняются только приращения окон, перезапуск восстанавливает их из корзин
+    @Test
+    void testCheckpointAndRestore() {
+        long minute = System.currentTimeMillis() / 60_000;
+        when(bucketRepository.insertIfAbsent(any(), anyInt(), anyLong(), anyString(), any())).thenReturn(1);
+        service.reserve(userId, cardId, Money.parse("70.00"));
+
+        service.checkpoint();
+
+        // минутная и часовая корзина для карты и для пользователя
+        verify(bucketRepository, times(4)).insertIfAbsent(any(), anyInt(), anyLong(), anyString(),
+            eq(new BigDecimal("70.00")));
+        verify(bucketRepository).insertIfAbsent(cardId, 1, minute, "CARD", new BigDecimal("70.00"));
+        verify(bucketRepository).insertIfAbsent(userId, 60, minute / 60, "USER", new BigDecimal("70.00"));
+
+        clearInvocations(bucketRepository);
+        service.checkpoint();
+        verify(bucketRepository, never()).insertIfAbsent(any(), anyInt(), anyLong(), anyString(), any());
+        verify(bucketRepository, never()).addAmount(any(), anyInt(), anyLong(), any());
+
+        VelocityLimitService restored = newService("0", "0", "0", "0");
+        when(bucketRepository.findLive(anyLong(), anyLong())).thenReturn(List.of(
+            new VelocityBucket(new VelocityBucketId(cardId, 1, minute), VelocityScope.CARD, Money.parse("70.00")),
+            new VelocityBucket(new VelocityBucketId(cardId, 60, minute / 60), VelocityScope.CARD,
+                Money.parse("70.00"))));
+        restored.restore();
+        restored.setCardLimits(cardId, Money.parse("100.00"), null);
+        assertEquals(Money.parse("70.00"), restored.usage(cardId).hourly());
+        assertThrows(IllegalStateException.class, () -> restored.reserve(userId, cardId, Money.parse("40.00")));
+    }
+
+    // метод checkpoint — к корзине, где уже есть суммы других экземпляров, прибавляется только свое приращение
+    @Test
+    void testCheckpointAddsOnlyLocalDelta() {
+        long minute = System.currentTimeMillis() / 60_000;
+        when(bucketRepository.findLive(anyLong(), anyLong())).thenReturn(List.of(
+            new VelocityBucket(new VelocityBucketId(cardId, 1, minute), VelocityScope.CARD, Money.parse("50.00"))));
+        service.restore();
+        when(bucketRepository.insertIfAbsent(any(), anyInt(), anyLong(), anyString(), any())).thenReturn(0);
+        VelocityLimitService.Reservation released = service.reserve(userId, cardId, Money.parse("5.00"));
+        service.reserve(userId, cardId, Money.parse("20.00"));
+        service.release(released);
+
+        // первый checkpoint падает, приращение переносится в следующий
+        doThrow(new DataAccessResourceFailureException("connection refused")).doReturn(1)
+            .when(bucketRepository).deleteExpired(anyLong(), anyLong());
+        assertThrows(DataAccessResourceFailureException.class, () -> service.checkpoint());
+        clearInvocations(bucketRepository);
+        service.checkpoint();
+
+        assertEquals(Money.parse("70.00"), service.usage(cardId).hourly());
+        verify(bucketRepository).addAmount(cardId, 1, minute, Money.parse("20.00"));
+        verify(bucketRepository, times(4)).addAmount(any(), anyInt(), anyLong(), eq(Money.parse("20.00")));
+    }
+
+    // метод restore — корзина пользователя не попадает в окна карт
+    @Test
+    void testRestoreKeepsScopes() {
+        long minute = System.currentTimeMillis() / 60_000;
+        when(bucketRepository.findLive(anyLong(), anyLong())).thenReturn(List.of(
+            new VelocityBucket(new VelocityBucketId(userId, 1, minute), VelocityScope.USER, Money.parse("5.00"))));
+
+        service.restore();
+
+        assertEquals(Money.ZERO, service.usage(userId).hourly());
+    }
+
+    private VelocityLimitService newService(String cardHourly, String cardDaily, String userHourly, String userDaily) {
+        return new VelocityLimitService(cardLimitRepository, bucketRepository, transactionManager,
+            new BigDecimal(cardHourly), new BigDecimal(cardDaily), new BigDecimal(userHourly),
+            new BigDecimal(userDaily), 8);
+    }
+}